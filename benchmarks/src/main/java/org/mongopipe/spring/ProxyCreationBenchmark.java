@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.mongopipe.core.Stores;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.test.MyRestaurant;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of a store: the core proxy made by Stores.from, which validates the store, versus the Spring proxy registered by
+ * {@link MongoPipeStarter} that defers it. In this package as the Spring proxy creation is package private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ProxyCreationBenchmark {
+  static int port;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  MongoPipeStarter mongoPipeStarter;
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("benchmark")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    port = mongoDBServerStarter.getPort();
+    // Registers the config used by Stores.from.
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    mongoPipeStarter = context.getBean(MongoPipeStarter.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public Object coreStore() {
+    return Stores.from(MyRestaurant.class);
+  }
+
+  @Benchmark
+  public Object springStore() {
+    return mongoPipeStarter.createStore(MyRestaurant.class);
+  }
+
+  // What the first call of a lazily created Spring store pays.
+  @Benchmark
+  public Object springStoreFirstUse() {
+    // The actual store is created with Stores.from, as on the first call of the proxy.
+    mongoPipeStarter.createStore(MyRestaurant.class);
+    return Stores.from(MyRestaurant.class);
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares the JSON results of 2 benchmark runs, e.g. of 2 versions, printing the score change of each benchmark and parameters
+ * run in both. Exits with status 1 if a score got worse by more than the threshold percent (default 10), higher being better
+ * for the throughput and lower for the other modes, so that it can fail a build:
+ * <pre>
+ * BenchmarkComparison baseline.json current.json [thresholdPercent]
+ * </pre>
+ */
+public final class BenchmarkComparison {
+
+  private BenchmarkComparison() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: BenchmarkComparison <baseline.json> <current.json> [thresholdPercent]");
+      System.exit(2);
+    }
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+    Map<String, BsonDocument> baseline = read(args[0]);
+    Map<String, BsonDocument> current = read(args[1]);
+    int regressions = 0;
+    System.out.println(String.format("%-90s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+    for (Map.Entry<String, BsonDocument> entry : current.entrySet()) {
+      BsonDocument baselineResult = baseline.get(entry.getKey());
+      Double baselineScore = baselineResult == null ? null : score(baselineResult);
+      Double currentScore = score(entry.getValue());
+      if (baselineScore == null || currentScore == null || baselineScore == 0) {
+        continue;
+      }
+      double change = (currentScore - baselineScore) * 100 / baselineScore;
+      boolean higherIsBetter = "thrpt".equals(entry.getValue().getString("mode").getValue());
+      boolean regression = higherIsBetter ? change < -threshold : change > threshold;
+      if (regression) {
+        regressions++;
+      }
+      String unit = entry.getValue().getDocument("primaryMetric").getString("scoreUnit").getValue();
+      System.out.println(String.format("%-90s %14s %14s %+8.1f%%%s", entry.getKey(), format(baselineScore, unit), format(currentScore, unit),
+          change, regression ? " REGRESSION" : ""));
+    }
+    for (String key : baseline.keySet()) {
+      if (!current.containsKey(key)) {
+        System.out.println(String.format("%-90s only in the baseline", key));
+      }
+    }
+    if (regressions > 0) {
+      System.out.println(regressions + " regression(s) over " + threshold + "%");
+      System.exit(1);
+    }
+  }
+
+  // By benchmark and parameters, as "org...DispatchBenchmark.store:aggregator=true".
+  private static Map<String, BsonDocument> read(String file) throws IOException {
+    String json = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+    Map<String, BsonDocument> results = new LinkedHashMap<>();
+    for (BsonValue value : BsonArray.parse(json)) {
+      BsonDocument result = value.asDocument();
+      StringBuilder key = new StringBuilder(result.getString("benchmark").getValue());
+      if (result.containsKey("params")) {
+        String separator = ":";
+        for (Map.Entry<String, BsonValue> param : new TreeMap<>(result.getDocument("params")).entrySet()) {
+          key.append(separator).append(param.getKey()).append('=').append(param.getValue().asString().getValue());
+          separator = ",";
+        }
+      }
+      results.put(key.toString(), result);
+    }
+    return results;
+  }
+
+  // JMH writes "NaN" as a string.
+  private static Double score(BsonDocument result) {
+    BsonValue score = result.getDocument("primaryMetric").get("score");
+    return score != null && score.isNumber() ? score.asNumber().doubleValue() : null;
+  }
+
+  private static String format(double score, String unit) {
+    return String.format("%.3f %s", score, unit);
+  }
+}
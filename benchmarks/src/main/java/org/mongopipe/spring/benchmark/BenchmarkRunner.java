@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of the benchmarks jar. Takes the JMH command line options, e.g. a benchmark regex or "-p pizzas=1000", and writes the
+ * results as JSON to jmh-result.json unless -rf or -rff are given, so that the results of 2 versions can be compared with
+ * {@link BenchmarkComparison}:
+ * <pre>
+ * java -jar target/benchmarks.jar -rff results-1.0.0.json
+ * java -cp target/benchmarks.jar org.mongopipe.spring.benchmark.BenchmarkComparison results-1.0.0.json results-1.1.0.json
+ * </pre>
+ */
+public final class BenchmarkRunner {
+  static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList() || commandLineOptions.shouldListWithParams()
+        || commandLineOptions.shouldListProfilers() || commandLineOptions.shouldListResultFormats()) {
+      // Nothing run, JMH prints what was asked.
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent(commandLineOptions);
+    if (!commandLineOptions.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLineOptions.getResult().hasValue()) {
+      options.result(DEFAULT_RESULT_FILE);
+    }
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import com.mongodb.client.MongoCollection;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.BulkStore;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.mongopipe.spring.PipelineAggregator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.test.Pizza;
+import org.test.PizzaIngestion;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pizzas inserted per second one insertOne at a time versus the {@link BulkStore} batched insertAll and write-behind saveBehind.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkWriteBenchmark {
+  static final int PIZZAS = 1000;
+  static int port;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  PizzaIngestion pizzaIngestion;
+  MongoCollection<Pizza> collection;
+  long nextId;
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("benchmark")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setWriteBehind(10000, 1000, 100);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    port = mongoDBServerStarter.getPort();
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    pizzaIngestion = context.getBean(PizzaIngestion.class);
+    collection = context.getBean(PipelineAggregator.class).getMongoDatabase().getCollection("ingestedPizzas", Pizza.class);
+  }
+
+  // Same collection size for each iteration.
+  @Setup(Level.Iteration)
+  public void dropPizzas() {
+    collection.drop();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    mongoDBServerStarter.destroy();
+  }
+
+  private List<Pizza> newPizzas() {
+    List<Pizza> pizzas = new ArrayList<>(PIZZAS);
+    for (int i = 0; i < PIZZAS; i++) {
+      Pizza pizza = new Pizza();
+      pizza.setId("P" + nextId++);
+      pizza.setName("Pizza " + i);
+      pizza.setSize("small");
+      pizza.setPrice(10.5f);
+      pizzas.add(pizza);
+    }
+    return pizzas;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PIZZAS)
+  public void insertOne() {
+    for (Pizza pizza : newPizzas()) {
+      collection.insertOne(pizza);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PIZZAS)
+  public Object insertAll() {
+    return pizzaIngestion.insertAll(newPizzas());
+  }
+
+  // Flushed at the end, so that the written pizzas are counted and not only the buffered ones.
+  @Benchmark
+  @OperationsPerInvocation(PIZZAS)
+  public void saveBehind() {
+    for (Pizza pizza : newPizzas()) {
+      pizzaIngestion.saveBehind(pizza);
+    }
+    pizzaIngestion.flush();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonBinaryReader;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.mongopipe.spring.GeneratedCodecProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.test.Pizza;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady state decoding of a Pizza with the codec generated at compile time versus the reflective POJO codec, no server involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class CodecDecodeBenchmark {
+  @Param({"generated", "pojo"})
+  String codec;
+
+  Codec<Pizza> pizzaCodec;
+  RawBsonDocument document;
+  DecoderContext decoderContext = DecoderContext.builder().build();
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    PojoCodecProvider pojoCodecProvider = PojoCodecProvider.builder().automatic(true).build();
+    pizzaCodec = CodecRegistries.fromRegistries(MongoClientSettings.getDefaultCodecRegistry(), "generated".equals(codec)
+        ? CodecRegistries.fromProviders(new GeneratedCodecProvider(), pojoCodecProvider)
+        : CodecRegistries.fromProviders(pojoCodecProvider)).get(Pizza.class);
+    document = RawBsonDocument.parse(new Document("_id", "P1").append("name", "Pepperoni").append("size", "small").append("price", 10.5).toJson());
+  }
+
+  @Benchmark
+  public Pizza decode() {
+    try (BsonBinaryReader reader = new BsonBinaryReader(document.getByteBuffer().asNIO())) {
+      return pizzaCodec.decode(reader, decoderContext);
+    }
+  }
+}
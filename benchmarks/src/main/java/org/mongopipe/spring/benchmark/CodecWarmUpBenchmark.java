@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.bson.Document;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Latency of the first store call in a new context, with the result codecs created on startup or on that call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 20)
+@Fork(3)
+public class CodecWarmUpBenchmark {
+  static int port;
+  static boolean codecWarmUp;
+
+  @Param({"true", "false"})
+  boolean warmUp;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  MyRestaurant myRestaurant;
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("benchmark")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setPipelineDefinitionCacheEnabled(true);
+      mongoPipeStarter.setCodecWarmUpEnabled(codecWarmUp);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    List<Document> pizzas = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      pizzas.add(new Document("_id", "P" + i).append("name", "Pizza " + i).append("size", "small").append("price", 10.5));
+    }
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(pizzas);
+    port = mongoDBServerStarter.getPort();
+    codecWarmUp = warmUp;
+  }
+
+  @Setup(Level.Iteration)
+  public void startContext() {
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    myRestaurant = context.getBean(MyRestaurant.class);
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeContext() {
+    context.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public long firstCall() {
+    try (Stream<Pizza> pizzas = myRestaurant.getPizzasBySize("small")) {
+      return pizzas.count();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.mongopipe.spring.PipelineAggregator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Overhead of a @PipelineRun store method over the same aggregation done directly with the driver, for a 2 pizzas result. The
+ * store method runs through the core store or through the {@link PipelineAggregator}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class DispatchBenchmark {
+  static int port;
+  static boolean aggregatorEnabled;
+
+  @Param({"false", "true"})
+  boolean aggregator;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  MyRestaurant myRestaurant;
+  MongoCollection<Document> pizzas;
+  // As bound from the matchingPizzas pipeline.
+  List<Document> stages = Arrays.asList(new Document("$match", new Document("size", "small")), new Document("$sort", new Document("name", 1)));
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setPipelineDefinitionCacheEnabled(aggregatorEnabled);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(Arrays.asList(
+        new Document("_id", "PS").append("name", "Pepperoni").append("size", "small").append("price", 19.0),
+        new Document("_id", "CS").append("name", "Cheese").append("size", "small").append("price", 12.0),
+        new Document("_id", "VM").append("name", "Vegan").append("size", "medium").append("price", 17.0)));
+    port = mongoDBServerStarter.getPort();
+    aggregatorEnabled = aggregator;
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    myRestaurant = context.getBean(MyRestaurant.class);
+    // Same codecs as the stores.
+    pizzas = context.getBean(PipelineAggregator.class).getMongoDatabase().getCollection("pizzas");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public List<Pizza> store() {
+    try (Stream<Pizza> stream = myRestaurant.getPizzasBySize("small")) {
+      return stream.collect(Collectors.toList());
+    }
+  }
+
+  @Benchmark
+  public List<Pizza> driver() {
+    return pizzas.aggregate(stages, Pizza.class).into(new ArrayList<>());
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.bson.Document;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.mongopipe.spring.PipelineAggregator;
+import org.mongopipe.spring.PipelineBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a dashboard of 5 pipelines on the same orders collection, run one after the other versus as one {@link PipelineBatch}
+ * $facet aggregation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class FacetBatchBenchmark {
+  static final List<String> DASHBOARD = Arrays.asList("ordersBySize", "topPizzas", "totalQuantity", "latestOrders", "pizzaCount");
+  static int port;
+
+  @Param({"100", "10000"})
+  int orders;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  PipelineAggregator pipelineAggregator;
+  Map<String, String> parameters = Collections.singletonMap("pizzaSize", "small");
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    List<Document> documents = new ArrayList<>();
+    String[] sizes = {"small", "medium", "large"};
+    for (int i = 0; i < orders; i++) {
+      documents.add(new Document("name", "Pizza " + i % 20).append("size", sizes[i % 3]).append("quantity", 1 + i % 5).append("orderedOn", i));
+    }
+    mongoDBServerStarter.getDb().getCollection("orders").insertMany(documents);
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").insertMany(Arrays.asList(
+        Document.parse("{_id: 'ordersBySize', collection: 'orders', pipeline: [{$group: {_id: '$size', count: {$sum: 1}}}]}"),
+        Document.parse("{_id: 'topPizzas', collection: 'orders', pipeline: [{$group: {_id: '$name', quantity: {$sum: '$quantity'}}},"
+            + " {$sort: {quantity: -1}}, {$limit: 5}]}"),
+        Document.parse("{_id: 'totalQuantity', collection: 'orders', pipeline: [{$match: {size: '${pizzaSize}'}},"
+            + " {$group: {_id: null, quantity: {$sum: '$quantity'}}}]}"),
+        Document.parse("{_id: 'latestOrders', collection: 'orders', pipeline: [{$sort: {orderedOn: -1}}, {$limit: 10}]}"),
+        Document.parse("{_id: 'pizzaCount', collection: 'orders', pipeline: [{$group: {_id: '$name'}}, {$count: 'count'}]}")));
+    port = mongoDBServerStarter.getPort();
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    pipelineAggregator = context.getBean(PipelineAggregator.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public List<List<Document>> separate() {
+    List<List<Document>> results = new ArrayList<>(DASHBOARD.size());
+    for (String pipelineId : DASHBOARD) {
+      results.add(pipelineAggregator.aggregate(pipelineId, parameters, Document.class).into(new ArrayList<>()));
+    }
+    return results;
+  }
+
+  @Benchmark
+  public List<List<Document>> batch() {
+    PipelineBatch batch = pipelineAggregator.batch();
+    List<PipelineBatch.Result<Document>> batchResults = new ArrayList<>(DASHBOARD.size());
+    for (String pipelineId : DASHBOARD) {
+      batchResults.add(batch.add(pipelineId, parameters, Document.class));
+    }
+    batch.execute();
+    List<List<Document>> results = new ArrayList<>(DASHBOARD.size());
+    for (PipelineBatch.Result<Document> result : batchResults) {
+      results.add(result.get());
+    }
+    return results;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.bson.Document;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.KeysetPage;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.mongopipe.spring.PipelineAggregator;
+import org.mongopipe.spring.PipelineSlice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.test.Pizza;
+import org.test.PizzaPages;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the page N of 20 pizzas out of 100000, sorted by name with an index, with a {@link KeysetPage} versus $skip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class KeysetPaginationBenchmark {
+  static final int PIZZAS = 100000;
+  static final int PAGE_SIZE = 20;
+  static int port;
+
+  @Param({"1", "100", "2500"})
+  int page;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  PizzaPages pizzaPages;
+  PipelineAggregator pipelineAggregator;
+  KeysetPage keysetPage;
+  Map<String, Object> skipParameters = new HashMap<>();
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("benchmark")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    List<Document> pizzas = new ArrayList<>();
+    for (int i = 0; i < PIZZAS; i++) {
+      pizzas.add(new Document("_id", String.format("P%06d", i)).append("name", "Pizza " + (i * 7919 % PIZZAS)).append("size", "small").append("price", 10.5));
+    }
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(pizzas);
+    mongoDBServerStarter.getDb().getCollection("pizzas").createIndex(new Document("size", 1).append("name", 1).append("_id", 1));
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").insertOne(Document.parse("{_id: 'matchingPizzasSkip', collection: 'pizzas', pipeline: ["
+        + "{$match: {size: '${pizzaSize}'}}, {$sort: {name: 1, _id: 1}}, {$skip: '${skip}'}, {$limit: '${limit}'}]}"));
+    port = mongoDBServerStarter.getPort();
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    pizzaPages = context.getBean(PizzaPages.class);
+    pipelineAggregator = context.getBean(PipelineAggregator.class);
+
+    // The token of the page, walked once.
+    keysetPage = KeysetPage.first(PAGE_SIZE);
+    for (int i = 1; i < page; i++) {
+      keysetPage = pizzaPages.getPizzasBySize("small", keysetPage).nextPage();
+    }
+    skipParameters.put("pizzaSize", "small");
+    skipParameters.put("skip", (page - 1) * PAGE_SIZE);
+    skipParameters.put("limit", PAGE_SIZE);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public PipelineSlice<Pizza> keyset() {
+    return pizzaPages.getPizzasBySize("small", keysetPage);
+  }
+
+  @Benchmark
+  public List<Pizza> skip() {
+    return pipelineAggregator.aggregate("matchingPizzasSkip", skipParameters, Pizza.class).into(new ArrayList<>(PAGE_SIZE));
+  }
+}
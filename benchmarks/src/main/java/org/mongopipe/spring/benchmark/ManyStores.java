@@ -0,0 +1,514 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.mongopipe.core.annotation.Item;
+import org.mongopipe.core.annotation.PipelineRun;
+import org.mongopipe.core.annotation.Store;
+import org.test.Pizza;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Many store interfaces, indexed at compile time, for the startup benchmarks.
+ */
+public final class ManyStores {
+  public static final String PACKAGE_NAME = ManyStores.class.getPackage().getName();
+
+  private ManyStores() {
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store01 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store02 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store03 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store04 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store05 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store06 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store07 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store08 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store09 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store10 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store11 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store12 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store13 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store14 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store15 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store16 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store17 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store18 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store19 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store20 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store21 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store22 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store23 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store24 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store25 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store26 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store27 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store28 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store29 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store30 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store31 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store32 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store33 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store34 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store35 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store36 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store37 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store38 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store39 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store40 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store41 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store42 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store43 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store44 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store45 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store46 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store47 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store48 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store49 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store50 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store51 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store52 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store53 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store54 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store55 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store56 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store57 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store58 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store59 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+
+  @Store(items = @Item(type = Pizza.class, collection = "pizzas"))
+  public interface Store60 {
+    @PipelineRun("matchingPizzas")
+    Stream<Pizza> getPizzasBySize(String pizzaSize);
+
+    Optional<Pizza> findById(String id);
+  }
+}
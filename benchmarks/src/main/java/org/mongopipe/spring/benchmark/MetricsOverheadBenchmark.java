@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.InMemoryPipelineMetrics;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.mongopipe.spring.PipelineMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+/**
+ * Overhead of the pipeline metrics: a whole store pipeline run with and without metrics, and the recording alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class MetricsOverheadBenchmark {
+  static int port;
+  static boolean metricsEnabled;
+
+  @Param({"false", "true"})
+  boolean metrics;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  MyRestaurant myRestaurant;
+  PipelineMetrics.PipelineMeter meter;
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("benchmark")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setPipelineDefinitionCacheEnabled(true);
+      mongoPipeStarter.setMetricsEnabled(metricsEnabled);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+    port = mongoDBServerStarter.getPort();
+    metricsEnabled = metrics;
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    myRestaurant = context.getBean(MyRestaurant.class);
+    meter = new InMemoryPipelineMetrics().forPipeline("matchingPizzas");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public List<Pizza> storePipelineRun() {
+    return myRestaurant.getPizzasBySize("small").collect(Collectors.toList());
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void recordOnly() {
+    meter.recordCall(1500000, false);
+    meter.recordDocuments(1, 120);
+  }
+}
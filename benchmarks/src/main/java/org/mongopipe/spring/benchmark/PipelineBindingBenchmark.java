@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.bson.Document;
+import org.mongopipe.core.Pipelines;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.mongopipe.spring.PipelineAggregator;
+import org.mongopipe.spring.PipelineTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.test.Pizza;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs of a pipeline where one stage in three has placeholders: the core runner, reading the definition from the pipeline store
+ * and binding it on every call, versus the {@link PipelineAggregator} binding the {@link PipelineTemplate} compiled when the
+ * definition was cached. Both run the same aggregation, the difference being the per call lookup and binding. Run with
+ * "-prof gc" for the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class PipelineBindingBenchmark {
+  static final String PIPELINE_ID = "bindingPizzas";
+  static int port;
+
+  @Param({"3", "30"})
+  int stageCount;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  PipelineAggregator pipelineAggregator;
+  Map<String, Object> parameters = new HashMap<>();
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(Arrays.asList(
+        new Document("_id", "PS").append("name", "Pepperoni").append("size", "small").append("price", 19.0),
+        new Document("_id", "CS").append("name", "Cheese").append("size", "small").append("price", 12.0),
+        new Document("_id", "VM").append("name", "Vegan").append("size", "medium").append("price", 17.0)));
+    List<Document> stages = new ArrayList<>();
+    for (int i = 0; i < stageCount; i++) {
+      if (i % 3 == 0) {
+        stages.add(Document.parse("{$match: {size: '${pizzaSize}', price: {$lte: '${maxPrice}'}, stage: {$ne: " + i + "}}}"));
+      } else if (i % 3 == 1) {
+        stages.add(Document.parse("{$addFields: {total: {$multiply: ['$price', 2]}, tags: ['a', 'b', 'c'], stage: " + i + "}}"));
+      } else {
+        stages.add(Document.parse("{$sort: {name: 1, stage: 1}}"));
+      }
+    }
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").insertOne(new Document("_id", PIPELINE_ID)
+        .append("collection", "pizzas").append("pipeline", stages));
+    port = mongoDBServerStarter.getPort();
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    pipelineAggregator = context.getBean(PipelineAggregator.class);
+    parameters.put("pizzaSize", "small");
+    parameters.put("maxPrice", 20.0);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public List<Pizza> coreRunner() {
+    try (Stream<Pizza> stream = Pipelines.getRunner().run(PIPELINE_ID, Pizza.class, parameters)) {
+      return stream.collect(Collectors.toList());
+    }
+  }
+
+  @Benchmark
+  public List<Pizza> template() {
+    return pipelineAggregator.aggregate(PIPELINE_ID, parameters, Pizza.class).into(new ArrayList<>());
+  }
+}
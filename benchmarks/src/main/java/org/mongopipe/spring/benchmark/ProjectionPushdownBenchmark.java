@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.bson.Document;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.InMemoryPipelineMetrics;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.mongopipe.spring.PipelineMetrics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * A store pipeline run over wide documents, 1000 pizzas with 40 fields not mapped by Pizza, with and without the $project
+ * pushdown. The bytes received per document are reported as the "bytesPerDocument" secondary metric.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ProjectionPushdownBenchmark {
+  static final int PIZZAS = 1000;
+  static final int EXTRA_FIELDS = 40;
+  static int port;
+  static boolean projectionPushdownEnabled;
+
+  @Param({"false", "true"})
+  boolean pushdown;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  MyRestaurant myRestaurant;
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("benchmark")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setPipelineDefinitionCacheEnabled(true);
+      mongoPipeStarter.setProjectionPushdownEnabled(projectionPushdownEnabled);
+      mongoPipeStarter.setMetricsEnabled(true); // For the bytes.
+      return mongoPipeStarter;
+    }
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Transfer {
+    public double bytesPerDocument;
+
+    @TearDown(Level.Iteration)
+    public void measure(ProjectionPushdownBenchmark benchmark, BenchmarkParams params) {
+      InMemoryPipelineMetrics.PipelineStats stats = ((InMemoryPipelineMetrics) benchmark.context.getBean(PipelineMetrics.class)).getStats()
+          .get("matchingPizzas");
+      // JMH sums the counter over the measurement iterations of all the forks, so the share of each makes the mean.
+      bytesPerDocument = (double) stats.getBytes() / Math.max(1, stats.getDocuments())
+          / (params.getMeasurement().getCount() * Math.max(1, params.getForks()));
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    List<Document> pizzas = new ArrayList<>();
+    for (int i = 0; i < PIZZAS; i++) {
+      Document pizza = new Document("_id", "P" + i).append("name", "Pizza " + i).append("size", "small").append("price", 10.5);
+      for (int field = 0; field < EXTRA_FIELDS; field++) {
+        pizza.append("extra" + field, "Some text not needed by the application " + field);
+      }
+      pizzas.add(pizza);
+    }
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(pizzas);
+    port = mongoDBServerStarter.getPort();
+    projectionPushdownEnabled = pushdown;
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    myRestaurant = context.getBean(MyRestaurant.class);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public List<Pizza> storePipelineRun(Transfer transfer) {
+    return myRestaurant.getPizzasBySize("small").collect(Collectors.toList());
+  }
+}
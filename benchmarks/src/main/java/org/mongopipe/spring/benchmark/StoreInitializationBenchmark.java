@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Context startup with the 8 test stores or the 60 {@link ManyStores}, and the heap retained after it as the "retainedHeapKb"
+ * secondary metric, for each {@link MongoPipeStarter.StoreInitialization} mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(3)
+public class StoreInitializationBenchmark {
+  static int port;
+  static MongoPipeStarter.StoreInitialization storeInitialization;
+  static String storePackage;
+
+  @Param({"EAGER", "LAZY", "PARALLEL"})
+  String mode;
+
+  // The stores registered, by package.
+  @Param({"org.test", "org.mongopipe.spring.benchmark"})
+  String scanPackage;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("benchmark")
+          .scanPackage(storePackage)
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setStoreInitialization(storeInitialization);
+      return mongoPipeStarter;
+    }
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Heap {
+    public double retainedHeapKb;
+
+    // Measured outside of the startup time, while the context is still referenced: JMH runs it before closeContext.
+    @TearDown(Level.Iteration)
+    public void measure(BenchmarkParams params) {
+      System.gc();
+      // Summed by JMH over the measurement iterations of all the forks, each adds its share of the mean.
+      retainedHeapKb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / 1024.0
+          / (params.getMeasurement().getCount() * Math.max(1, params.getForks()));
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    port = mongoDBServerStarter.getPort();
+    storeInitialization = MongoPipeStarter.StoreInitialization.valueOf(mode);
+    storePackage = scanPackage;
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeContext() {
+    context.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public AnnotationConfigApplicationContext startContext(Heap heap) {
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    return context;
+  }
+}
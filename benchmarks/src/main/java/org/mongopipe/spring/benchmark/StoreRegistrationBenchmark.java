@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mongopipe.spring.benchmark;
+
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Store registration done by {@link MongoPipeStarter#postProcessBeanDefinitionRegistry} using the compile time store index versus
+ * scanning the whole classpath (no scanPackage), the benchmarks jar holding a few thousand classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(3)
+public class StoreRegistrationBenchmark {
+
+  @Param({"true", "false"})
+  boolean storeIndexEnabled;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  MongoPipeConfig mongoPipeConfig;
+
+  @Setup
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    mongoPipeConfig = MongoPipeConfig.builder()
+        .uri("mongodb://localhost:" + mongoDBServerStarter.getPort())
+        .databaseName("benchmark")
+        .build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public DefaultListableBeanFactory registerStores() {
+    MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+    mongoPipeStarter.setStoreIndexEnabled(storeIndexEnabled);
+    mongoPipeStarter.setApplicationContext(new GenericApplicationContext());
+    DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    mongoPipeStarter.postProcessBeanDefinitionRegistry(beanFactory);
+    return beanFactory;
+  }
+}
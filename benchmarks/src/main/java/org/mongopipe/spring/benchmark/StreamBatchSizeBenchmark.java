@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring.benchmark;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.Document;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.spring.MongoDBServerStarter;
+import org.mongopipe.spring.MongoPipeStarter;
+import org.mongopipe.spring.PipelineDefinitionCache;
+import org.mongopipe.spring.PipelineOptions;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Streaming 100000 pizzas with the default batch sizes (101 documents, then up to 16 MB) versus the {@link PipelineOptions}
+ * batchSize, with the getMore round trips per stream as a secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamBatchSizeBenchmark {
+  static final int PIZZAS = 100000;
+  static final AtomicLong GET_MORES = new AtomicLong();
+  static int port;
+
+  // 0 for no batchSize option.
+  @Param({"0", "100", "1000", "10000"})
+  int batchSize;
+
+  MongoDBServerStarter mongoDBServerStarter;
+  AnnotationConfigApplicationContext context;
+  MyRestaurant myRestaurant;
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoClient mongoClient() {
+      return MongoClients.create(MongoClientSettings.builder()
+          .applyConnectionString(new ConnectionString("mongodb://localhost:" + port))
+          .addCommandListener(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+              if (event.getCommandName().equals("getMore")) {
+                GET_MORES.incrementAndGet();
+              }
+            }
+          })
+          .build());
+    }
+
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + port)
+          .databaseName("benchmark")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class RoundTrips {
+    public long getMores;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+    List<Document> pizzas = new ArrayList<>();
+    for (int i = 0; i < PIZZAS; i++) {
+      pizzas.add(new Document("name", "Pizza " + i).append("size", "small").append("price", 10.5));
+    }
+    port = mongoDBServerStarter.getPort();
+    context = new AnnotationConfigApplicationContext(ContextConfiguration.class);
+    myRestaurant = context.getBean(MyRestaurant.class);
+    MongoDatabase database = context.getBean(MongoClient.class).getDatabase("benchmark");
+    database.getCollection("pizzas").insertMany(pizzas);
+    if (batchSize > 0) {
+      database.getCollection("pipeline_store").updateOne(new Document("_id", "matchingPizzas"),
+          new Document("$set", new Document("options", new Document("batchSize", batchSize))));
+      context.getBean(PipelineDefinitionCache.class).invalidate("matchingPizzas");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+    mongoDBServerStarter.destroy();
+  }
+
+  @Benchmark
+  public long stream(RoundTrips roundTrips) {
+    long getMores = GET_MORES.get();
+    long count;
+    try (Stream<Pizza> stream = myRestaurant.getPizzasBySize("small")) {
+      count = stream.count();
+    }
+    roundTrips.getMores += GET_MORES.get() - getMores;
+    return count;
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spring Cache holding at most maxSize entries, the least recently used being evicted first, each expiring ttlMillis after
+ * being put. The default cache of the {@link PipelineResultCache}.
+ */
+public class BoundedTtlCache implements Cache {
+  private final String name;
+  private final int maxSize;
+  private final long ttlMillis;
+  // Access ordered, guarded by itself.
+  private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+
+  private static class Entry {
+    final Object value;
+    final long expiresAt;
+
+    Entry(Object value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  public BoundedTtlCache(String name, int maxSize, long ttlMillis) {
+    this.name = name;
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Object getNativeCache() {
+    return entries;
+  }
+
+  @Override
+  public ValueWrapper get(Object key) {
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.expiresAt <= System.currentTimeMillis()) {
+        entries.remove(key);
+        expirations.increment();
+        return null;
+      }
+      return new SimpleValueWrapper(entry.value);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Class<T> type) {
+    ValueWrapper wrapper = get(key);
+    Object value = wrapper == null ? null : wrapper.get();
+    if (value != null && type != null && !type.isInstance(value)) {
+      throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+    }
+    return (T) value;
+  }
+
+  // Cache method since Spring 4.3.
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    ValueWrapper wrapper = get(key);
+    if (wrapper != null) {
+      return (T) wrapper.get();
+    }
+    try {
+      T value = valueLoader.call();
+      put(key, value);
+      return value;
+    } catch (Exception e) {
+      throw new IllegalStateException("Value loader failed for key " + key, e);
+    }
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    long expiresAt = System.currentTimeMillis() + ttlMillis;
+    synchronized (entries) {
+      entries.put(key, new Entry(value, expiresAt));
+      if (entries.size() > maxSize) {
+        trimToSize(expiresAt - ttlMillis);
+      }
+    }
+  }
+
+  // Cache method since Spring 4.1.
+  public ValueWrapper putIfAbsent(Object key, Object value) {
+    synchronized (entries) {
+      ValueWrapper existing = get(key);
+      if (existing == null) {
+        put(key, value);
+      }
+      return existing;
+    }
+  }
+
+  // The expired entries first, then the least recently used.
+  private void trimToSize(long now) {
+    Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator();
+    while (iterator.hasNext() && entries.size() > maxSize) {
+      if (iterator.next().getValue().expiresAt <= now) {
+        iterator.remove();
+        expirations.increment();
+      }
+    }
+    iterator = entries.entrySet().iterator();
+    while (iterator.hasNext() && entries.size() > maxSize) {
+      iterator.next();
+      iterator.remove();
+      evictions.increment();
+    }
+  }
+
+  @Override
+  public void evict(Object key) {
+    synchronized (entries) {
+      entries.remove(key);
+    }
+  }
+
+  @Override
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * @return the number of entries removed to stay under the max size.
+   */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public long getExpirations() {
+    return expirations.sum();
+  }
+}
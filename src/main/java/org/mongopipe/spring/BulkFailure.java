@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+/**
+ * A document a bulk write could not write.
+ */
+public class BulkFailure {
+  private final String collection;
+  private final Object item;
+  private final int index;
+  private final int code;
+  private final String message;
+
+  BulkFailure(String collection, Object item, int index, int code, String message) {
+    this.collection = collection;
+    this.item = item;
+    this.index = index;
+    this.code = code;
+    this.message = message;
+  }
+
+  public String getCollection() {
+    return collection;
+  }
+
+  public Object getItem() {
+    return item;
+  }
+
+  /**
+   * @return the position of the item in the written items, or in the flushed batch for the write-behind.
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * @return the server error code, e.g. 11000 for a duplicate key, -1 if the whole batch failed without one.
+   */
+  public int getCode() {
+    return code;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return "BulkFailure{collection=" + collection + ", index=" + index + ", code=" + code + ", message=" + message + "}";
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.mongopipe.core.annotation.Item;
+import org.mongopipe.core.annotation.Store;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.springframework.core.GenericTypeResolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link BulkStore} methods of a store, writing to the collection of the @Item of its BulkStore type argument.
+ */
+class BulkOperations {
+  private static final EncoderContext COLLECTIBLE = EncoderContext.builder().isEncodingCollectibleDocument(true).build();
+  private final Class<?> itemType;
+  private final String collectionName;
+  private final StoreSupport storeSupport;
+  private volatile MongoCollection<RawBsonDocument> collection;
+  private volatile Codec<Object> codec;
+
+  BulkOperations(Class<?> storeClass, StoreSupport storeSupport) {
+    this.storeSupport = storeSupport;
+    itemType = GenericTypeResolver.resolveTypeArgument(storeClass, BulkStore.class);
+    if (itemType == null) {
+      throw new MongoPipeConfigException("Declare the item type of the BulkStore extended by " + storeClass.getName());
+    }
+    Store storeAnnotation = storeClass.getAnnotation(Store.class);
+    String name = null;
+    if (storeAnnotation != null) {
+      for (Item item : storeAnnotation.items()) {
+        if (item.type() == itemType) {
+          name = item.collection();
+        }
+      }
+    }
+    if (name == null) {
+      throw new MongoPipeConfigException("No @Item for " + itemType.getName() + " in the @Store of " + storeClass.getName());
+    }
+    collectionName = name;
+  }
+
+  String getCollectionName() {
+    return collectionName;
+  }
+
+  MongoCollection<RawBsonDocument> getCollection() {
+    MongoCollection<RawBsonDocument> result = collection;
+    if (result == null) {
+      collection = result = storeSupport.pipelineAggregator.getMongoDatabase().getCollection(collectionName, RawBsonDocument.class);
+    }
+    return result;
+  }
+
+  /**
+   * Encodes the item as it is now, so that later changes are not written. Ids generated by the codec are set on the item.
+   */
+  @SuppressWarnings("unchecked")
+  RawBsonDocument encode(Object item) {
+    if (!itemType.isInstance(item)) {
+      throw new IllegalArgumentException("Expected a " + itemType.getName() + " item for " + collectionName + " but got " + item);
+    }
+    Codec<Object> itemCodec = codec;
+    if (itemCodec == null) {
+      codec = itemCodec = (Codec<Object>) getCollection().getCodecRegistry().get(itemType);
+    }
+    if (itemCodec instanceof CollectibleCodec) {
+      ((CollectibleCodec<Object>) itemCodec).generateIdIfAbsentFromDocument(item);
+    }
+    BasicOutputBuffer buffer = new BasicOutputBuffer();
+    try (BsonBinaryWriter writer = new BsonBinaryWriter(buffer)) {
+      itemCodec.encode(writer, item, COLLECTIBLE);
+    }
+    return new RawBsonDocument(buffer.toByteArray());
+  }
+
+  Object invoke(String methodName, Object[] args) {
+    switch (methodName) {
+      case "insertAll":
+        return write((Collection<?>) args[0], false);
+      case "saveAll":
+        return write((Collection<?>) args[0], true);
+      case "saveBehind":
+        saveBehind(args[0]);
+        return null;
+      case "flush":
+        if (storeSupport.writeBehindBuffers != null) {
+          storeSupport.writeBehindBuffers.flush(collectionName);
+        }
+        return null;
+      default:
+        throw new UnsupportedOperationException(methodName);
+    }
+  }
+
+  private BulkReport write(Collection<?> items, boolean upsert) {
+    storeSupport.migrationStatus.await(storeSupport.migrationTimeoutMillis);
+    List<Object> itemList = new ArrayList<>(items);
+    List<RawBsonDocument> documents = new ArrayList<>(itemList.size());
+    for (Object item : itemList) {
+      documents.add(encode(item));
+    }
+    return BulkWriter.write(getCollection(), itemList, documents, upsert, storeSupport.bulkBatchSize);
+  }
+
+  private void saveBehind(Object item) {
+    WriteBehindBuffers writeBehindBuffers = storeSupport.writeBehindBuffers;
+    if (writeBehindBuffers == null) {
+      BulkReport report = write(Collections.singletonList(item), true);
+      if (report.hasFailures()) {
+        BulkFailure failure = report.getFailures().get(0);
+        throw new MongoException(failure.getCode(), "Could not save to " + collectionName + ": " + failure.getMessage());
+      }
+      return;
+    }
+    writeBehindBuffers.add(this, item, encode(item));
+  }
+}
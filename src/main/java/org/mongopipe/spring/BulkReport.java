@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.bulk.BulkWriteResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a {@link BulkStore} write, summed over its batches.
+ */
+public class BulkReport {
+  private int insertedCount;
+  private int matchedCount;
+  private int modifiedCount;
+  private int upsertedCount;
+  private final List<BulkFailure> failures = new ArrayList<>();
+
+  void add(BulkWriteResult result) {
+    insertedCount += result.getInsertedCount();
+    matchedCount += result.getMatchedCount();
+    modifiedCount += result.getModifiedCount();
+    upsertedCount += result.getUpserts().size();
+  }
+
+  void addFailure(BulkFailure failure) {
+    failures.add(failure);
+  }
+
+  public int getInsertedCount() {
+    return insertedCount;
+  }
+
+  /**
+   * @return the replaced items found by id.
+   */
+  public int getMatchedCount() {
+    return matchedCount;
+  }
+
+  public int getModifiedCount() {
+    return modifiedCount;
+  }
+
+  /**
+   * @return the saved items not found by id, hence inserted.
+   */
+  public int getUpsertedCount() {
+    return upsertedCount;
+  }
+
+  public List<BulkFailure> getFailures() {
+    return Collections.unmodifiableList(failures);
+  }
+
+  public boolean hasFailures() {
+    return !failures.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "BulkReport{inserted=" + insertedCount + ", matched=" + matchedCount + ", modified=" + modifiedCount + ", upserted="
+        + upsertedCount + ", failures=" + failures.size() + "}";
+  }
+}
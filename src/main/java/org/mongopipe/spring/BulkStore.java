@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import java.util.Collection;
+
+/**
+ * Bulk writes for a store, extended by the @Store interface with its @Item type, e.g.
+ * <code>interface PizzaIngestion extends BulkStore&lt;Pizza&gt;</code>. The items are written to the collection of their @Item,
+ * in unordered bulkWrite batches, so a failed document does not stop the others.
+ */
+public interface BulkStore<T> {
+  /**
+   * Inserts the items, the ones without an id getting one from the server.
+   */
+  BulkReport insertAll(Collection<? extends T> items);
+
+  /**
+   * Replaces the items by id, inserting them if missing, and inserts the ones without an id.
+   */
+  BulkReport saveAll(Collection<? extends T> items);
+
+  /**
+   * Queues the item to be saved with the next write-behind flush, on size, time or shutdown, see
+   * {@link MongoPipeStarter#setWriteBehind}. Blocks while the buffer of the collection is full. The failures are reported to the
+   * {@link WriteBehindBuffers#setFailureListener failure listener}. Saves the item right away if the write-behind is not enabled.
+   */
+  void saveBehind(T item);
+
+  /**
+   * Writes the items queued for this store collection now.
+   */
+  void flush();
+}
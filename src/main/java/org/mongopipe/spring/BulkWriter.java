@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes documents encoded beforehand in unordered bulkWrite batches, mapping the write errors back to the items.
+ */
+final class BulkWriter {
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+  private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
+  private BulkWriter() {
+  }
+
+  /**
+   * @param items the written objects, reported with the failures.
+   * @param documents the items encoded, same order.
+   * @param upsert replace by _id, inserting if missing, instead of inserting.
+   */
+  static BulkReport write(MongoCollection<RawBsonDocument> collection, List<?> items, List<RawBsonDocument> documents, boolean upsert,
+      int batchSize) {
+    BulkReport report = new BulkReport();
+    String collectionName = collection.getNamespace().getCollectionName();
+    for (int start = 0; start < documents.size(); start += batchSize) {
+      int end = Math.min(start + batchSize, documents.size());
+      List<WriteModel<RawBsonDocument>> models = new ArrayList<>(end - start);
+      for (RawBsonDocument document : documents.subList(start, end)) {
+        BsonValue id = upsert ? document.get("_id") : null;
+        models.add(id == null ? new InsertOneModel<>(document) : new ReplaceOneModel<>(new BsonDocument("_id", id), document, UPSERT));
+      }
+      try {
+        report.add(collection.bulkWrite(models, UNORDERED));
+      } catch (MongoBulkWriteException e) {
+        report.add(e.getWriteResult());
+        Set<Integer> failed = new HashSet<>();
+        for (BulkWriteError error : e.getWriteErrors()) {
+          int index = start + error.getIndex();
+          failed.add(index);
+          report.addFailure(new BulkFailure(collectionName, items.get(index), index, error.getCode(), error.getMessage()));
+        }
+        if (e.getWriteConcernError() != null) {
+          // Written but not acknowledged as required, the rest of the batch is uncertain.
+          for (int index = start; index < end; index++) {
+            if (failed.contains(index)) {
+              continue;
+            }
+            report.addFailure(new BulkFailure(collectionName, items.get(index), index, e.getWriteConcernError().getCode(), e.getWriteConcernError().getMessage()));
+          }
+        }
+      } catch (MongoException e) {
+        for (int index = start; index < end; index++) {
+          report.addFailure(new BulkFailure(collectionName, items.get(index), index, e.getCode(), e.getMessage()));
+        }
+      }
+    }
+    return report;
+  }
+}
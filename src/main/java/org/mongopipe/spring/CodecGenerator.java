@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates at compile time the source of a Codec for a POJO, mapping the same fields as the driver POJO codec (@BsonId or an
+ * "id" property as "_id", @BsonProperty names, @BsonIgnore), reading and writing them directly instead of reflectively. Types
+ * using other mapping features (creators, discriminators, generic or array properties...) are left to the POJO codec.
+ */
+class CodecGenerator {
+  static final String CODEC_SUFFIX = "_MongoPipeCodec";
+  private static final String ANNOTATIONS = "org.bson.codecs.pojo.annotations.";
+  private static final String SUPPORT = GeneratedCodecSupport.class.getName();
+
+  private final Elements elements;
+
+  // How a property is read and written.
+  private enum Kind {
+    STRING("readString", "writeString(%s)"), INTEGER("readInteger", "writeInt32(%s)"), LONG("readLong", "writeInt64(%s)"),
+    DOUBLE("readDouble", "writeDouble(%s)"), FLOAT("readFloat", "writeDouble(%s)"), BOOLEAN("readBoolean", "writeBoolean(%s)"),
+    DATE("readDate", "writeDateTime(%s.getTime())"), OBJECT_ID("readObjectId", "writeObjectId(%s)"), ENUM(null, "writeString(%s.name())"),
+    DELEGATE(null, null);
+
+    final String reader;
+    final String writer;
+
+    Kind(String reader, String writer) {
+      this.reader = reader;
+      this.writer = writer;
+    }
+  }
+
+  private static class Property {
+    String bsonName;
+    String type;
+    String boxedType;
+    boolean primitive;
+    Kind kind;
+    String get;
+    // Format with the value.
+    String set;
+  }
+
+  /**
+   * Thrown for the types the generated codec would not map as the POJO codec does.
+   */
+  static class UnsupportedTypeException extends Exception {
+    UnsupportedTypeException(String message) {
+      super(message);
+    }
+  }
+
+  CodecGenerator(Elements elements) {
+    this.elements = elements;
+  }
+
+  static String codecSimpleName(TypeElement type) {
+    StringBuilder name = new StringBuilder(type.getSimpleName());
+    for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+      name.insert(0, enclosing.getSimpleName() + "_");
+    }
+    return name + CODEC_SUFFIX;
+  }
+
+  String getPackageName(TypeElement type) {
+    return elements.getPackageOf(type).getQualifiedName().toString();
+  }
+
+  /**
+   * @return the codec source.
+   */
+  String generate(TypeElement type) throws UnsupportedTypeException {
+    checkType(type);
+    List<Property> properties = findProperties(type);
+    String packageName = getPackageName(type);
+    String typeName = type.getQualifiedName().toString();
+    String codecName = codecSimpleName(type);
+
+    StringBuilder source = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      source.append("package ").append(packageName).append(";\n\n");
+    }
+    source.append("/**\n * Codec of ").append(typeName).append(" generated by ").append(StoreIndexProcessor.class.getName()).append(", do not edit.\n */\n");
+    source.append("public final class ").append(codecName).append(" implements org.bson.codecs.Codec<").append(typeName).append("> {\n");
+    source.append("  private final org.bson.codecs.configuration.CodecRegistry registry;\n");
+    for (int i = 0; i < properties.size(); i++) {
+      if (properties.get(i).kind == Kind.DELEGATE) {
+        source.append("  private org.bson.codecs.Codec<").append(properties.get(i).type).append("> codec").append(i).append(";\n");
+      }
+    }
+    source.append("\n  public ").append(codecName).append("(org.bson.codecs.configuration.CodecRegistry registry) {\n")
+        .append("    this.registry = registry;\n  }\n");
+
+    source.append("\n  @Override\n  public ").append(typeName)
+        .append(" decode(org.bson.BsonReader reader, org.bson.codecs.DecoderContext decoderContext) {\n")
+        .append("    ").append(typeName).append(" instance = new ").append(typeName).append("();\n")
+        .append("    reader.readStartDocument();\n")
+        .append("    while (reader.readBsonType() != org.bson.BsonType.END_OF_DOCUMENT) {\n")
+        .append("      switch (reader.readName()) {\n");
+    for (int i = 0; i < properties.size(); i++) {
+      Property property = properties.get(i);
+      String read = readExpression(property, i);
+      source.append("        case \"").append(escape(property.bsonName)).append("\": {\n");
+      if (property.primitive) {
+        source.append("          ").append(property.boxedType).append(" value = ").append(read).append(";\n")
+            .append("          if (value != null) {\n")
+            .append("            ").append(String.format(property.set, "value")).append(";\n")
+            .append("          }\n");
+      } else {
+        source.append("          ").append(String.format(property.set, read)).append(";\n");
+      }
+      source.append("          break;\n        }\n");
+    }
+    source.append("        default:\n          reader.skipValue();\n      }\n    }\n")
+        .append("    reader.readEndDocument();\n    return instance;\n  }\n");
+
+    source.append("\n  @Override\n  public void encode(org.bson.BsonWriter writer, ").append(typeName)
+        .append(" value, org.bson.codecs.EncoderContext encoderContext) {\n")
+        .append("    writer.writeStartDocument();\n");
+    for (int i = 0; i < properties.size(); i++) {
+      Property property = properties.get(i);
+      String write = writeStatement(property, i, "propertyValue");
+      if (property.primitive) {
+        source.append("    writer.writeName(\"").append(escape(property.bsonName)).append("\");\n")
+            .append("    ").append(writeStatement(property, i, property.get)).append(";\n");
+      } else {
+        source.append("    {\n")
+            .append("      ").append(property.type).append(" propertyValue = ").append(property.get).append(";\n");
+        if (i == 0 && property.bsonName.equals("_id") && property.kind == Kind.OBJECT_ID) {
+          // Like the POJO codec, generate the missing id of an inserted document.
+          source.append("      if (propertyValue == null && encoderContext.isEncodingCollectibleDocument()) {\n")
+              .append("        propertyValue = new org.bson.types.ObjectId();\n")
+              .append("        ").append(String.format(property.set.replace("instance.", "value."), "propertyValue")).append(";\n")
+              .append("      }\n");
+        }
+        source
+            .append("      if (propertyValue != null) {\n")
+            .append("        writer.writeName(\"").append(escape(property.bsonName)).append("\");\n")
+            .append("        ").append(write).append(";\n")
+            .append("      }\n    }\n");
+      }
+    }
+    source.append("    writer.writeEndDocument();\n  }\n");
+
+    source.append("\n  @Override\n  public Class<").append(typeName).append("> getEncoderClass() {\n")
+        .append("    return ").append(typeName).append(".class;\n  }\n");
+    for (int i = 0; i < properties.size(); i++) {
+      Property property = properties.get(i);
+      if (property.kind == Kind.DELEGATE) {
+        source.append("\n  private org.bson.codecs.Codec<").append(property.type).append("> codec").append(i).append("() {\n")
+            .append("    if (codec").append(i).append(" == null) {\n")
+            .append("      codec").append(i).append(" = registry.get(").append(property.type).append(".class);\n")
+            .append("    }\n    return codec").append(i).append(";\n  }\n");
+      }
+    }
+    source.append("}\n");
+    return source.toString();
+  }
+
+  private static String readExpression(Property property, int index) {
+    switch (property.kind) {
+      case ENUM:
+        return SUPPORT + ".readEnum(reader, " + property.type + ".class)";
+      case DELEGATE:
+        return SUPPORT + ".decode(reader, decoderContext, codec" + index + "())";
+      default:
+        return SUPPORT + "." + property.kind.reader + "(reader)";
+    }
+  }
+
+  private static String writeStatement(Property property, int index, String value) {
+    if (property.kind == Kind.DELEGATE) {
+      return "encoderContext.encodeWithChildContext(codec" + index + "(), writer, " + value + ")";
+    }
+    return "writer." + String.format(property.kind.writer, value);
+  }
+
+  private void checkType(TypeElement type) throws UnsupportedTypeException {
+    if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT) || type.getModifiers().contains(Modifier.PRIVATE)
+        || !type.getTypeParameters().isEmpty()) {
+      throw new UnsupportedTypeException("not a concrete, non generic, non private class");
+    }
+    if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+      throw new UnsupportedTypeException("inner class");
+    }
+    for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+      if (enclosing.getModifiers().contains(Modifier.PRIVATE)) {
+        throw new UnsupportedTypeException("enclosed in a private class");
+      }
+    }
+    if (hasMappingAnnotation(type, "BsonDiscriminator")) {
+      throw new UnsupportedTypeException("uses a discriminator");
+    }
+    boolean noArgConstructor = false;
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      if (hasMappingAnnotation(constructor, "BsonCreator")) {
+        throw new UnsupportedTypeException("uses a @BsonCreator");
+      }
+      noArgConstructor |= constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE);
+    }
+    if (!noArgConstructor) {
+      throw new UnsupportedTypeException("no accessible constructor without arguments");
+    }
+  }
+
+  private List<Property> findProperties(TypeElement type) throws UnsupportedTypeException {
+    Map<String, Property> properties = new LinkedHashMap<>();
+    Set<String> fieldNames = new HashSet<>();
+    List<ExecutableElement> methods = new ArrayList<>();
+    Property idProperty = null;
+    Property conventionIdProperty = null;
+    for (TypeElement current = type; current != null && !current.getQualifiedName().contentEquals("java.lang.Object"); current = superclass(current)) {
+      methods.addAll(ElementFilter.methodsIn(current.getEnclosedElements()));
+      for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+        String name = field.getSimpleName().toString();
+        if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.TRANSIENT) || !fieldNames.add(name)) {
+          continue;
+        }
+        if (hasMappingAnnotation(field, "BsonExtraElements") || hasMappingAnnotation(field, "BsonRepresentation")) {
+          throw new UnsupportedTypeException("field " + name + " uses an unsupported mapping annotation");
+        }
+        ExecutableElement getter = findGetter(current, name, field.asType());
+        ExecutableElement setter = findSetter(current, name, field.asType());
+        if (hasMappingAnnotation(field, "BsonIgnore") || (getter != null && hasMappingAnnotation(getter, "BsonIgnore"))) {
+          continue;
+        }
+        // As the POJO codec: read through a public getter or a public field, written through a public setter or a public
+        // non final field.
+        boolean publicField = field.getModifiers().contains(Modifier.PUBLIC);
+        boolean finalField = field.getModifiers().contains(Modifier.FINAL);
+        Property property = new Property();
+        if (getter != null && getter.getModifiers().contains(Modifier.PUBLIC)) {
+          property.get = "value." + getter.getSimpleName() + "()";
+        } else if (publicField) {
+          property.get = "value." + name;
+        }
+        if (setter != null && setter.getModifiers().contains(Modifier.PUBLIC) && !finalField) {
+          property.set = "instance." + setter.getSimpleName() + "(%s)";
+        } else if (publicField && !finalField) {
+          property.set = "instance." + name + " = %s";
+        }
+        if (property.get == null && property.set == null) {
+          continue; // Not mapped.
+        }
+        if (property.get == null || property.set == null) {
+          throw new UnsupportedTypeException("property " + name + " is only " + (property.get == null ? "decoded" : "encoded"));
+        }
+        describeType(property, field.asType(), name);
+        String bsonName = propertyName(field);
+        if (bsonName == null && getter != null) {
+          bsonName = propertyName(getter);
+        }
+        property.bsonName = bsonName != null ? bsonName : name;
+        if (hasMappingAnnotation(field, "BsonId") || (getter != null && hasMappingAnnotation(getter, "BsonId"))) {
+          idProperty = property;
+        } else if (bsonName == null && (name.equals("_id") || name.equals("id")) && (conventionIdProperty == null || name.equals("_id"))) {
+          conventionIdProperty = property;
+        }
+        properties.put(name, property);
+      }
+    }
+    // The POJO codec also maps the getters without a field.
+    for (ExecutableElement method : methods) {
+      String propertyName = getterPropertyName(method);
+      if (propertyName != null && !fieldNames.contains(propertyName) && method.getModifiers().contains(Modifier.PUBLIC)
+          && !method.getModifiers().contains(Modifier.STATIC) && !hasMappingAnnotation(method, "BsonIgnore")) {
+        throw new UnsupportedTypeException("getter " + method.getSimpleName() + " without a field");
+      }
+    }
+    Property id = idProperty != null ? idProperty : conventionIdProperty;
+    List<Property> result = new ArrayList<>();
+    if (id != null) {
+      id.bsonName = "_id";
+      result.add(id); // Written first, as the POJO codec does.
+    }
+    for (Property property : properties.values()) {
+      if (property != id) {
+        result.add(property);
+      }
+    }
+    return result;
+  }
+
+  private void describeType(Property property, TypeMirror type, String name) throws UnsupportedTypeException {
+    property.primitive = type.getKind().isPrimitive();
+    switch (type.getKind()) {
+      case INT:
+        set(property, Kind.INTEGER, "int", "Integer");
+        return;
+      case LONG:
+        set(property, Kind.LONG, "long", "Long");
+        return;
+      case DOUBLE:
+        set(property, Kind.DOUBLE, "double", "Double");
+        return;
+      case FLOAT:
+        set(property, Kind.FLOAT, "float", "Float");
+        return;
+      case BOOLEAN:
+        set(property, Kind.BOOLEAN, "boolean", "Boolean");
+        return;
+      case DECLARED:
+        break;
+      default:
+        throw new UnsupportedTypeException("property " + name + " of type " + type);
+    }
+    DeclaredType declaredType = (DeclaredType) type;
+    if (!declaredType.getTypeArguments().isEmpty()) {
+      throw new UnsupportedTypeException("property " + name + " of generic type " + type);
+    }
+    TypeElement element = (TypeElement) declaredType.asElement();
+    String typeName = element.getQualifiedName().toString();
+    switch (typeName) {
+      case "java.lang.String":
+        set(property, Kind.STRING, typeName, typeName);
+        return;
+      case "java.lang.Integer":
+        set(property, Kind.INTEGER, typeName, typeName);
+        return;
+      case "java.lang.Long":
+        set(property, Kind.LONG, typeName, typeName);
+        return;
+      case "java.lang.Double":
+        set(property, Kind.DOUBLE, typeName, typeName);
+        return;
+      case "java.lang.Float":
+        set(property, Kind.FLOAT, typeName, typeName);
+        return;
+      case "java.lang.Boolean":
+        set(property, Kind.BOOLEAN, typeName, typeName);
+        return;
+      case "java.util.Date":
+        set(property, Kind.DATE, typeName, typeName);
+        return;
+      case "org.bson.types.ObjectId":
+        set(property, Kind.OBJECT_ID, typeName, typeName);
+        return;
+      default:
+        if (element.getModifiers().contains(Modifier.PRIVATE)) {
+          throw new UnsupportedTypeException("property " + name + " of private type " + type);
+        }
+        set(property, element.getKind() == ElementKind.ENUM ? Kind.ENUM : Kind.DELEGATE, typeName, typeName);
+    }
+  }
+
+  private static void set(Property property, Kind kind, String type, String boxedType) {
+    property.kind = kind;
+    property.type = type;
+    property.boxedType = boxedType;
+  }
+
+  private static TypeElement superclass(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+  }
+
+  private static String capitalize(String name) {
+    return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private static ExecutableElement findGetter(TypeElement type, String name, TypeMirror fieldType) {
+    for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+      String methodName = method.getSimpleName().toString();
+      if (method.getParameters().isEmpty() && !method.getModifiers().contains(Modifier.STATIC)
+          && (methodName.equals("get" + capitalize(name)) || (fieldType.getKind() == TypeKind.BOOLEAN && methodName.equals("is" + capitalize(name))))) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  private static ExecutableElement findSetter(TypeElement type, String name, TypeMirror fieldType) {
+    for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+      if (method.getSimpleName().contentEquals("set" + capitalize(name)) && method.getParameters().size() == 1
+          && !method.getModifiers().contains(Modifier.STATIC) && method.getParameters().get(0).asType().toString().equals(fieldType.toString())) {
+        return method;
+      }
+    }
+    return null;
+  }
+
+  private static String getterPropertyName(ExecutableElement method) {
+    String name = method.getSimpleName().toString();
+    if (!method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID || name.equals("getClass")) {
+      return null;
+    }
+    String property = name.startsWith("get") && name.length() > 3 ? name.substring(3)
+        : name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN ? name.substring(2) : null;
+    return property == null ? null : Character.toLowerCase(property.charAt(0)) + property.substring(1);
+  }
+
+  private static boolean hasMappingAnnotation(Element element, String simpleName) {
+    return findAnnotation(element, ANNOTATIONS + simpleName) != null;
+  }
+
+  // The @BsonProperty value, null if none.
+  private static String propertyName(Element element) {
+    AnnotationMirror annotation = findAnnotation(element, ANNOTATIONS + "BsonProperty");
+    if (annotation == null) {
+      return null;
+    }
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals("value")) {
+        String value = entry.getValue().getValue().toString();
+        return value.isEmpty() ? null : value;
+      }
+    }
+    return null;
+  }
+
+  static AnnotationMirror findAnnotation(Element element, String annotationName) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+
+  private static String escape(String text) {
+    return text.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Provides the codecs generated at compile time by {@link StoreIndexProcessor}, named after the class with the
+ * {@link CodecGenerator#CODEC_SUFFIX} suffix. Returns null for the other classes, left to the next providers (e.g. the POJO one).
+ * Only consulted for the classes the database registry has no codec for.
+ */
+public class GeneratedCodecProvider implements CodecProvider {
+  private final Map<Class<?>, Optional<Constructor<?>>> constructors = new ConcurrentHashMap<>();
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+    Optional<Constructor<?>> constructor = constructors.get(clazz);
+    if (constructor == null) {
+      constructor = constructors.computeIfAbsent(clazz, GeneratedCodecProvider::findConstructor);
+    }
+    if (!constructor.isPresent()) {
+      return null;
+    }
+    try {
+      return (Codec<T>) constructor.get().newInstance(registry);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create the generated codec of " + clazz.getName(), e);
+    }
+  }
+
+  private static Optional<Constructor<?>> findConstructor(Class<?> clazz) {
+    if (clazz.isPrimitive() || clazz.isArray() || clazz.getName().startsWith("java.") || clazz.getClassLoader() == null) {
+      return Optional.empty();
+    }
+    Package classPackage = clazz.getPackage();
+    String packageName = classPackage == null ? "" : classPackage.getName();
+    String simpleName = clazz.getName().substring(packageName.isEmpty() ? 0 : packageName.length() + 1).replace('$', '_');
+    String codecName = (packageName.isEmpty() ? "" : packageName + ".") + simpleName + CodecGenerator.CODEC_SUFFIX;
+    try {
+      Class<?> codecClass = Class.forName(codecName, false, clazz.getClassLoader());
+      return Optional.of(codecClass.getConstructor(CodecRegistry.class));
+    } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+      return Optional.empty();
+    }
+  }
+}
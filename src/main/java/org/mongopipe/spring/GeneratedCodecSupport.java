@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.BsonInvalidOperationException;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * Used by the codecs generated by {@link StoreIndexProcessor}, decoding the values as the POJO codec does: null for a BSON null
+ * and numbers converted when there is no loss.
+ */
+public final class GeneratedCodecSupport {
+
+  private GeneratedCodecSupport() {
+  }
+
+  private static boolean readNull(BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.NULL) {
+      reader.readNull();
+      return true;
+    }
+    return false;
+  }
+
+  public static String readString(BsonReader reader) {
+    if (readNull(reader)) {
+      return null;
+    }
+    return reader.getCurrentBsonType() == BsonType.SYMBOL ? reader.readSymbol() : reader.readString();
+  }
+
+  public static Boolean readBoolean(BsonReader reader) {
+    return readNull(reader) ? null : reader.readBoolean();
+  }
+
+  public static Integer readInteger(BsonReader reader) {
+    if (readNull(reader)) {
+      return null;
+    }
+    BsonType type = reader.getCurrentBsonType();
+    switch (type) {
+      case INT32:
+        return reader.readInt32();
+      case INT64:
+        long longValue = reader.readInt64();
+        if ((int) longValue != longValue) {
+          throw lossy(longValue, "Integer");
+        }
+        return (int) longValue;
+      case DOUBLE:
+        double doubleValue = reader.readDouble();
+        if ((int) doubleValue != doubleValue) {
+          throw lossy(doubleValue, "Integer");
+        }
+        return (int) doubleValue;
+      case DECIMAL128:
+        try {
+          return reader.readDecimal128().bigDecimalValue().intValueExact();
+        } catch (ArithmeticException e) {
+          throw new BsonInvalidOperationException("Could not convert a Decimal128 to Integer without loss");
+        }
+      default:
+        throw notNumeric(type);
+    }
+  }
+
+  public static Long readLong(BsonReader reader) {
+    if (readNull(reader)) {
+      return null;
+    }
+    BsonType type = reader.getCurrentBsonType();
+    switch (type) {
+      case INT32:
+        return (long) reader.readInt32();
+      case INT64:
+        return reader.readInt64();
+      case DOUBLE:
+        double doubleValue = reader.readDouble();
+        if ((long) doubleValue != doubleValue) {
+          throw lossy(doubleValue, "Long");
+        }
+        return (long) doubleValue;
+      case DECIMAL128:
+        try {
+          return reader.readDecimal128().bigDecimalValue().longValueExact();
+        } catch (ArithmeticException e) {
+          throw new BsonInvalidOperationException("Could not convert a Decimal128 to Long without loss");
+        }
+      default:
+        throw notNumeric(type);
+    }
+  }
+
+  public static Double readDouble(BsonReader reader) {
+    if (readNull(reader)) {
+      return null;
+    }
+    BsonType type = reader.getCurrentBsonType();
+    switch (type) {
+      case INT32:
+        return (double) reader.readInt32();
+      case INT64:
+        long longValue = reader.readInt64();
+        if ((long) (double) longValue != longValue) {
+          throw lossy(longValue, "Double");
+        }
+        return (double) longValue;
+      case DOUBLE:
+        return reader.readDouble();
+      case DECIMAL128:
+        return reader.readDecimal128().doubleValue();
+      default:
+        throw notNumeric(type);
+    }
+  }
+
+  public static Float readFloat(BsonReader reader) {
+    Double value = readDouble(reader);
+    if (value == null) {
+      return null;
+    }
+    if (Math.abs(value) > Float.MAX_VALUE && !value.isInfinite()) {
+      throw lossy(value, "Float");
+    }
+    return value.floatValue();
+  }
+
+  public static Date readDate(BsonReader reader) {
+    return readNull(reader) ? null : new Date(reader.readDateTime());
+  }
+
+  public static ObjectId readObjectId(BsonReader reader) {
+    return readNull(reader) ? null : reader.readObjectId();
+  }
+
+  public static <E extends Enum<E>> E readEnum(BsonReader reader, Class<E> enumClass) {
+    String name = readString(reader);
+    return name == null ? null : Enum.valueOf(enumClass, name);
+  }
+
+  /**
+   * Decodes a value with the codec of its type, found in the registry.
+   */
+  public static <T> T decode(BsonReader reader, DecoderContext decoderContext, Codec<T> codec) {
+    return readNull(reader) ? null : decoderContext.decodeWithChildContext(codec, reader);
+  }
+
+  private static BsonInvalidOperationException lossy(Object value, String type) {
+    return new BsonInvalidOperationException("Could not convert " + value + " to " + type + " without loss");
+  }
+
+  private static BsonInvalidOperationException notNumeric(BsonType type) {
+    return new BsonInvalidOperationException("Invalid numeric type, found: " + type);
+  }
+}
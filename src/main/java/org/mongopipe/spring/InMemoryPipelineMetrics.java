@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lightweight metrics kept in memory, used when Micrometer is not available. The latencies are counted in fixed buckets.
+ */
+public class InMemoryPipelineMetrics implements PipelineMetrics {
+  // Upper bounds of the latency buckets, the last bucket being unbounded.
+  static final long[] BUCKET_BOUNDS_MICROS = {100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000,
+      2500000, 5000000, 10000000};
+
+  private final Map<String, PipelineStats> stats = new ConcurrentHashMap<>();
+
+  @Override
+  public PipelineStats forPipeline(String pipelineId) {
+    PipelineStats pipelineStats = stats.get(pipelineId);
+    return pipelineStats != null ? pipelineStats : stats.computeIfAbsent(pipelineId, PipelineStats::new);
+  }
+
+  /**
+   * @return the statistics by pipeline id, sorted.
+   */
+  public Map<String, PipelineStats> getStats() {
+    return new TreeMap<>(stats);
+  }
+
+  public static class PipelineStats implements PipelineMeter {
+    private final String pipelineId;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder documents = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MICROS.length + 1];
+
+    PipelineStats(String pipelineId) {
+      this.pipelineId = pipelineId;
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    @Override
+    public void recordCall(long durationNanos, boolean error) {
+      calls.increment();
+      if (error) {
+        errors.increment();
+      }
+      totalNanos.add(durationNanos);
+      maxNanos.accumulate(durationNanos);
+      long micros = durationNanos / 1000;
+      int bucket = 0;
+      while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+        bucket++;
+      }
+      buckets[bucket].increment();
+    }
+
+    @Override
+    public void recordDocuments(long count, long bytes) {
+      documents.add(count);
+      this.bytes.add(bytes);
+    }
+
+    public String getPipelineId() {
+      return pipelineId;
+    }
+
+    public long getCalls() {
+      return calls.sum();
+    }
+
+    public long getErrors() {
+      return errors.sum();
+    }
+
+    public long getDocuments() {
+      return documents.sum();
+    }
+
+    public long getBytes() {
+      return bytes.sum();
+    }
+
+    public double getMeanMillis() {
+      long count = calls.sum();
+      return count == 0 ? 0 : totalNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxMillis() {
+      return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @param percentile e.g. 0.99
+     * @return the upper bound of the latency bucket holding the percentile, infinity if above the last bucket.
+     */
+    public double getPercentileMillis(double percentile) {
+      long count = calls.sum();
+      long rank = (long) Math.ceil(percentile * count);
+      long seen = 0;
+      for (int i = 0; i < BUCKET_BOUNDS_MICROS.length; i++) {
+        seen += buckets[i].sum();
+        if (seen >= rank) {
+          return BUCKET_BOUNDS_MICROS[i] / 1000.0;
+        }
+      }
+      return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public String toString() {
+      return pipelineId + ": calls=" + getCalls() + ", errors=" + getErrors() + ", documents=" + getDocuments() + ", bytes=" + getBytes()
+          + ", mean=" + String.format("%.2f", getMeanMillis()) + "ms, p99<=" + getPercentileMillis(0.99) + "ms, max=" + String.format("%.2f", getMaxMillis()) + "ms";
+    }
+  }
+}
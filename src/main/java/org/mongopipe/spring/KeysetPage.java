@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+/**
+ * Page request of a @PipelineRun method returning a {@link PipelineSlice}, given as one of its parameters and not bound to the
+ * pipeline. Instead of skipping the previous pages, the page starts after the sort key of the previous page last document,
+ * carried by the token, so that with an index matching the sort a deep page costs as much as the first one.
+ * <p>
+ * The pipeline must end with a $sort, optionally followed by stages changing neither the order nor the count of the documents
+ * ($project, $addFields, $set, $unset, $lookup, $replaceRoot, $replaceWith). "_id" is added last to the sort to break ties, so it
+ * must be in the results. The sort key values are compared within their type, so each sort field needs a single type, nulls
+ * aside.
+ */
+public final class KeysetPage {
+  private final String token;
+  private final int size;
+
+  private KeysetPage(String token, int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("The page size must be positive: " + size);
+    }
+    this.token = token;
+    this.size = size;
+  }
+
+  public static KeysetPage first(int size) {
+    return new KeysetPage(null, size);
+  }
+
+  /**
+   * @param token the {@link PipelineSlice#getNextToken()} of the previous page.
+   */
+  public static KeysetPage after(String token, int size) {
+    if (token == null) {
+      throw new IllegalArgumentException("No page token");
+    }
+    return new KeysetPage(token, size);
+  }
+
+  /**
+   * @return null for the first page.
+   */
+  public String getToken() {
+    return token;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "KeysetPage{size=" + size + (token == null ? "" : ", token=" + token) + "}";
+  }
+}
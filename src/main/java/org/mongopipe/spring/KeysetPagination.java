@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.BsonArray;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites a pipeline for a {@link KeysetPage}: "_id" added to its final $sort, then a $match seeking after the token sort key
+ * and a $limit of one more than the page size, to know if there is a next page. The server moves the $match before the $sort
+ * and merges the $sort with the $limit, so both run on the sort index if there is one.
+ * The next page token is read from the results, so the stages after the $sort must keep the sort fields unchanged.
+ */
+final class KeysetPagination {
+  // Keep the order and count of the sorted documents, allowed after the $sort if not changing the sort fields.
+  private static final Set<String> ORDER_PRESERVING_STAGES = new HashSet<>(Arrays.asList("$project", "$addFields", "$set", "$unset",
+      "$lookup"));
+  private static final BsonInt32 INCLUDE = new BsonInt32(1);
+
+  private final String pipelineId;
+  private final int sortIndex;
+  private final BsonDocument sort;
+
+  private KeysetPagination(String pipelineId, int sortIndex, BsonDocument sort) {
+    this.pipelineId = pipelineId;
+    this.sortIndex = sortIndex;
+    this.sort = sort;
+  }
+
+  /**
+   * @throws MongoPipeConfigException if the pipeline does not end with a $sort.
+   */
+  static KeysetPagination of(String pipelineId, List<BsonDocument> stages) {
+    int sortIndex = -1;
+    for (int i = stages.size() - 1; i >= 0; i--) {
+      String stageName = stages.get(i).isEmpty() ? "" : stages.get(i).getFirstKey();
+      if (stageName.equals("$sort")) {
+        sortIndex = i;
+        break;
+      }
+      if (!ORDER_PRESERVING_STAGES.contains(stageName)) {
+        throw new MongoPipeConfigException("Pipeline '" + pipelineId + "' can not be paged, " + stageName + " follows its final $sort");
+      }
+    }
+    if (sortIndex < 0) {
+      throw new MongoPipeConfigException("Pipeline '" + pipelineId + "' can not be paged, it needs a final $sort");
+    }
+    BsonDocument sort = new BsonDocument();
+    for (Map.Entry<String, BsonValue> entry : stages.get(sortIndex).getDocument("$sort").entrySet()) {
+      if (!entry.getValue().isNumber()) {
+        throw new MongoPipeConfigException("Pipeline '" + pipelineId + "' can not be paged on the " + entry.getKey() + " sort " + entry.getValue());
+      }
+      sort.append(entry.getKey(), new BsonInt32(entry.getValue().asNumber().intValue() < 0 ? -1 : 1));
+    }
+    if (!sort.containsKey("_id")) {
+      sort.append("_id", INCLUDE);
+    }
+    for (BsonDocument stage : stages.subList(sortIndex + 1, stages.size())) {
+      for (String field : sort.keySet()) {
+        if (changes(stage, field)) {
+          throw new MongoPipeConfigException("Pipeline '" + pipelineId + "' can not be paged, " + stage.getFirstKey() + " after its final "
+              + "$sort changes the sort field " + field);
+        }
+      }
+    }
+    return new KeysetPagination(pipelineId, sortIndex, sort);
+  }
+
+  // Whether the order preserving stage can remove, rename or overwrite the field.
+  private static boolean changes(BsonDocument stage, String field) {
+    String stageName = stage.getFirstKey();
+    BsonValue value = stage.get(stageName);
+    switch (stageName) {
+      case "$project":
+        return !keeps(value.asDocument(), field);
+      case "$unset":
+        for (BsonValue unset : value.isArray() ? value.asArray() : new BsonArray(Collections.singletonList(value))) {
+          if (!unset.isString() || overlaps(unset.asString().getValue(), field)) {
+            return true;
+          }
+        }
+        return false;
+      case "$lookup":
+        return !value.asDocument().isString("as") || overlaps(value.asDocument().getString("as").getValue(), field);
+      default: // $addFields and $set.
+        for (String added : value.asDocument().keySet()) {
+          if (overlaps(added, field)) {
+            return true;
+          }
+        }
+        return false;
+    }
+  }
+
+  private static boolean keeps(BsonDocument projection, String field) {
+    boolean exclusion = true;
+    for (Map.Entry<String, BsonValue> entry : projection.entrySet()) {
+      if (!entry.getKey().equals("_id") && !isFalse(entry.getValue())) {
+        exclusion = false;
+      }
+    }
+    boolean overlapping = false;
+    for (Map.Entry<String, BsonValue> entry : projection.entrySet()) {
+      String projected = entry.getKey();
+      if (field.equals(projected) || field.startsWith(projected + ".")) {
+        // The field itself or a parent, kept if included as is.
+        return isLiteralTrue(entry.getValue());
+      }
+      overlapping |= projected.startsWith(field + ".");
+    }
+    // _id is included by default, the rest only by an exclusion projection.
+    return !overlapping && (exclusion || field.equals("_id") || field.startsWith("_id."));
+  }
+
+  private static boolean overlaps(String path, String field) {
+    return path.equals(field) || path.startsWith(field + ".") || field.startsWith(path + ".");
+  }
+
+  private static boolean isFalse(BsonValue value) {
+    return value.isNumber() ? value.asNumber().intValue() == 0 : value.isBoolean() && !value.asBoolean().getValue();
+  }
+
+  private static boolean isLiteralTrue(BsonValue value) {
+    return value.isNumber() ? value.asNumber().intValue() != 0 : value.isBoolean() && value.asBoolean().getValue();
+  }
+
+  List<BsonDocument> apply(List<BsonDocument> stages, KeysetPage page) {
+    List<BsonDocument> result = new ArrayList<>(stages.size() + 2);
+    result.addAll(stages.subList(0, sortIndex));
+    result.add(new BsonDocument("$sort", sort));
+    if (page.getToken() != null) {
+      result.add(new BsonDocument("$match", seekFilter(decodeToken(page.getToken()))));
+    }
+    result.add(new BsonDocument("$limit", new BsonInt32(page.getSize() + 1)));
+    // Missing sort fields made null, as they are sorted, so that a field missing from a result means it was projected out.
+    BsonDocument explicitFields = new BsonDocument();
+    for (String field : sort.keySet()) {
+      if (!field.equals("_id")) {
+        explicitFields.append(field, new BsonDocument("$ifNull", new BsonArray(Arrays.asList(new BsonString("$" + field), BsonNull.VALUE))));
+      }
+    }
+    if (!explicitFields.isEmpty()) {
+      result.add(new BsonDocument("$addFields", explicitFields));
+    }
+    result.addAll(stages.subList(sortIndex + 1, stages.size()));
+    return result;
+  }
+
+  /**
+   * @return the projection also including the sort fields, needed for the next page token.
+   */
+  BsonDocument includeSortFields(BsonDocument projection) {
+    if (projection == null) {
+      return null;
+    }
+    BsonDocument result = projection.clone();
+    for (String field : sort.keySet()) {
+      if (!isIncluded(result, field)) {
+        result.put(field, INCLUDE);
+      }
+    }
+    return result;
+  }
+
+  // Also by a parent field, as "a" and "a.b" can not be both projected.
+  private static boolean isIncluded(BsonDocument projection, String field) {
+    for (int dot = field.indexOf('.'); dot > 0; dot = field.indexOf('.', dot + 1)) {
+      if (isTrue(projection.get(field.substring(0, dot)))) {
+        return true;
+      }
+    }
+    return isTrue(projection.get(field));
+  }
+
+  private static boolean isTrue(BsonValue value) {
+    return value != null && (value.isNumber() ? value.asNumber().intValue() != 0 : !value.isBoolean() || value.asBoolean().getValue());
+  }
+
+  /**
+   * @param results up to one more than the page size.
+   */
+  PipelineSlice<RawBsonDocument> toSlice(List<RawBsonDocument> results, int size) {
+    if (results.size() <= size) {
+      return new PipelineSlice<>(results, null, size);
+    }
+    List<RawBsonDocument> content = results.subList(0, size);
+    return new PipelineSlice<>(content, encodeToken(content.get(size - 1)), size);
+  }
+
+  // The sort key values of the last document.
+  private String encodeToken(RawBsonDocument last) {
+    BsonDocument key = new BsonDocument();
+    for (String field : sort.keySet()) {
+      BsonValue value = getPath(last, field);
+      if (value == null) {
+        throw new MongoPipeConfigException("Pipeline '" + pipelineId + "' can not be paged, the results need the sort field " + field);
+      }
+      key.append(field, value);
+    }
+    BasicOutputBuffer buffer = new BasicOutputBuffer();
+    new BsonDocumentCodec().encode(new BsonBinaryWriter(buffer), key, EncoderContext.builder().build());
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.toByteArray());
+  }
+
+  private BsonDocument decodeToken(String token) {
+    BsonDocument key;
+    try {
+      key = new RawBsonDocument(Base64.getUrlDecoder().decode(token)).clone();
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Invalid page token for pipeline '" + pipelineId + "'", e);
+    }
+    if (!new ArrayList<>(key.keySet()).equals(new ArrayList<>(sort.keySet()))) {
+      throw new IllegalArgumentException("The page token is not for the sort " + sort.toJson() + " of pipeline '" + pipelineId + "'");
+    }
+    return key;
+  }
+
+  private static BsonValue getPath(BsonDocument document, String path) {
+    BsonValue value = document;
+    for (String field : path.split("\\.")) {
+      if (!value.isDocument()) {
+        return null;
+      }
+      value = value.asDocument().get(field);
+      if (value == null) {
+        return null;
+      }
+    }
+    return value;
+  }
+
+  /**
+   * For the sort {a: 1, _id: 1} and the key {a: x, _id: y}: {a: {$gte: x}, $or: [{a: {$gt: x}}, {a: x, _id: {$gt: y}}]}, the
+   * first condition bounding the index scan. Null and missing sort before the other values.
+   */
+  BsonDocument seekFilter(BsonDocument key) {
+    List<String> fields = new ArrayList<>(sort.keySet());
+    BsonArray branches = new BsonArray();
+    for (int i = 0; i < fields.size(); i++) {
+      String field = fields.get(i);
+      BsonValue value = key.get(field);
+      boolean ascending = sort.getInt32(field).getValue() > 0;
+      if (!ascending && value.isNull()) {
+        continue; // Nothing after null descending.
+      }
+      BsonDocument branch = new BsonDocument();
+      for (int j = 0; j < i; j++) {
+        branch.append(fields.get(j), new BsonDocument("$eq", key.get(fields.get(j))));
+      }
+      branch.append(field, value.isNull() ? new BsonDocument("$ne", BsonNull.VALUE) : ascending ? new BsonDocument("$gt", value) : not("$gte", value));
+      branches.add(branch);
+    }
+    if (branches.isEmpty()) {
+      return new BsonDocument("_id", new BsonDocument("$in", new BsonArray())); // No document after.
+    }
+    String first = fields.get(0);
+    BsonValue firstValue = key.get(first);
+    boolean firstAscending = sort.getInt32(first).getValue() > 0;
+    BsonDocument filter = new BsonDocument();
+    if (!firstValue.isNull()) {
+      filter.append(first, firstAscending ? new BsonDocument("$gte", firstValue) : not("$gt", firstValue));
+    } else if (!firstAscending) {
+      filter.append(first, new BsonDocument("$lte", BsonNull.VALUE));
+    }
+    filter.append("$or", branches);
+    return filter;
+  }
+
+  // Unlike $lt and $lte, also matching null and missing, sorted last when descending.
+  private static BsonDocument not(String operator, BsonValue value) {
+    return new BsonDocument("$not", new BsonDocument(operator, value));
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.mongopipe.core.Stores;
+
+/**
+ * Creates the store with Stores.from on first use.
+ */
+class LazyStore {
+  private final Class<?> storeClass;
+  private volatile Object store;
+
+  LazyStore(Class<?> storeClass) {
+    this.storeClass = storeClass;
+  }
+
+  Object get() {
+    Object result = store;
+    if (result == null) {
+      synchronized (this) {
+        result = store;
+        if (result == null) {
+          store = result = Stores.from(storeClass);
+        }
+      }
+    }
+    return result;
+  }
+
+  Class<?> getStoreClass() {
+    return storeClass;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ListableBeanFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the pipeline metrics to the application Micrometer registry:
+ * <ul>
+ *   <li>mongopipe.pipeline.run timer with percentiles histogram, tagged by pipeline and outcome.</li>
+ *   <li>mongopipe.pipeline.documents counter and mongopipe.pipeline.bytes summary of the decoded BSON sizes, tagged by pipeline.</li>
+ * </ul>
+ * Only loaded if Micrometer is on the classpath.
+ */
+public class MicrometerPipelineMetrics implements PipelineMetrics {
+  private final Supplier<MeterRegistry> meterRegistrySupplier;
+  private final Map<String, PipelineMeter> meters = new ConcurrentHashMap<>();
+
+  public MicrometerPipelineMetrics(Supplier<MeterRegistry> meterRegistrySupplier) {
+    this.meterRegistrySupplier = meterRegistrySupplier;
+  }
+
+  /**
+   * @return the metrics if the context defines a MeterRegistry bean, otherwise null. The registry itself is not created before
+   * first use.
+   */
+  static MicrometerPipelineMetrics create(ListableBeanFactory beanFactory) {
+    if (beanFactory.getBeanNamesForType(MeterRegistry.class, true, false).length == 0) {
+      return null;
+    }
+    return new MicrometerPipelineMetrics(() -> beanFactory.getBean(MeterRegistry.class));
+  }
+
+  @Override
+  public PipelineMeter forPipeline(String pipelineId) {
+    PipelineMeter meter = meters.get(pipelineId);
+    return meter != null ? meter : meters.computeIfAbsent(pipelineId, this::createMeter);
+  }
+
+  private PipelineMeter createMeter(String pipelineId) {
+    MeterRegistry registry = meterRegistrySupplier.get();
+    Timer success = timer(registry, pipelineId, "success");
+    Timer error = timer(registry, pipelineId, "error");
+    Counter documents = Counter.builder("mongopipe.pipeline.documents").tag("pipeline", pipelineId).register(registry);
+    DistributionSummary bytes = DistributionSummary.builder("mongopipe.pipeline.bytes").baseUnit("bytes").tag("pipeline", pipelineId).register(registry);
+    return new PipelineMeter() {
+      @Override
+      public void recordCall(long durationNanos, boolean failed) {
+        (failed ? error : success).record(durationNanos, TimeUnit.NANOSECONDS);
+      }
+
+      @Override
+      public void recordDocuments(long count, long byteCount) {
+        documents.increment(count);
+        if (byteCount > 0) {
+          bytes.record(byteCount);
+        }
+      }
+    };
+  }
+
+  private static Timer timer(MeterRegistry registry, String pipelineId, String outcome) {
+    return Timer.builder("mongopipe.pipeline.run")
+        .tag("pipeline", pipelineId)
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .register(registry);
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published once the pipelines migration finished and the application context is refreshed.
+ */
+public class MigrationCompletedEvent extends ApplicationEvent {
+  private final String migrationContextId;
+  private final Throwable failure;
+
+  public MigrationCompletedEvent(Object source, String migrationContextId, Throwable failure) {
+    super(source);
+    this.migrationContextId = migrationContextId;
+    this.failure = failure;
+  }
+
+  public String getMigrationContextId() {
+    return migrationContextId;
+  }
+
+  public boolean isSuccessful() {
+    return failure == null;
+  }
+
+  /**
+   * @return the migration error or null if successful.
+   */
+  public Throwable getFailure() {
+    return failure;
+  }
+}
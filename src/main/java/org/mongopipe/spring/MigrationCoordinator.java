@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.FileCopyUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+
+/**
+ * Coordinates the pipelines migration between many nodes starting at once against the same database:
+ * <ul>
+ *   <li>a lease document in the lock collection lets a single node migrate at a time, the others wait for it.</li>
+ *   <li>a SHA-256 checksum per pipeline source file is kept in the checksum collection, keyed by its path under the pipelines
+ *   path. If no source changed and all the source pipelines are still in the pipeline store the migration is skipped without
+ *   any write.</li>
+ * </ul>
+ * The lease expires, so a node dying while migrating does not block the others forever. A live node renews it while migrating,
+ * and does not record the checksums if it lost it anyway.
+ */
+public class MigrationCoordinator {
+  private static final Log LOG = CustomLogFactory.getLogger(MigrationCoordinator.class);
+
+  public enum Outcome {
+    /** This node ran the migration. */
+    MIGRATED,
+    /** No pipeline source changed since the last migration. */
+    UNCHANGED,
+    /** Another node ran the migration while this one waited. */
+    MIGRATED_BY_OTHER_NODE
+  }
+
+  private final MongoDatabase mongoDatabase;
+  private final String pipelinesPath;
+  private final String lockId;
+  private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID();
+  private String lockCollection = "pipeline_migration_lock";
+  private String checksumCollection = "pipeline_checksums";
+  private String pipelineStoreCollection = "pipeline_store";
+  private long leaseMillis = 60000L;
+  private long waitTimeoutMillis = 300000L;
+  private long pollMillis = 500L;
+
+  public MigrationCoordinator(MongoDatabase mongoDatabase, String pipelinesPath, String migrationContextId) {
+    this.mongoDatabase = mongoDatabase;
+    this.pipelinesPath = pipelinesPath;
+    this.lockId = "migration-" + migrationContextId;
+  }
+
+  /**
+   * Runs the migration on at most one node and only if a pipeline source changed.
+   */
+  public Outcome migrate(Runnable migration) {
+    Set<String> pipelineIds = new LinkedHashSet<>();
+    Map<String, String> checksums = readSourceChecksums(pipelineIds);
+    if (isUnchanged(checksums, pipelineIds)) {
+      return Outcome.UNCHANGED;
+    }
+    long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+    boolean waited = false;
+    while (!tryLock()) {
+      waited = true;
+      if (System.currentTimeMillis() > deadline) {
+        throw new MongoPipeConfigException("Timed out waiting for the pipelines migration lock '" + lockId + "' held by another node");
+      }
+      sleep();
+      if (isUnchanged(checksums, pipelineIds)) {
+        return Outcome.MIGRATED_BY_OTHER_NODE;
+      }
+    }
+    AtomicBoolean lockLost = new AtomicBoolean();
+    ScheduledExecutorService heartbeat = startHeartbeat(lockLost);
+    try {
+      // Another node could have finished between the first check and the lock.
+      if (isUnchanged(checksums, pipelineIds)) {
+        return waited ? Outcome.MIGRATED_BY_OTHER_NODE : Outcome.UNCHANGED;
+      }
+      migration.run();
+      if (lockLost.get() || !renewLock()) {
+        throw new MongoPipeConfigException("Lost the pipelines migration lock '" + lockId + "' while migrating, another node may have "
+            + "migrated at the same time. Increase the lease, currently " + leaseMillis + " ms");
+      }
+      saveChecksums(checksums);
+      return Outcome.MIGRATED;
+    } finally {
+      heartbeat.shutdownNow();
+      unlock();
+    }
+  }
+
+  private ScheduledExecutorService startHeartbeat(AtomicBoolean lockLost) {
+    ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mongopipe-migration-lock");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(1, leaseMillis / 3);
+    heartbeat.scheduleWithFixedDelay(() -> {
+      try {
+        if (!renewLock()) {
+          lockLost.set(true);
+          LOG.error("Lost the pipelines migration lock '" + lockId + "'");
+          throw new IllegalStateException("Lock lost"); // Stops the renewals.
+        }
+      } catch (MongoException e) {
+        // Retried on the next beat, the lease is 3 beats long.
+        LOG.warn("Could not renew the pipelines migration lock '" + lockId + "': " + e.getMessage());
+      }
+    }, period, period, TimeUnit.MILLISECONDS);
+    return heartbeat;
+  }
+
+  private boolean renewLock() {
+    return locks().updateOne(and(eq("_id", lockId), eq("owner", owner)),
+        Updates.set("expiresAt", new Date(System.currentTimeMillis() + leaseMillis))).getMatchedCount() == 1;
+  }
+
+  /**
+   * Checksums of the pipeline source files keyed by their path relative to the pipelines path, so that same named files in
+   * different folders do not collide. The ids of the pipelines read from the sources are added to pipelineIds.
+   */
+  Map<String, String> readSourceChecksums(Set<String> pipelineIds) {
+    Map<String, String> checksums = new LinkedHashMap<>();
+    String location = pipelinesPath.contains(":") ? pipelinesPath : "classpath*:" + pipelinesPath;
+    PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+    try {
+      for (Resource root : resolver.getResources(location)) {
+        String rootUrl = root.getURL().toString();
+        if (!rootUrl.endsWith("/")) {
+          rootUrl += "/";
+        }
+        for (Resource resource : resolver.getResources(rootUrl + "**/*.*")) {
+          if (!resource.isReadable()) {
+            continue;
+          }
+          byte[] content = FileCopyUtils.copyToByteArray(resource.getInputStream());
+          String url = resource.getURL().toString();
+          checksums.put(url.startsWith(rootUrl) ? url.substring(rootUrl.length()) : url, sha256(content));
+          addPipelineId(content, pipelineIds);
+        }
+      }
+    } catch (IOException e) {
+      throw new MongoPipeConfigException("Could not read the pipelines from " + location, e);
+    }
+    return checksums;
+  }
+
+  private static void addPipelineId(byte[] content, Set<String> pipelineIds) {
+    try {
+      Object id = Document.parse(new String(content, StandardCharsets.UTF_8)).get("_id");
+      if (id != null) {
+        pipelineIds.add(id.toString());
+      }
+    } catch (RuntimeException e) {
+      // Not a single pipeline document, only its checksum is tracked.
+    }
+  }
+
+  private static String sha256(byte[] content) {
+    try {
+      StringBuilder hex = new StringBuilder();
+      for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private boolean isUnchanged(Map<String, String> checksums, Set<String> pipelineIds) {
+    if (checksums.isEmpty()) {
+      return false; // Sources not found, let the migration decide.
+    }
+    Map<String, String> stored = new LinkedHashMap<>();
+    for (Document document : checksums().find()) {
+      stored.put(document.get("_id").toString(), document.getString("checksum"));
+    }
+    for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+      if (!checksum.getValue().equals(stored.get(checksum.getKey()))) {
+        return false;
+      }
+    }
+    // The pipeline store could have been dropped or restored, or a previous migration partially failed.
+    return pipelineIds.isEmpty()
+        || mongoDatabase.getCollection(pipelineStoreCollection).countDocuments(in("_id", pipelineIds)) == pipelineIds.size();
+  }
+
+  private void saveChecksums(Map<String, String> checksums) {
+    for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+      Document stored = checksums().find(eq("_id", checksum.getKey())).first();
+      if (stored == null || !checksum.getValue().equals(stored.getString("checksum"))) {
+        checksums().replaceOne(eq("_id", checksum.getKey()),
+            new Document("_id", checksum.getKey()).append("checksum", checksum.getValue()).append("migratedAt", new Date()).append("migratedBy", owner),
+            new ReplaceOptions().upsert(true));
+      }
+    }
+  }
+
+  private boolean tryLock() {
+    Date now = new Date();
+    try {
+      // Matches only a free (expired) lock, otherwise the upsert fails on the duplicate _id.
+      locks().findOneAndUpdate(and(eq("_id", lockId), lt("expiresAt", now)),
+          Updates.combine(Updates.set("owner", owner), Updates.set("expiresAt", new Date(now.getTime() + leaseMillis))),
+          new FindOneAndUpdateOptions().upsert(true));
+      LOG.info("Acquired pipelines migration lock '" + lockId + "' as " + owner);
+      return true;
+    } catch (MongoCommandException e) {
+      if (e.getErrorCode() == 11000) {
+        return false;
+      }
+      throw e;
+    } catch (MongoWriteException e) {
+      if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+        return false;
+      }
+      throw e;
+    }
+  }
+
+  private void unlock() {
+    locks().deleteOne(and(eq("_id", lockId), eq("owner", owner)));
+  }
+
+  private void sleep() {
+    try {
+      Thread.sleep(pollMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MongoPipeConfigException("Interrupted while waiting for the pipelines migration lock", e);
+    }
+  }
+
+  private MongoCollection<Document> locks() {
+    return mongoDatabase.getCollection(lockCollection);
+  }
+
+  private MongoCollection<Document> checksums() {
+    return mongoDatabase.getCollection(checksumCollection);
+  }
+
+  public void setLockCollection(String lockCollection) {
+    this.lockCollection = lockCollection;
+  }
+
+  public void setChecksumCollection(String checksumCollection) {
+    this.checksumCollection = checksumCollection;
+  }
+
+  /**
+   * How long the lock is held without being renewed, the migrating node renews it every third of it. Default 60 seconds.
+   */
+  /**
+   * The collection where the PipelineStore saves the pipelines, checked for the source pipelines before skipping the migration.
+   * Default "pipeline_store".
+   */
+  public void setPipelineStoreCollection(String pipelineStoreCollection) {
+    this.pipelineStoreCollection = pipelineStoreCollection;
+  }
+
+  public void setLeaseMillis(long leaseMillis) {
+    this.leaseMillis = leaseMillis;
+  }
+
+  /**
+   * How long a node waits for another node to finish migrating. Default 5 minutes.
+   */
+  public void setWaitTimeoutMillis(long waitTimeoutMillis) {
+    this.waitTimeoutMillis = waitTimeoutMillis;
+  }
+
+  public void setPollMillis(long pollMillis) {
+    this.pollMillis = pollMillis;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.mongopipe.core.exception.MongoPipeConfigException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Readiness handle of the pipelines migration started by {@link MongoPipeStarter}, registered as the "migrationStatus" bean.
+ * With asynchronous migration the stores wait on it before running a pipeline.
+ */
+public class MigrationStatus {
+  private final CompletableFuture<Void> future = new CompletableFuture<>();
+  private volatile MigrationCoordinator.Outcome outcome;
+
+  /**
+   * @return a new future completed when the migration finishes, exceptionally if it fails. Completing or cancelling it does not
+   * affect the migration status.
+   */
+  public CompletableFuture<Void> getFuture() {
+    return future.thenApply(result -> result);
+  }
+
+  public boolean isReady() {
+    return future.isDone() && !future.isCompletedExceptionally();
+  }
+
+  /**
+   * Blocks until the migration finishes.
+   *
+   * @throws MongoPipeConfigException if the migration failed or did not finish in time.
+   */
+  public void await(long timeoutMillis) {
+    if (isReady()) {
+      return;
+    }
+    try {
+      future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      throw new MongoPipeConfigException("Pipelines migration failed", e.getCause());
+    } catch (TimeoutException e) {
+      throw new MongoPipeConfigException("Pipelines migration not finished after " + timeoutMillis + " ms", e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MongoPipeConfigException("Interrupted while waiting for the pipelines migration", e);
+    }
+  }
+
+  /**
+   * @return what this node did, null while the migration is running or if it failed.
+   */
+  public MigrationCoordinator.Outcome getOutcome() {
+    return outcome;
+  }
+
+  void complete(MigrationCoordinator.Outcome outcome) {
+    this.outcome = outcome;
+    future.complete(null);
+  }
+
+  void fail(Throwable throwable) {
+    future.completeExceptionally(throwable);
+  }
+}
@@ -16,113 +16,719 @@
 
 package org.mongopipe.spring;
 
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
 import org.mongopipe.core.Pipelines;
 import org.mongopipe.core.Stores;
 import org.mongopipe.core.annotation.Store;
+import org.mongopipe.core.config.MigrationConfig;
 import org.mongopipe.core.config.MongoPipeConfig;
 import org.mongopipe.core.exception.MongoPipeConfigException;
 import org.mongopipe.core.logging.CustomLogFactory;
 import org.mongopipe.core.logging.Log;
 import org.mongopipe.core.runner.PipelineRunner;
+import org.mongopipe.core.runner.context.RunContextProvider;
 import org.mongopipe.core.store.PipelineStore;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.NoUniqueBeanDefinitionException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Start automatically the migration that will load the pipelines from a PipelineMigrationSource (usually the classpath).
  * Also load all the stores so that validation can be applied early and register them as beans.
+ * The migration can run asynchronously in parallel with the rest of the context startup, see {@link #setAsyncMigration}.
  */
-public class MongoPipeStarter implements InitializingBean, BeanDefinitionRegistryPostProcessor, ApplicationContextAware {
+public class MongoPipeStarter implements InitializingBean, DisposableBean, BeanDefinitionRegistryPostProcessor, ApplicationContextAware,
+    ApplicationListener<ContextRefreshedEvent> {
+  /**
+   * Name of the optional Executor bean running the CompletableFuture store methods.
+   */
+  public static final String ASYNC_EXECUTOR_BEAN_NAME = "mongoPipeExecutor";
   private static final Log LOG = CustomLogFactory.getLogger(MongoPipeStarter.class);
+  private final MongoPipeConfig mongoPipeConfig;
   private final String migrationContextId;
   private final String scanPackage;
   private Environment environment;
+  private ApplicationContext applicationContext;
+  private boolean storeIndexEnabled = true;
+  private final MigrationStatus migrationStatus = new MigrationStatus();
+  private final PipelineDefinitionCache pipelineDefinitionCache = new PipelineDefinitionCache(this::getMongoDatabase);
+  private final StoreSupport storeSupport = new StoreSupport(migrationStatus, new PipelineAggregator(pipelineDefinitionCache, this::getMongoDatabase));
+  private final PipelineAdvisor pipelineAdvisor = new PipelineAdvisor(storeSupport.pipelineAggregator);
+  private volatile MongoDatabase mongoDatabase;
+  private final AtomicBoolean migrationEventScheduled = new AtomicBoolean();
+  private volatile boolean started;
+  private boolean deferredStart;
+  private boolean asyncMigration;
+  private Executor migrationExecutor;
+  private boolean coordinatedMigration;
+  private StoreInitialization storeInitialization = StoreInitialization.EAGER;
+  private boolean metricsEnabled;
+  private boolean codecWarmUpEnabled = true;
+  private boolean contextMongoClientEnabled = true;
+  private final List<StoreInvocationHandler> storeInvocationHandlers = new ArrayList<>();
+  private final List<LazyStore> lazyStores = new ArrayList<>();
+  // The stores and the beans registered by the starter.
+  private final Set<String> pipelineBeanNames = new LinkedHashSet<>();
+
+  /**
+   * When the stores are created with Stores.from.
+   */
+  public enum StoreInitialization {
+    /** All at startup, so that invalid stores fail the startup. */
+    EAGER,
+    /** On first use of each store. */
+    LAZY,
+    /** In the background on all cores, the first use of a store not yet created waits for it. */
+    PARALLEL
+  }
 
   public MongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
     Stores.registerConfig(mongoPipeConfig);
+    this.mongoPipeConfig = mongoPipeConfig;
+    if (mongoPipeConfig.getStoreCollection() != null) {
+      pipelineDefinitionCache.setPipelineStoreCollection(mongoPipeConfig.getStoreCollection());
+    }
+    ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+    if (ClassUtils.isPresent("com.mongodb.reactivestreams.client.MongoClients", classLoader) && ClassUtils.isPresent("reactor.core.publisher.Flux", classLoader)) {
+      storeSupport.reactivePipelineAggregator = new ReactivePipelineAggregator(pipelineDefinitionCache, mongoPipeConfig.getUri(), mongoPipeConfig.getDatabaseName());
+    }
+    storeSupport.pipelineResultCache = new PipelineResultCache(pipelineDefinitionCache);
     migrationContextId = mongoPipeConfig.getId();
     scanPackage = mongoPipeConfig.getScanPackage();
   }
 
   @Override
   public void afterPropertiesSet() {
-    // Start migration on startup.
-    Pipelines.startMigration(migrationContextId);
+    storeSupport.starter = this::start;
+    // The starter is created with the bean factory post-processors, the context clients can not be created yet.
+    deferredStart = contextMongoClientEnabled && applicationContext != null && hasContextMongoClient();
+    if (!deferredStart) {
+      // Start migration on startup.
+      startMigration();
+    }
+  }
+
+  private boolean hasContextMongoClient() {
+    return (mongoPipeConfig.getMongoClient() == null
+        && BeanFactoryUtils.beanNamesForTypeIncludingAncestors(applicationContext, MongoClient.class, true, false).length > 0)
+        || BeanFactoryUtils.beanNamesForTypeIncludingAncestors(applicationContext, MongoDatabase.class, true, false).length > 0;
+  }
+
+  private void startMigration() {
+    if (asyncMigration) {
+      Executor executor = migrationExecutor;
+      if (executor == null) {
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("mongopipe-migration-");
+        taskExecutor.setDaemon(true);
+        executor = taskExecutor;
+      }
+      executor.execute(this::migrate);
+    } else {
+      migrate();
+      migrationStatus.await(0); // Rethrows a failed migration.
+    }
+  }
+
+  /**
+   * Adopts the context clients once they can be fully configured, just before the first bean using the pipelines is initialized,
+   * or on the first store use or the context refresh if earlier. With a context MongoClient or MongoDatabase to use, the stores
+   * are created and the migration started then too.
+   */
+  private void start() {
+    if (started) {
+      return;
+    }
+    synchronized (this) {
+      if (started) {
+        return;
+      }
+      started = true;
+      if (contextMongoClientEnabled && applicationContext != null) {
+        adoptContextMongoClient();
+      }
+      if (deferredStart) {
+        initializeStores();
+        warmUpCodecs();
+        startMigration();
+      }
+    }
+  }
+
+  private void warmUpCodecs() {
+    if (codecWarmUpEnabled) {
+      storeInvocationHandlers.forEach(StoreInvocationHandler::warmUpCodecs);
+    }
+  }
+
+  // Bean dependencies are registered when injected, before the dependent bean is initialized.
+  private boolean dependsOnPipelines(ConfigurableListableBeanFactory beanFactory, String beanName) {
+    for (String pipelineBeanName : pipelineBeanNames) {
+      for (String dependentBeanName : beanFactory.getDependentBeans(pipelineBeanName)) {
+        if (dependentBeanName.equals(beanName)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // Reuses the application clients and their pools, settings, codecs and listeners, instead of creating new ones from the uri.
+  private void adoptContextMongoClient() {
+    if (mongoPipeConfig.getMongoClient() == null) {
+      MongoClient mongoClient = findBean(applicationContext, MongoClient.class);
+      if (mongoClient != null) {
+        mongoPipeConfig.setMongoClient(mongoClient);
+        LOG.info("Using the context MongoClient");
+      }
+    }
+    MongoDatabase database = findBean(applicationContext, MongoDatabase.class);
+    if (database != null) {
+      if (mongoPipeConfig.getDatabaseName() == null || mongoPipeConfig.getDatabaseName().equals(database.getName())) {
+        mongoDatabase = database;
+      } else {
+        LOG.warn("Ignoring the context MongoDatabase " + database.getName() + ", the MongoPipeConfig database is " + mongoPipeConfig.getDatabaseName());
+      }
+    }
+    if (storeSupport.reactivePipelineAggregator != null) {
+      storeSupport.reactivePipelineAggregator.adoptContextMongoClient(applicationContext);
+    }
+  }
+
+  /**
+   * @return the only bean of the type, or the primary one, or null. Does not initialize factory beans to find it.
+   */
+  static <T> T findBean(ListableBeanFactory beanFactory, Class<T> type) {
+    String[] beanNames = BeanFactoryUtils.beanNamesForTypeIncludingAncestors(beanFactory, type, true, false);
+    if (beanNames.length == 1) {
+      return beanFactory.getBean(beanNames[0], type);
+    }
+    if (beanNames.length > 1) {
+      try {
+        return beanFactory.getBean(type);
+      } catch (NoUniqueBeanDefinitionException e) {
+        LOG.warn("Not using any of the " + beanNames.length + " " + type.getSimpleName() + " beans, mark one as @Primary or set it in the MongoPipeConfig");
+      }
+    }
+    return null;
+  }
+
+  private void migrate() {
+    try {
+      MigrationCoordinator.Outcome outcome;
+      if (coordinatedMigration) {
+        outcome = createMigrationCoordinator().migrate(() -> Pipelines.startMigration(migrationContextId));
+        LOG.info("Pipelines migration outcome: " + outcome);
+      } else {
+        Pipelines.startMigration(migrationContextId);
+        outcome = MigrationCoordinator.Outcome.MIGRATED;
+      }
+      if (!storeSupport.aggregatorEnabled) {
+        loadPipelineOptions();
+      }
+      migrationStatus.complete(outcome);
+    } catch (RuntimeException e) {
+      LOG.error("Pipelines migration failed: " + e.getMessage(), e);
+      migrationStatus.fail(e);
+      return;
+    }
+    advise();
+  }
+
+  // For the store methods choosing between the core store and the aggregator.
+  private void loadPipelineOptions() {
+    try {
+      storeSupport.pipelineAggregator.loadOptions();
+    } catch (RuntimeException e) {
+      LOG.warn("Could not read the pipelines options, read on the first runs instead: " + e.getMessage());
+    }
+  }
+
+  // Once the stores can run, the advisor failing does not fail the migration.
+  private void advise() {
+    try {
+      pipelineAdvisor.advise();
+    } catch (PipelineAdvisor.IssuesFoundException e) {
+      if (!asyncMigration) {
+        throw e; // Fails the startup.
+      }
+      LOG.error("Pipeline advisor found issues: " + e.getMessage());
+    } catch (RuntimeException e) {
+      LOG.error("Pipeline advisor failed: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Override to customize the coordinator collections and timings.
+   */
+  protected MigrationCoordinator createMigrationCoordinator() {
+    MigrationConfig migrationConfig = mongoPipeConfig.getMigrationConfig();
+    String pipelinesPath = migrationConfig != null && migrationConfig.getPipelinesPath() != null ? migrationConfig.getPipelinesPath() : "pipelines";
+    MigrationCoordinator coordinator = new MigrationCoordinator(getMongoDatabase(), pipelinesPath, migrationContextId);
+    if (mongoPipeConfig.getStoreCollection() != null) {
+      coordinator.setPipelineStoreCollection(mongoPipeConfig.getStoreCollection());
+    }
+    return coordinator;
+  }
+
+  protected MongoDatabase getMongoDatabase() {
+    MongoDatabase result = mongoDatabase;
+    if (result == null) {
+      mongoDatabase = result = RunContextProvider.getContext().getMongoDatabase();
+    }
+    return result;
+  }
+
+  @Override
+  public void destroy() {
+    pipelineDefinitionCache.stop();
+    if (storeSupport.writeBehindBuffers != null) {
+      // Already flushed when the context stopped, unless it was never started.
+      storeSupport.writeBehindBuffers.flush();
+    }
+    storeSupport.shutdown();
+    if (storeSupport.reactivePipelineAggregator != null) {
+      storeSupport.reactivePipelineAggregator.close();
+    }
+  }
+
+  @Override
+  public void onApplicationEvent(ContextRefreshedEvent event) {
+    // Events can not be published before the context is refreshed, so wait for both.
+    if (event.getApplicationContext() != applicationContext || !migrationEventScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    start();
+    migrationStatus.getFuture().whenComplete((result, failure) ->
+        applicationContext.publishEvent(new MigrationCompletedEvent(this, migrationContextId, failure)));
   }
 
   @Override
   public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry beanDefinitionRegistry) throws BeansException {
-    // Modify the application context's internal bean definition registry after its standard initialization. All regular bean definitions will have been loaded, but no beans will have been instantiated yet. This allows for adding further bean definitions before the next post-processing phase kicks in.
-    // The problem with this is that Spring will call the constructor while you can only set custom fields.
-    // Will be possible for PipelineStore but for the proxy Stores that are interfaces it will not work.
-    //PipelineStore pipelineStore = Stores.getPipelineStore();
-    //GenericBeanDefinition bd = new GenericBeanDefinition();
-    //bd.setBeanClass(PipelineStore.class);
-    //bd.getPropertyValues().add("runContext", RunContextProvider.getContext());
-    //beanDefinitionRegistry.registerBeanDefinition("pipelineStore", bd);
+    // Register all stores as beans. The stores are interfaces so Spring can not instantiate them, a StoreFactoryBean per store
+    // defers the Stores.from call to the first use (or to the pre-initialization).
+    ClassLoader classLoader = beanDefinitionRegistry instanceof ConfigurableBeanFactory ?
+        ((ConfigurableBeanFactory) beanDefinitionRegistry).getBeanClassLoader() : ClassUtils.getDefaultClassLoader();
+    for (String storeClassName : findStoreClassNames(classLoader)) {
+      try {
+        Class storeClass = ClassUtils.forName(storeClassName, classLoader);
+        if (!matchesProfile(storeClass)) {
+          continue;
+        }
+        LazyStore lazyStore = new LazyStore(storeClass);
+        lazyStores.add(lazyStore);
+        RootBeanDefinition beanDefinition = new RootBeanDefinition(StoreFactoryBean.class);
+        beanDefinition.getConstructorArgumentValues().addIndexedArgumentValue(0, storeClass);
+        StoreInvocationHandler storeInvocationHandler = newStoreInvocationHandler(storeClass, lazyStore);
+        storeInvocationHandlers.add(storeInvocationHandler);
+        pipelineAdvisor.addStore(storeClass);
+        beanDefinition.getConstructorArgumentValues().addIndexedArgumentValue(1, storeInvocationHandler);
+        String beanName = ClassUtils.getShortNameAsProperty(storeClass);
+        beanDefinitionRegistry.registerBeanDefinition(beanName, beanDefinition);
+        pipelineBeanNames.add(beanName);
+      } catch (ClassNotFoundException e) {
+        LOG.error(e.getMessage(), e);
+        throw new MongoPipeConfigException("Could not load store for:" + storeClassName, e);
+      }
+    }
+    if (!deferredStart) {
+      initializeStores();
+    }
+  }
 
-    // Consider also BeanFactoryAware to register bean instances. https://stackoverflow.com/questions/57157396/how-to-register-bean-dynamically-in-spring-boot https://stackoverflow.com/questions/52399208/spring-boot-adding-and-removing-singleton-at-runtime
-    // ((GenericApplicationContext)applicationContext).getDefaultListableBeanFactory().registerSingleton(...);
+  private StoreInvocationHandler newStoreInvocationHandler(Class<?> storeClass, LazyStore lazyStore) {
+    StoreInvocationHandler storeInvocationHandler = new StoreInvocationHandler(storeClass, lazyStore, storeSupport);
+    if (storeSupport.projectionPushdown) {
+      storeInvocationHandler.prepare();
+    }
+    return storeInvocationHandler;
+  }
+
+  private void initializeStores() {
+    switch (storeInitialization) {
+      case EAGER:
+        lazyStores.forEach(LazyStore::get);
+        break;
+      case PARALLEL:
+        if (lazyStores.isEmpty()) {
+          break;
+        }
+        // Own threads, not competing with the application work on the common pool, ended once all the stores are created.
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(lazyStores.size(), Runtime.getRuntime().availableProcessors()), runnable -> {
+          Thread thread = new Thread(runnable, "mongopipe-store-init-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+        for (LazyStore lazyStore : lazyStores) {
+          executor.execute(() -> {
+            try {
+              lazyStore.get();
+            } catch (RuntimeException e) {
+              // Thrown again on first use.
+              LOG.error("Could not create store " + lazyStore.getStoreClass().getName() + ": " + e.getMessage(), e);
+            }
+          });
+        }
+        executor.shutdown();
+        break;
+      default:
+        break;
+    }
   }
 
   @Override
   public void postProcessBeanFactory(ConfigurableListableBeanFactory configurableListableBeanFactory) throws BeansException {
     // Register the default pipeline store and runner as beans.
     PipelineStore pipelineStore = Pipelines.getStore();
-    configurableListableBeanFactory.registerSingleton("pipelineStore", pipelineStore);
+    registerSingleton(configurableListableBeanFactory, "pipelineStore", pipelineStore);
     PipelineRunner pipelineRunner = Pipelines.getRunner();
-    configurableListableBeanFactory.registerSingleton("pipelineRunner", pipelineRunner);
+    registerSingleton(configurableListableBeanFactory, "pipelineRunner", pipelineRunner);
+    registerSingleton(configurableListableBeanFactory, "migrationStatus", migrationStatus);
+    storeSupport.beanFactory = configurableListableBeanFactory;
+    registerSingleton(configurableListableBeanFactory, "pipelineDefinitionCache", pipelineDefinitionCache);
+    registerSingleton(configurableListableBeanFactory, "pipelineResultCache", storeSupport.pipelineResultCache);
+    if (storeSupport.pipelineCallCoalescer != null) {
+      registerSingleton(configurableListableBeanFactory, "pipelineCallCoalescer", storeSupport.pipelineCallCoalescer);
+    }
+    if (storeSupport.writeBehindBuffers != null) {
+      registerSingleton(configurableListableBeanFactory, "writeBehindBuffers", storeSupport.writeBehindBuffers);
+    }
+    if (pipelineAdvisor.getMode() != PipelineAdvisor.Mode.OFF) {
+      registerSingleton(configurableListableBeanFactory, "pipelineAdvisor", pipelineAdvisor);
+    }
+    registerSingleton(configurableListableBeanFactory, "pipelineAggregator", storeSupport.pipelineAggregator);
+    if (storeSupport.reactivePipelineAggregator != null) {
+      registerSingleton(configurableListableBeanFactory, "reactivePipelineAggregator", storeSupport.reactivePipelineAggregator);
+    }
+    if (metricsEnabled) {
+      PipelineMetrics pipelineMetrics = null;
+      if (ClassUtils.isPresent("io.micrometer.core.instrument.MeterRegistry", configurableListableBeanFactory.getBeanClassLoader())) {
+        pipelineMetrics = MicrometerPipelineMetrics.create(configurableListableBeanFactory);
+      }
+      storeSupport.pipelineMetrics = pipelineMetrics != null ? pipelineMetrics : new InMemoryPipelineMetrics();
+      registerSingleton(configurableListableBeanFactory, "pipelineMetrics", storeSupport.pipelineMetrics);
+    }
+    if (!deferredStart) {
+      warmUpCodecs();
+    }
+    if (contextMongoClientEnabled && applicationContext != null) {
+      configurableListableBeanFactory.addBeanPostProcessor(new StartBeforeDependentBeans(configurableListableBeanFactory));
+    }
+  }
+
+  private void registerSingleton(ConfigurableListableBeanFactory beanFactory, String beanName, Object singleton) {
+    beanFactory.registerSingleton(beanName, singleton);
+    pipelineBeanNames.add(beanName);
+  }
+
+  /**
+   * Calls {@link #start} before the first bean depending on the stores or the pipeline beans is initialized. All the bean
+   * post-processors are registered by then, so the context clients resolved are fully configured.
+   */
+  private final class StartBeforeDependentBeans implements BeanPostProcessor {
+    private final ConfigurableListableBeanFactory beanFactory;
+
+    StartBeforeDependentBeans(ConfigurableListableBeanFactory beanFactory) {
+      this.beanFactory = beanFactory;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+      if (!started && dependsOnPipelines(beanFactory, beanName)) {
+        start();
+      }
+      return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+      return bean;
+    }
+  }
+
+
+  /**
+   * Reads the store classes from the index generated at compile time by {@link StoreIndexProcessor}, falling back to classpath
+   * scanning if there is no index. An index only lists the stores of its own jar or classes folder, so a scanned package also
+   * found in a jar or folder without an index is scanned too.
+   */
+  private Set<String> findStoreClassNames(ClassLoader classLoader) {
+    StoreIndex storeIndex = storeIndexEnabled ? StoreIndex.load(classLoader) : null;
+    if (scanPackage == null && storeIndex == null) {
+      LOG.warn("Provide a scanPackage for the MongoPipeConfig for much faster scanning, or compile the stores with the mongopipe-spring jar on the classpath to generate the "
+          + StoreIndex.INDEX_LOCATION + " index.");
+    }
+    String[] basePackages = scanPackage == null ? new String[] {""} :
+        StringUtils.tokenizeToStringArray(scanPackage, ConfigurableApplicationContext.CONFIG_LOCATION_DELIMITERS);
+    Set<String> storeClassNames = new LinkedHashSet<>();
+    for (String basePackage : basePackages) {
+      if (storeIndex == null) {
+        storeClassNames.addAll(scanStoreClassNames(basePackage));
+        continue;
+      }
+      storeClassNames.addAll(storeIndex.getStoreClassNames(basePackage));
+      Set<String> unindexedRoots = storeIndex.getUnindexedRoots(classLoader, basePackage);
+      if (!unindexedRoots.isEmpty()) {
+        LOG.info("No " + StoreIndex.INDEX_LOCATION + " index in " + unindexedRoots + ", scanning "
+            + (basePackage.isEmpty() ? "the classpath" : basePackage) + " for stores");
+        storeClassNames.addAll(scanStoreClassNames(basePackage));
+      }
+    }
+    return storeClassNames;
+  }
 
-    // Register all stores as beans.
+  private Set<String> scanStoreClassNames(String basePackage) {
     // 'false' for not just components. Environment optional but used to exclude based on @Profile in Spring ProfileCondition class.
     ClassPathScanningProvider provider = new ClassPathScanningProvider(false, environment);
     provider.addIncludeFilter(new AnnotationTypeFilter(Store.class));
-    // provider.setResourceLoader(new PathMatchingResourcePatternResolver(MongoPipeStarter.class.getClassLoader()));
-    if (scanPackage == null) {
-      LOG.warn("Provide a scanPackage for the MongoPipeConfig for much faster scanning.");
+    Set<String> storeClassNames = new LinkedHashSet<>();
+    for (BeanDefinition beanDefinition : provider.findCandidateComponents(basePackage)) {
+      storeClassNames.add(beanDefinition.getBeanClassName());
     }
-    Set<BeanDefinition> components = provider.findCandidateComponents(scanPackage == null ? "" : scanPackage);
-    components.stream().forEach(beanDefinition -> {
-      try {
-        Class storeClass = Class.forName(beanDefinition.getBeanClassName());
-        Object store = Stores.from(storeClass);
-        configurableListableBeanFactory.registerSingleton(ClassUtils.getShortNameAsProperty(storeClass), store);
-      } catch (ClassNotFoundException e) {
-        LOG.error(e.getMessage(), e);
-        throw new MongoPipeConfigException("Could not load store for:" + beanDefinition.getBeanClassName(), e);
-      }
-    });
+    return storeClassNames;
+  }
+
+  // The scanner applies @Profile by itself, but the index contains all the stores.
+  private boolean matchesProfile(Class storeClass) {
+    Profile profile = AnnotationUtils.findAnnotation(storeClass, Profile.class);
+    return profile == null || environment == null || environment.acceptsProfiles(profile.value());
+  }
+
+  /**
+   * Set to false to ignore the {@link StoreIndex} and always scan the classpath for stores. Default true.
+   */
+  public void setStoreIndexEnabled(boolean storeIndexEnabled) {
+    this.storeIndexEnabled = storeIndexEnabled;
+  }
+
+  /**
+   * Run the migration on the {@link #setMigrationExecutor migration executor} instead of blocking the context startup. Pipeline
+   * runs made before it finishes wait for it, see {@link #setMigrationTimeoutMillis}. Default false.
+   */
+  public void setAsyncMigration(boolean asyncMigration) {
+    this.asyncMigration = asyncMigration;
+  }
+
+  /**
+   * Executor used for the asynchronous migration. Default a new daemon thread.
+   */
+  public void setMigrationExecutor(Executor migrationExecutor) {
+    this.migrationExecutor = migrationExecutor;
+  }
+
+  /**
+   * How long a pipeline run waits for the asynchronous migration before failing. Default 60 seconds.
+   */
+  public void setMigrationTimeoutMillis(long migrationTimeoutMillis) {
+    storeSupport.migrationTimeoutMillis = migrationTimeoutMillis;
+  }
+
+  /**
+   * Run the @PipelineRun store methods with the {@link PipelineAggregator}, resolving the pipelines through the
+   * {@link PipelineDefinitionCache} instead of reading them from the store on every call. Default false.
+   */
+  public void setPipelineDefinitionCacheEnabled(boolean pipelineDefinitionCacheEnabled) {
+    storeSupport.aggregatorEnabled = pipelineDefinitionCacheEnabled;
+  }
+
+  /**
+   * Record per pipeline latency, call, error, document and byte counts of the store pipeline runs, in Micrometer if the context
+   * has a MeterRegistry, otherwise in an {@link InMemoryPipelineMetrics}. Registered as the "pipelineMetrics" bean. Default
+   * false.
+   */
+  public void setMetricsEnabled(boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+  }
+
+  /**
+   * Executor running the @PipelineRun methods returning a CompletableFuture of a single result, List or Stream. Default the
+   * "mongoPipeExecutor" bean if any, otherwise virtual threads on Java 21+ and a bounded pool before.
+   */
+  public void setAsyncExecutor(Executor asyncExecutor) {
+    storeSupport.setAsyncExecutor(asyncExecutor);
+  }
+
+  /**
+   * Log a warning for the pipeline runs slower than this, requires the metrics enabled. Default -1, disabled.
+   */
+  public void setSlowPipelineThresholdMillis(long slowPipelineThresholdMillis) {
+    storeSupport.slowPipelineThresholdMillis = slowPipelineThresholdMillis;
+  }
+
+  /**
+   * To configure its size, TTL and pipeline store collection.
+   */
+  public PipelineDefinitionCache getPipelineDefinitionCache() {
+    return pipelineDefinitionCache;
+  }
+
+  /**
+   * Cache the results of a pipeline, see {@link PipelineResultCache}, overriding its Spring properties if any.
+   *
+   * @param maxSize maximum entries, each being the results of a parameters combination.
+   */
+  public void cachePipelineResults(String pipelineId, int maxSize, long ttlMillis) {
+    storeSupport.pipelineResultCache.setSettings(pipelineId, new PipelineResultCache.Settings(true, maxSize, ttlMillis));
+  }
+
+  /**
+   * Keep the cached pipeline results in the "mongopipe.&lt;pipelineId&gt;" caches of this CacheManager instead of the default
+   * {@link BoundedTtlCache}s.
+   */
+  public void setResultCacheManager(CacheManager resultCacheManager) {
+    storeSupport.pipelineResultCache.setCacheManager(resultCacheManager);
+  }
+
+  /**
+   * Let the concurrent runs of a pipeline with the same parameters share one execution, see {@link PipelineCallCoalescer}. The
+   * methods returning a Stream are not coalesced, their results would have to be loaded in memory. Default false.
+   */
+  public void setCoalescingEnabled(boolean coalescingEnabled) {
+    storeSupport.pipelineCallCoalescer = coalescingEnabled ? new PipelineCallCoalescer() : null;
+  }
+
+  /**
+   * Append to the pipelines run by store methods returning POJOs a final $project of the POJO mapped fields, so that only those
+   * are sent by the server, unless the pipeline already ends with a projection. Not done for the POJOs the database registry has
+   * a codec for, e.g. a PojoCodecProvider with other conventions, as their fields can be named otherwise. Applies to the
+   * {@link PipelineAggregator} runs, see {@link #setPipelineDefinitionCacheEnabled}. Default false.
+   */
+  public void setProjectionPushdownEnabled(boolean projectionPushdownEnabled) {
+    storeSupport.projectionPushdown = projectionPushdownEnabled;
+  }
+
+  /**
+   * Create on startup the codecs of the store @Item types and @PipelineRun result types, which are the compile time generated ones
+   * (see {@link GeneratedCodecProvider}) when present, instead of on the first pipeline runs. Default true.
+   */
+  public void setCodecWarmUpEnabled(boolean codecWarmUpEnabled) {
+    this.codecWarmUpEnabled = codecWarmUpEnabled;
+  }
+
+  /**
+   * Use the MongoClient and MongoDatabase beans of the context, if any and not set in the MongoPipeConfig, rather than creating a
+   * client from the uri. Same for the reactive MongoClient bean. They are looked up just before the first bean using the stores or
+   * the pipeline beans is initialized, so that they are fully configured, and the migration then waits for them. Default true.
+   */
+  public void setContextMongoClientEnabled(boolean contextMongoClientEnabled) {
+    this.contextMongoClientEnabled = contextMongoClientEnabled;
+  }
+
+  /**
+   * Explain the stored pipelines after the migration and report or act on the plan issues, see {@link PipelineAdvisor}. Default
+   * {@link PipelineAdvisor.Mode#OFF}.
+   */
+  public void setPipelineAdvisorMode(PipelineAdvisor.Mode pipelineAdvisorMode) {
+    pipelineAdvisor.setMode(pipelineAdvisorMode);
+  }
+
+  /**
+   * To configure the sample parameters, ignored pipelines and enforced profiles.
+   */
+  public PipelineAdvisor getPipelineAdvisor() {
+    return pipelineAdvisor;
+  }
+
+  /**
+   * Creates a store proxy like the registered store beans, the actual store being created on first use.
+   */
+  <T> T createStore(Class<T> storeClass) {
+    return storeClass.cast(new StoreFactoryBean(storeClass, newStoreInvocationHandler(storeClass, new LazyStore(storeClass))).getObject());
+  }
+
+  /**
+   * Documents per unordered bulkWrite of the {@link BulkStore} insertAll and saveAll methods. Default 1000.
+   */
+  public void setBulkBatchSize(int bulkBatchSize) {
+    if (bulkBatchSize < 1) {
+      throw new IllegalArgumentException("The bulk batch size must be positive");
+    }
+    storeSupport.bulkBatchSize = bulkBatchSize;
+  }
+
+  /**
+   * Buffer the {@link BulkStore#saveBehind} items per collection and write them in the background, see {@link WriteBehindBuffers}.
+   * Disabled by default, the items being saved right away.
+   *
+   * @param capacity the items a collection buffer holds before the callers wait.
+   * @param batchSize the items written per bulkWrite.
+   * @param flushIntervalMillis the longest an item is buffered.
+   */
+  public void setWriteBehind(int capacity, int batchSize, long flushIntervalMillis) {
+    storeSupport.writeBehindBuffers = new WriteBehindBuffers(capacity, batchSize, flushIntervalMillis);
+  }
+
+  /**
+   * @return the write-behind buffers, to set the failure listener, or null if not enabled.
+   */
+  public WriteBehindBuffers getWriteBehindBuffers() {
+    return storeSupport.writeBehindBuffers;
+  }
+
+  public PipelineResultCache getPipelineResultCache() {
+    return storeSupport.pipelineResultCache;
+  }
+
+  /**
+   * Default {@link StoreInitialization#EAGER}.
+   */
+  public void setStoreInitialization(StoreInitialization storeInitialization) {
+    this.storeInitialization = storeInitialization;
+  }
+
+  /**
+   * Coordinate the migration between nodes starting at the same time, see {@link MigrationCoordinator}: a single node migrates
+   * while the others wait, and nothing is written when no pipeline source changed. Default false.
+   */
+  public void setCoordinatedMigration(boolean coordinatedMigration) {
+    this.coordinatedMigration = coordinatedMigration;
+  }
+
+  public MigrationStatus getMigrationStatus() {
+    return migrationStatus;
   }
 
   @Override
   public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+    this.applicationContext = applicationContext;
     this.environment = applicationContext.getEnvironment();
+    storeSupport.pipelineResultCache.setEnvironment(environment);
+    pipelineDefinitionCache.setEnvironment(environment);
+    pipelineAdvisor.setEnvironment(environment);
   }
 
-  // Not needed. Performed by ProfileCondition inside ClassPathScanningProvider.
-  //  private boolean matchesProfile(Class storeClass) {
-  //    if (!ClassUtils.isPresent("org.springframework.context.annotation.Profile", null) ||
-  //        !storeClass.isAnnotationPresent(Profile.class)) {
-  //      return true;
-  //    }
-  //    Profile classAnnotation = (Profile) storeClass.getAnnotation(Profile.class);
-  //    List<String> profiles = Arrays.asList(classAnnotation.value());
-  //    return profiles.stream()
-  //        .filter(profile -> profile != null)
-  //        .filter(profile -> profile.startsWith("!") || activeProfiles.contains(profile))
-  //        .findAny()
-  //        .isPresent();
-  //  }
-
 }
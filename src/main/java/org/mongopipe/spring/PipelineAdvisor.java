@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.types.ObjectId;
+import org.mongopipe.core.annotation.PipelineRun;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Explains every pipeline of the pipeline store against its collection after the migration, and reports the collection scans,
+ * the in-memory sorts and the $lookup stages not using an index on the joined collection, with the index that would avoid
+ * them (equality fields, then sort fields, then range fields). Registered as the "pipelineAdvisor" bean, see
+ * {@link MongoPipeStarter#setPipelineAdvisorMode}.
+ * <p>
+ * The placeholders are bound with, in order, the {@link #setSampleParameters sample parameters}, the "sampleParameters" field
+ * of the pipeline document, and a value of the type of the store method parameter, e.g. "" for a String or an empty list for a
+ * collection. A pipeline with a placeholder left without a value is reported as {@link Issue#NO_SAMPLE} instead of explained.
+ * The plans depend on the data, so the collections and the samples need to be representative.
+ */
+public class PipelineAdvisor {
+  private static final Log LOG = CustomLogFactory.getLogger(PipelineAdvisor.class);
+  private static final Set<String> EQUALITY_OPERATORS = new HashSet<>(Arrays.asList("$eq", "$in"));
+  private static final Set<String> RANGE_OPERATORS = new HashSet<>(Arrays.asList("$gt", "$gte", "$lt", "$lte", "$ne", "$nin", "$regex"));
+
+  private final PipelineAggregator pipelineAggregator;
+  private volatile Mode mode = Mode.OFF;
+  private Environment environment;
+  private String[] enforcedProfiles = new String[0];
+  private final Set<String> ignoredPipelines = new HashSet<>();
+  private final Map<String, Map<String, ?>> sampleParameters = new HashMap<>();
+  // Pipeline id to the placeholder types, from the store methods.
+  private final Map<String, Map<String, Class<?>>> parameterTypes = new HashMap<>();
+  private volatile Report report = new Report(Collections.emptyList(), 0);
+
+  public enum Mode {
+    OFF,
+    /** Log the findings. */
+    REPORT,
+    /** Fail the startup, when the migration is synchronous, if there are findings. Needs {@link #setEnforcedProfiles}. */
+    FAIL_FAST,
+    /** Create the recommended indexes. Needs {@link #setEnforcedProfiles}. */
+    AUTO_CREATE_INDEXES
+  }
+
+  public enum Issue {
+    COLLECTION_SCAN,
+    /** A blocking sort not using an index. */
+    IN_MEMORY_SORT,
+    /** A localField/foreignField $lookup without an index on the foreign field. */
+    UNINDEXED_LOOKUP,
+    /** A pipeline $lookup not starting with a $match, joining the whole collection for each document. */
+    UNBOUNDED_LOOKUP,
+    /** Not analyzed, e.g. the sample parameters are not valid for the pipeline. */
+    EXPLAIN_FAILED,
+    /** Not analyzed, a placeholder has no sample value nor store method parameter of a known type. */
+    NO_SAMPLE
+  }
+
+  public static class Finding {
+    private final String pipelineId;
+    private final Issue issue;
+    private final String message;
+    private final String indexCollection;
+    private final BsonDocument indexKeys;
+    private volatile boolean indexCreated;
+
+    Finding(String pipelineId, Issue issue, String message, String indexCollection, BsonDocument indexKeys) {
+      this.pipelineId = pipelineId;
+      this.issue = issue;
+      this.message = message;
+      this.indexCollection = indexCollection;
+      this.indexKeys = indexKeys;
+    }
+
+    public String getPipelineId() {
+      return pipelineId;
+    }
+
+    public Issue getIssue() {
+      return issue;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+
+    /**
+     * @return the collection of the recommended index, null if none.
+     */
+    public String getIndexCollection() {
+      return indexCollection;
+    }
+
+    /**
+     * @return the keys of the recommended index, null if none.
+     */
+    public BsonDocument getIndexKeys() {
+      return indexKeys;
+    }
+
+    public boolean isIndexCreated() {
+      return indexCreated;
+    }
+
+    @Override
+    public String toString() {
+      return pipelineId + ": " + issue + ", " + message + (indexKeys == null ? "" :
+          (indexCreated ? ", created index " : ", recommended index ") + indexCollection + " " + indexKeys.toJson());
+    }
+  }
+
+  public static class Report {
+    private final List<Finding> findings;
+    private final int analyzedPipelines;
+
+    Report(List<Finding> findings, int analyzedPipelines) {
+      this.findings = Collections.unmodifiableList(findings);
+      this.analyzedPipelines = analyzedPipelines;
+    }
+
+    public List<Finding> getFindings() {
+      return findings;
+    }
+
+    public List<Finding> getFindings(String pipelineId) {
+      List<Finding> result = new ArrayList<>();
+      for (Finding finding : findings) {
+        if (finding.getPipelineId().equals(pipelineId)) {
+          result.add(finding);
+        }
+      }
+      return result;
+    }
+
+    /**
+     * @return the distinct recommended indexes as "collection" to keys.
+     */
+    public Map<String, Set<BsonDocument>> getIndexRecommendations() {
+      Map<String, Set<BsonDocument>> recommendations = new LinkedHashMap<>();
+      for (Finding finding : findings) {
+        if (finding.getIndexKeys() != null) {
+          recommendations.computeIfAbsent(finding.getIndexCollection(), key -> new LinkedHashSet<>()).add(finding.getIndexKeys());
+        }
+      }
+      return recommendations;
+    }
+
+    /**
+     * @return true if a plan issue was found, the pipelines not analyzed excepted.
+     */
+    public boolean hasIssues() {
+      for (Finding finding : findings) {
+        if (finding.getIssue() != Issue.EXPLAIN_FAILED && finding.getIssue() != Issue.NO_SAMPLE) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    public int getAnalyzedPipelines() {
+      return analyzedPipelines;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder text = new StringBuilder("Pipeline advisor: " + analyzedPipelines + " pipelines analyzed, " + findings.size() + " findings");
+      for (Finding finding : findings) {
+        text.append("\n  ").append(finding);
+      }
+      return text.toString();
+    }
+  }
+
+  /**
+   * Thrown by {@link Mode#FAIL_FAST} when the pipelines have issues.
+   */
+  public static class IssuesFoundException extends MongoPipeConfigException {
+    private final transient Report report;
+
+    IssuesFoundException(Report report) {
+      super(report.toString());
+      this.report = report;
+    }
+
+    public Report getReport() {
+      return report;
+    }
+  }
+
+  public PipelineAdvisor(PipelineAggregator pipelineAggregator) {
+    this.pipelineAggregator = pipelineAggregator;
+  }
+
+  /**
+   * Analyzes all the stored pipelines and applies the mode, unless OFF.
+   *
+   * @return the report, also kept as the {@link #getReport() last report}.
+   * @throws IssuesFoundException in {@link Mode#FAIL_FAST} mode if there are issues.
+   */
+  public Report advise() {
+    Mode effectiveMode = getEffectiveMode();
+    if (effectiveMode == Mode.OFF) {
+      return report;
+    }
+    MongoDatabase database = pipelineAggregator.getMongoDatabase();
+    List<Finding> findings = new ArrayList<>();
+    int analyzed = 0;
+    for (PipelineDefinition definition : pipelineAggregator.getDefinitions().loadAll()) {
+      if (!ignoredPipelines.contains(definition.getId())) {
+        analyze(database, definition, findings);
+        analyzed++;
+      }
+    }
+    Report result = new Report(findings, analyzed);
+    if (effectiveMode == Mode.AUTO_CREATE_INDEXES) {
+      createIndexes(database, result);
+    }
+    report = result;
+    if (!findings.isEmpty()) {
+      LOG.warn(result.toString());
+    }
+    if (effectiveMode == Mode.FAIL_FAST && result.hasIssues()) {
+      throw new IssuesFoundException(result);
+    }
+    return result;
+  }
+
+  // FAIL_FAST and AUTO_CREATE_INDEXES only report outside of the enforced profiles, e.g. in production.
+  private Mode getEffectiveMode() {
+    Mode result = mode;
+    if ((result == Mode.FAIL_FAST || result == Mode.AUTO_CREATE_INDEXES)
+        && (enforcedProfiles.length == 0 || environment == null || !environment.acceptsProfiles(enforcedProfiles))) {
+      LOG.info("Pipeline advisor in " + result + " mode only reports, not in any of the enforced profiles " + Arrays.toString(enforcedProfiles));
+      return Mode.REPORT;
+    }
+    return result;
+  }
+
+  private void analyze(MongoDatabase database, PipelineDefinition definition, List<Finding> findings) {
+    String id = definition.getId();
+    Map<String, Object> parameters = getSampleParameters(definition);
+    List<String> unsampled = new ArrayList<>(definition.getTemplate().getParameterNames());
+    unsampled.removeAll(parameters.keySet());
+    if (!unsampled.isEmpty()) {
+      findings.add(new Finding(id, Issue.NO_SAMPLE, "no sample value for " + unsampled + ", set the sample parameters", null, null));
+      return;
+    }
+    BsonArray stages;
+    BsonDocument explain;
+    try {
+      stages = new BsonArray(definition.getTemplate().bind(parameters, database.getCodecRegistry()));
+      BsonDocument aggregate = new BsonDocument("aggregate", new BsonString(definition.getCollection())).append("pipeline", stages)
+          .append("cursor", new BsonDocument());
+      // The plan of the runs, which the hint and collation change.
+      PipelineOptions options = definition.getOptions();
+      if (options.getHint() != null) {
+        aggregate.append("hint", options.getHint());
+      }
+      if (options.getCollation() != null) {
+        aggregate.append("collation", options.getCollation().asDocument());
+      }
+      explain = database.runCommand(new BsonDocument("explain", aggregate).append("verbosity", new BsonString("queryPlanner")), BsonDocument.class);
+    } catch (MongoException | IllegalArgumentException | MongoPipeConfigException e) {
+      findings.add(new Finding(id, Issue.EXPLAIN_FAILED, e.getMessage(), null, null));
+      return;
+    }
+    List<BsonDocument> collectionScans = new ArrayList<>();
+    List<BsonDocument> sorts = new ArrayList<>();
+    List<BsonDocument> pipelineSorts = new ArrayList<>();
+    findPlanStages(explain, collectionScans, sorts, pipelineSorts);
+    if (!collectionScans.isEmpty() || !sorts.isEmpty()) {
+      BsonDocument filter = collectionScans.isEmpty() ? null : collectionScans.get(0).getDocument("filter", null);
+      BsonDocument sort = sorts.isEmpty() ? null : sorts.get(0);
+      BsonDocument indexKeys = recommendIndex(filter, sort);
+      if (indexKeys != null && hasIndex(database, definition.getCollection(), indexKeys)) {
+        indexKeys = null; // Exists but not chosen by the planner, e.g. not selective enough for the sample.
+      }
+      if (!collectionScans.isEmpty()) {
+        findings.add(new Finding(id, Issue.COLLECTION_SCAN, "scans " + definition.getCollection()
+            + (filter == null ? " without a filter" : " filtering on " + filter.toJson()), definition.getCollection(), indexKeys));
+      }
+      if (sort != null) {
+        findings.add(new Finding(id, Issue.IN_MEMORY_SORT, "sorts on " + sort.toJson() + " in memory", definition.getCollection(), indexKeys));
+      }
+    }
+    for (BsonDocument sort : pipelineSorts) {
+      // After a stage the query layer can not run, e.g. a $group, no index applies.
+      findings.add(new Finding(id, Issue.IN_MEMORY_SORT, "sorts on " + sort.toJson() + " in memory after the documents are transformed", null, null));
+    }
+    for (BsonValue stage : stages) {
+      BsonDocument lookup = stage.asDocument().getDocument("$lookup", null);
+      if (lookup != null) {
+        analyzeLookup(database, id, lookup, findings);
+      }
+    }
+  }
+
+  private void analyzeLookup(MongoDatabase database, String id, BsonDocument lookup, List<Finding> findings) {
+    String from = lookup.isString("from") ? lookup.getString("from").getValue() : null;
+    if (from == null) {
+      return;
+    }
+    if (lookup.isString("foreignField")) {
+      String foreignField = lookup.getString("foreignField").getValue();
+      BsonDocument indexKeys = new BsonDocument(foreignField, new BsonInt32(1));
+      if (!foreignField.equals("_id") && !hasIndex(database, from, indexKeys)) {
+        findings.add(new Finding(id, Issue.UNINDEXED_LOOKUP, "joins " + from + " on " + foreignField + " without an index", from, indexKeys));
+      }
+    } else if (lookup.isArray("pipeline")) {
+      BsonArray pipeline = lookup.getArray("pipeline");
+      if (pipeline.isEmpty() || !pipeline.get(0).isDocument() || !pipeline.get(0).asDocument().containsKey("$match")) {
+        findings.add(new Finding(id, Issue.UNBOUNDED_LOOKUP, "joins all of " + from + " for each document, start its pipeline with a $match", null, null));
+      }
+    }
+  }
+
+  // The explain output differs between versions and topologies, the plan stages are searched anywhere in it.
+  private static void findPlanStages(BsonValue value, List<BsonDocument> collectionScans, List<BsonDocument> sorts,
+                                     List<BsonDocument> pipelineSorts) {
+    if (value.isArray()) {
+      for (BsonValue element : value.asArray()) {
+        findPlanStages(element, collectionScans, sorts, pipelineSorts);
+      }
+      return;
+    }
+    if (!value.isDocument()) {
+      return;
+    }
+    BsonDocument document = value.asDocument();
+    // The rejected plans do not run.
+    for (Map.Entry<String, BsonValue> entry : document.entrySet()) {
+      if (!entry.getKey().equals("rejectedPlans")) {
+        findPlanStages(entry.getValue(), collectionScans, sorts, pipelineSorts);
+      }
+    }
+    String stage = document.isString("stage") ? document.getString("stage").getValue() : null;
+    if ("COLLSCAN".equals(stage)) {
+      collectionScans.add(document);
+    } else if ("SORT".equals(stage) && document.isDocument("sortPattern")) {
+      sorts.add(document.getDocument("sortPattern"));
+    } else if (document.isDocument("$sort") && document.getDocument("$sort").isDocument("sortKey")) {
+      pipelineSorts.add(document.getDocument("$sort").getDocument("sortKey"));
+    }
+  }
+
+  // Equality, sort, range order.
+  static BsonDocument recommendIndex(BsonDocument filter, BsonDocument sort) {
+    List<String> equalityFields = new ArrayList<>();
+    List<String> rangeFields = new ArrayList<>();
+    if (filter != null) {
+      collectFilterFields(filter, equalityFields, rangeFields);
+    }
+    BsonDocument keys = new BsonDocument();
+    for (String field : equalityFields) {
+      keys.put(field, new BsonInt32(1));
+    }
+    if (sort != null) {
+      for (Map.Entry<String, BsonValue> entry : sort.entrySet()) {
+        if (!keys.containsKey(entry.getKey()) && entry.getValue().isNumber()) {
+          keys.put(entry.getKey(), new BsonInt32(entry.getValue().asNumber().intValue() < 0 ? -1 : 1));
+        }
+      }
+    }
+    for (String field : rangeFields) {
+      if (!keys.containsKey(field)) {
+        keys.put(field, new BsonInt32(1));
+      }
+    }
+    return keys.isEmpty() ? null : keys;
+  }
+
+  private static void collectFilterFields(BsonDocument filter, List<String> equalityFields, List<String> rangeFields) {
+    for (Map.Entry<String, BsonValue> entry : filter.entrySet()) {
+      String field = entry.getKey();
+      if (field.equals("$and") && entry.getValue().isArray()) {
+        for (BsonValue condition : entry.getValue().asArray()) {
+          if (condition.isDocument()) {
+            collectFilterFields(condition.asDocument(), equalityFields, rangeFields);
+          }
+        }
+      } else if (!field.startsWith("$")) {
+        BsonValue condition = entry.getValue();
+        if (!condition.isDocument() || condition.asDocument().isEmpty() || !condition.asDocument().getFirstKey().startsWith("$")) {
+          equalityFields.add(field);
+        } else {
+          for (String operator : condition.asDocument().keySet()) {
+            if (EQUALITY_OPERATORS.contains(operator)) {
+              equalityFields.add(field);
+            } else if (RANGE_OPERATORS.contains(operator)) {
+              rangeFields.add(field);
+            }
+          }
+        }
+      }
+    }
+    rangeFields.removeAll(equalityFields);
+  }
+
+  // An index whose keys start with these ones.
+  private static boolean hasIndex(MongoDatabase database, String collection, BsonDocument keys) {
+    for (BsonDocument index : database.getCollection(collection).listIndexes(BsonDocument.class)) {
+      BsonDocument indexKeys = index.getDocument("key");
+      List<String> indexFields = new ArrayList<>(indexKeys.keySet());
+      List<String> fields = new ArrayList<>(keys.keySet());
+      if (indexFields.size() >= fields.size() && indexFields.subList(0, fields.size()).equals(fields)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void createIndexes(MongoDatabase database, Report report) {
+    Map<String, Set<BsonDocument>> recommendations = report.getIndexRecommendations();
+    for (Map.Entry<String, Set<BsonDocument>> entry : recommendations.entrySet()) {
+      for (BsonDocument keys : entry.getValue()) {
+        try {
+          database.getCollection(entry.getKey()).createIndex(keys);
+          LOG.info("Pipeline advisor created index " + entry.getKey() + " " + keys.toJson());
+          for (Finding finding : report.getFindings()) {
+            if (entry.getKey().equals(finding.getIndexCollection()) && keys.equals(finding.getIndexKeys())) {
+              finding.indexCreated = true;
+            }
+          }
+        } catch (MongoException e) {
+          LOG.error("Pipeline advisor could not create index " + entry.getKey() + " " + keys.toJson() + ": " + e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  private Map<String, Object> getSampleParameters(PipelineDefinition definition) {
+    Map<String, Object> parameters = new HashMap<>();
+    Map<String, Class<?>> types = parameterTypes.getOrDefault(definition.getId(), Collections.emptyMap());
+    for (String name : definition.getTemplate().getParameterNames()) {
+      Object sample = types.containsKey(name) ? sampleValue(types.get(name)) : null;
+      if (sample != null) {
+        parameters.put(name, sample);
+      }
+    }
+    BsonValue declared = definition.getDocument().get("sampleParameters");
+    if (declared != null && declared.isDocument()) {
+      parameters.putAll(declared.asDocument());
+    }
+    Map<String, ?> configured = sampleParameters.get(definition.getId());
+    if (configured != null) {
+      parameters.putAll(configured);
+    }
+    return parameters;
+  }
+
+  // The explain only needs the type right, e.g. a number for a $gt on a number field or an array for an $in.
+  static Object sampleValue(Class<?> type) {
+    Class<?> wrapper = ClassUtils.resolvePrimitiveIfNecessary(type);
+    if (CharSequence.class.isAssignableFrom(wrapper)) {
+      return "";
+    } else if (wrapper == Integer.class || wrapper == Short.class || wrapper == Byte.class) {
+      return 0;
+    } else if (wrapper == Long.class) {
+      return 0L;
+    } else if (wrapper == Double.class || wrapper == Float.class) {
+      return 0.0;
+    } else if (wrapper == BigDecimal.class) {
+      return BigDecimal.ZERO;
+    } else if (wrapper == Boolean.class) {
+      return false;
+    } else if (wrapper == Date.class) {
+      return new Date();
+    } else if (wrapper == ObjectId.class) {
+      return new ObjectId();
+    } else if (wrapper.isEnum() && wrapper.getEnumConstants().length > 0) {
+      return ((Enum<?>) wrapper.getEnumConstants()[0]).name();
+    } else if (Collection.class.isAssignableFrom(wrapper) || wrapper.isArray()) {
+      return Collections.emptyList();
+    }
+    return null;
+  }
+
+  /**
+   * Takes the placeholder types from the parameters of the store @PipelineRun methods, a parameter used by several methods
+   * keeping the first type.
+   */
+  void addStore(Class<?> storeClass) {
+    for (Method method : storeClass.getMethods()) {
+      if (method.isAnnotationPresent(PipelineRun.class)) {
+        PipelineRunMethod pipelineRunMethod = new PipelineRunMethod(method);
+        Map<String, Class<?>> types = parameterTypes.computeIfAbsent(pipelineRunMethod.getPipelineId(), key -> new HashMap<>());
+        pipelineRunMethod.getParameterTypes().forEach(types::putIfAbsent);
+      }
+    }
+  }
+
+  /**
+   * @return the last report, empty until the first analysis.
+   */
+  public Report getReport() {
+    return report;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public void setMode(Mode mode) {
+    this.mode = mode;
+  }
+
+  /**
+   * The Spring profiles {@link Mode#FAIL_FAST} and {@link Mode#AUTO_CREATE_INDEXES} apply in, e.g. "test" and "ci", the others
+   * only getting the report. Default none, so these modes only report until set.
+   */
+  public void setEnforcedProfiles(String... enforcedProfiles) {
+    this.enforcedProfiles = enforcedProfiles;
+  }
+
+  /**
+   * Values for the placeholders of a pipeline, for a representative plan. Needed for the placeholders not bound to a store
+   * method parameter of a simple type.
+   */
+  public void setSampleParameters(String pipelineId, Map<String, ?> parameters) {
+    sampleParameters.put(pipelineId, parameters);
+  }
+
+  /**
+   * Pipelines not analyzed, e.g. scanning a small collection on purpose.
+   */
+  public void setIgnoredPipelines(String... pipelineIds) {
+    ignoredPipelines.clear();
+    ignoredPipelines.addAll(Arrays.asList(pipelineIds));
+  }
+
+  void setEnvironment(Environment environment) {
+    this.environment = environment;
+  }
+}
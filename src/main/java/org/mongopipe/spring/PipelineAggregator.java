@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+/**
+ * Runs the pipelines by id with the definitions taken from the {@link PipelineDefinitionCache}. Registered as the
+ * "pipelineAggregator" bean and used by the stores.
+ */
+public class PipelineAggregator {
+  private static final Log LOG = CustomLogFactory.getLogger(PipelineAggregator.class);
+  private final PipelineDefinitionCache definitions;
+  private final Supplier<MongoDatabase> mongoDatabaseSupplier;
+  // Whether each pipeline has options, read with the migration and again after the pipeline is invalidated.
+  private final Map<String, Boolean> pipelineOptions = new ConcurrentHashMap<>();
+  private volatile MongoDatabase mongoDatabase;
+
+  public PipelineAggregator(PipelineDefinitionCache definitions, Supplier<MongoDatabase> mongoDatabaseSupplier) {
+    this.definitions = definitions;
+    this.mongoDatabaseSupplier = mongoDatabaseSupplier;
+    definitions.addInvalidationListener(pipelineId -> {
+      if (pipelineId == null) {
+        pipelineOptions.clear();
+      } else {
+        pipelineOptions.remove(pipelineId);
+      }
+    });
+  }
+
+  public <T> AggregateIterable<T> aggregate(String pipelineId, Map<String, ?> parameters, Class<T> resultClass) {
+    return aggregate(pipelineId, parameters, resultClass, null);
+  }
+
+  /**
+   * @param projection if not null appended as a final $project stage, unless the pipeline already ends with one.
+   */
+  public <T> AggregateIterable<T> aggregate(String pipelineId, Map<String, ?> parameters, Class<T> resultClass, BsonDocument projection) {
+    PipelineDefinition definition = definitions.get(pipelineId);
+    MongoDatabase database = getMongoDatabase();
+    List<BsonDocument> stages = ResultProjection.apply(definition.getTemplate().bind(parameters, database.getCodecRegistry()), projection);
+    PipelineOptions options = definition.getOptions();
+    return options.apply(options.apply(database.getCollection(definition.getCollection(), BsonDocument.class)).aggregate(stages, resultClass));
+  }
+
+  /**
+   * Runs a page of a pipeline ending with a $sort, see {@link KeysetPage}.
+   *
+   * @param projection if not null appended as a final $project stage, with the sort fields.
+   * @return the page with the raw results.
+   */
+  public PipelineSlice<RawBsonDocument> aggregatePage(String pipelineId, Map<String, ?> parameters, KeysetPage page, BsonDocument projection) {
+    PipelineDefinition definition = definitions.get(pipelineId);
+    MongoDatabase database = getMongoDatabase();
+    List<BsonDocument> stages = definition.getTemplate().bind(parameters, database.getCodecRegistry());
+    KeysetPagination pagination = KeysetPagination.of(pipelineId, stages);
+    stages = ResultProjection.apply(pagination.apply(stages, page), pagination.includeSortFields(projection));
+    PipelineOptions options = definition.getOptions();
+    List<RawBsonDocument> results = options.apply(options.apply(database.getCollection(definition.getCollection(), BsonDocument.class))
+        .aggregate(stages, RawBsonDocument.class)).into(new ArrayList<>(page.getSize() + 1));
+    return pagination.toSlice(results, page.getSize());
+  }
+
+  /**
+   * @return a batch of pipeline runs sharing a $facet aggregation per collection.
+   */
+  public PipelineBatch batch() {
+    return new PipelineBatch(this);
+  }
+
+  /**
+   * @return whether the pipeline has {@link PipelineOptions}, which the core store does not apply. Read once per pipeline, without
+   *     caching its definition, and false if it can not be read so that the core store reports it.
+   */
+  public boolean hasOptions(String pipelineId) {
+    Boolean result = pipelineOptions.get(pipelineId);
+    if (result == null) {
+      long generation = definitions.getInvalidations();
+      try {
+        result = !definitions.load(pipelineId).getOptions().isEmpty();
+      } catch (RuntimeException e) {
+        LOG.warn("Could not read the options of pipeline " + pipelineId + ": " + e.getMessage());
+        result = false;
+      }
+      pipelineOptions.put(pipelineId, result);
+      if (generation != definitions.getInvalidations()) {
+        pipelineOptions.remove(pipelineId); // Possibly read before the change.
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reads whether each stored pipeline has options, done with the migration instead of on the first runs.
+   */
+  void loadOptions() {
+    for (PipelineDefinition definition : definitions.loadAll()) {
+      pipelineOptions.put(definition.getId(), !definition.getOptions().isEmpty());
+    }
+  }
+
+  /**
+   * @return the database with the generated and POJO codecs added to its codecs.
+   */
+  public MongoDatabase getMongoDatabase() {
+    MongoDatabase result = mongoDatabase;
+    if (result == null) {
+      MongoDatabase database = mongoDatabaseSupplier.get();
+      // The database codecs first, so that the custom ones win. The generated codecs are only preferred to the automatic POJO ones.
+      CodecRegistry codecRegistry = fromRegistries(database.getCodecRegistry(),
+          fromProviders(new GeneratedCodecProvider(), PojoCodecProvider.builder().automatic(true).build()));
+      mongoDatabase = result = database.withCodecRegistry(codecRegistry);
+    }
+    return result;
+  }
+
+  /**
+   * @return true if the type is decoded by the generated or the default POJO codecs, which map the fields by the default
+   *     conventions, false if the database registry has a codec for it.
+   */
+  boolean hasDefaultCodec(Class<?> type) {
+    try {
+      mongoDatabaseSupplier.get().getCodecRegistry().get(type);
+      return false;
+    } catch (CodecConfigurationException e) {
+      return true;
+    }
+  }
+
+  public PipelineDefinitionCache getDefinitions() {
+    return definitions;
+  }
+}
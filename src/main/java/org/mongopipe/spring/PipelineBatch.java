@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs several pipelines in one round trip per collection, as the sub-pipelines of a single $facet aggregation, e.g. for the
+ * pipelines of a dashboard:
+ * <pre>
+ * PipelineBatch batch = pipelineAggregator.batch();
+ * PipelineBatch.Result&lt;Pizza&gt; small = batch.add("matchingPizzas", Collections.singletonMap("pizzaSize", "small"), Pizza.class);
+ * PipelineBatch.Result&lt;Order&gt; orders = batch.add("totalOrdersGroupedBySize", parameters, Order.class);
+ * batch.execute();
+ * List&lt;Pizza&gt; smallPizzas = small.get();
+ * </pre>
+ * A $match first in all the pipelines of a collection runs before the $facet, where it can use an index, but the other stages
+ * in $facet never use indexes. So it suits the pipelines filtering on the same fields, or scanning the collection anyway.
+ * <p>
+ * The pipelines run separately instead when alone on their collection, when they have {@link PipelineOptions}, a stage not
+ * allowed in $facet or a $text search not in the shared $match, and when the $facet of a collection fails, e.g. its results
+ * exceeding the 16 MB document or the 100 MB $facet limit.
+ */
+public class PipelineBatch {
+  private static final Log LOG = CustomLogFactory.getLogger(PipelineBatch.class);
+  // Not allowed in a $facet sub-pipeline.
+  private static final Set<String> FACET_EXCLUDED_STAGES = new HashSet<>(Arrays.asList("$collStats", "$facet", "$geoNear", "$indexStats",
+      "$out", "$merge", "$planCacheStats", "$search", "$searchMeta", "$changeStream", "$documents", "$currentOp", "$listSessions",
+      "$listLocalSessions"));
+  private static final int BSON_OBJECT_TOO_LARGE = 10334;
+  // The 100 MB limit of the $facet output since MongoDB 4.4.
+  private static final int FACET_TOO_LARGE = 4031700;
+
+  private final PipelineAggregator pipelineAggregator;
+  private final List<Result<?>> results = new ArrayList<>();
+  private boolean executed;
+
+  PipelineBatch(PipelineAggregator pipelineAggregator) {
+    this.pipelineAggregator = pipelineAggregator;
+  }
+
+  /**
+   * The results of a pipeline of the batch, available once executed.
+   */
+  public static final class Result<T> {
+    private final String pipelineId;
+    private final Map<String, ?> parameters;
+    private final Class<T> resultClass;
+    private volatile List<T> values;
+
+    private Result(String pipelineId, Map<String, ?> parameters, Class<T> resultClass) {
+      this.pipelineId = pipelineId;
+      this.parameters = parameters;
+      this.resultClass = resultClass;
+    }
+
+    public String getPipelineId() {
+      return pipelineId;
+    }
+
+    /**
+     * @throws IllegalStateException if the batch was not executed.
+     */
+    public List<T> get() {
+      if (values == null) {
+        throw new IllegalStateException("Execute the batch before getting the results of " + pipelineId);
+      }
+      return values;
+    }
+  }
+
+  /**
+   * Adds a pipeline run to the batch.
+   */
+  public synchronized <T> Result<T> add(String pipelineId, Map<String, ?> parameters, Class<T> resultClass) {
+    if (executed) {
+      throw new IllegalStateException("The batch was already executed");
+    }
+    Result<T> result = new Result<>(pipelineId, parameters == null ? Collections.emptyMap() : parameters, resultClass);
+    results.add(result);
+    return result;
+  }
+
+  /**
+   * Runs the pipelines added, one aggregation per collection when possible.
+   */
+  public synchronized void execute() {
+    if (executed) {
+      throw new IllegalStateException("The batch was already executed");
+    }
+    executed = true;
+    MongoDatabase database = pipelineAggregator.getMongoDatabase();
+    Map<String, List<Facet>> facetsByCollection = new LinkedHashMap<>();
+    for (Result<?> result : results) {
+      PipelineDefinition definition = pipelineAggregator.getDefinitions().get(result.pipelineId);
+      List<BsonDocument> stages = definition.getTemplate().bind(result.parameters, database.getCodecRegistry());
+      if (definition.getOptions().isEmpty() && isFacetAllowed(stages)) {
+        facetsByCollection.computeIfAbsent(definition.getCollection(), collection -> new ArrayList<>()).add(new Facet(result, stages));
+      } else {
+        runSeparately(result);
+      }
+    }
+    for (Map.Entry<String, List<Facet>> entry : facetsByCollection.entrySet()) {
+      List<Facet> facets = new ArrayList<>(entry.getValue());
+      BsonDocument sharedMatch = getSharedMatch(facets);
+      // $text is only allowed in the first stage of the aggregation, so only in the $match run before the $facet.
+      for (Iterator<Facet> iterator = facets.iterator(); iterator.hasNext(); ) {
+        Facet facet = iterator.next();
+        if (hasText(sharedMatch == null ? facet.stages : facet.stages.subList(1, facet.stages.size()))) {
+          runSeparately(facet.result);
+          iterator.remove();
+        }
+      }
+      if (facets.size() < 2) {
+        facets.forEach(facet -> runSeparately(facet.result));
+        continue;
+      }
+      try {
+        runFacet(database, entry.getKey(), facets, sharedMatch);
+      } catch (MongoCommandException e) {
+        if (e.getErrorCode() == BSON_OBJECT_TOO_LARGE || e.getErrorCode() == FACET_TOO_LARGE) {
+          LOG.info("The $facet results on " + entry.getKey() + " exceed the size limit, running the pipelines separately");
+        } else {
+          LOG.warn("The $facet on " + entry.getKey() + " failed, running the pipelines separately: " + e.getErrorMessage());
+        }
+        facets.forEach(facet -> runSeparately(facet.result));
+      }
+    }
+  }
+
+  private static boolean isFacetAllowed(List<BsonDocument> stages) {
+    for (BsonDocument stage : stages) {
+      if (FACET_EXCLUDED_STAGES.contains(stage.getFirstKey())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasText(List<BsonDocument> stages) {
+    for (BsonDocument stage : stages) {
+      if (stage.getFirstKey().equals("$match") && hasText(stage.get("$match"))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Also nested in $and, $or and $nor.
+  private static boolean hasText(BsonValue value) {
+    if (value.isDocument()) {
+      for (Map.Entry<String, BsonValue> field : value.asDocument().entrySet()) {
+        if (field.getKey().equals("$text") || hasText(field.getValue())) {
+          return true;
+        }
+      }
+    } else if (value.isArray()) {
+      for (BsonValue element : value.asArray()) {
+        if (hasText(element)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private <T> void runSeparately(Result<T> result) {
+    result.values = pipelineAggregator.aggregate(result.pipelineId, result.parameters, result.resultClass).into(new ArrayList<>());
+  }
+
+  private void runFacet(MongoDatabase database, String collection, List<Facet> facets, BsonDocument sharedMatch) {
+    List<BsonDocument> stages = new ArrayList<>(2);
+    if (sharedMatch != null) {
+      stages.add(sharedMatch);
+    }
+    // Field names from the position, as the pipeline ids may contain dots.
+    BsonDocument facetStage = new BsonDocument();
+    for (int i = 0; i < facets.size(); i++) {
+      List<BsonDocument> subPipeline = facets.get(i).stages;
+      if (sharedMatch != null) {
+        subPipeline = subPipeline.subList(1, subPipeline.size());
+      }
+      if (subPipeline.isEmpty()) {
+        subPipeline = Collections.singletonList(new BsonDocument("$match", new BsonDocument()));
+      }
+      facetStage.append("p" + i, new BsonArray(subPipeline));
+    }
+    stages.add(new BsonDocument("$facet", facetStage));
+    RawBsonDocument output = database.getCollection(collection, BsonDocument.class).aggregate(stages, RawBsonDocument.class).first();
+    for (int i = 0; i < facets.size(); i++) {
+      decode(database, facets.get(i).result, output.getArray("p" + i));
+    }
+  }
+
+  private static BsonDocument getSharedMatch(List<Facet> facets) {
+    BsonDocument first = facets.get(0).stages.isEmpty() ? null : facets.get(0).stages.get(0);
+    if (first == null || !first.getFirstKey().equals("$match")) {
+      return null;
+    }
+    for (Facet facet : facets) {
+      if (facet.stages.isEmpty() || !facet.stages.get(0).equals(first)) {
+        return null;
+      }
+    }
+    return first;
+  }
+
+  private static <T> void decode(MongoDatabase database, Result<T> result, BsonArray documents) {
+    List<T> values = new ArrayList<>(documents.size());
+    if (result.resultClass == RawBsonDocument.class || result.resultClass == BsonDocument.class) {
+      for (BsonValue document : documents) {
+        values.add(result.resultClass.cast(document));
+      }
+    } else {
+      Codec<T> codec = database.getCodecRegistry().get(result.resultClass);
+      for (BsonValue document : documents) {
+        values.add(((RawBsonDocument) document).decode(codec));
+      }
+    }
+    result.values = values;
+  }
+
+  private static final class Facet {
+    final Result<?> result;
+    final List<BsonDocument> stages;
+
+    Facet(Result<?> result, List<BsonDocument> stages) {
+      this.result = result;
+      this.stages = stages;
+    }
+  }
+}
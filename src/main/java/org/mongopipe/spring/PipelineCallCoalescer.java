@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Lets the concurrent identical pipeline runs, same pipeline id and parameters, share a single execution and its materialized
+ * results. Unlike the {@link PipelineResultCache} nothing is kept once the execution completes. Registered as the
+ * "pipelineCallCoalescer" bean when enabled with {@link MongoPipeStarter#setCoalescingEnabled}.
+ */
+public class PipelineCallCoalescer {
+  private final Map<Object, CompletableFuture<List<?>>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder executions = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * @return the results of the execution in flight for the key, otherwise of the execution made now.
+   */
+  List<?> execute(Object key, Supplier<List<?>> execution) {
+    CompletableFuture<List<?>> own = new CompletableFuture<>();
+    CompletableFuture<List<?>> existing = inFlight.putIfAbsent(key, own);
+    if (existing != null) {
+      coalesced.increment();
+      try {
+        return existing.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+    }
+    executions.increment();
+    try {
+      List<?> results = execution.get();
+      own.complete(results);
+      return results;
+    } catch (RuntimeException | Error e) {
+      own.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, own);
+    }
+  }
+
+  /**
+   * @return the runs that executed the pipeline.
+   */
+  public long getExecutions() {
+    return executions.sum();
+  }
+
+  /**
+   * @return the runs that shared the execution of another one.
+   */
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  public int getInFlight() {
+    return inFlight.size();
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A pipeline as stored in the pipeline store collection, e.g. {"_id": "matchingPizzas", "collection": "pizzas", "pipeline": [...]}.
+ */
+public class PipelineDefinition {
+  private final String id;
+  private final String collection;
+  private final List<BsonDocument> stages;
+  private final BsonDocument document;
+  private final PipelineTemplate template;
+  private final PipelineOptions options;
+
+  PipelineDefinition(String id, BsonDocument document) {
+    this(id, document, PipelineOptions.NONE);
+  }
+
+  /**
+   * @param overrides replacing the options of the document.
+   */
+  PipelineDefinition(String id, BsonDocument document, PipelineOptions overrides) {
+    this.id = id;
+    this.document = document;
+    BsonValue collectionValue = document.get("collection");
+    BsonValue pipelineValue = document.get("pipeline");
+    if (collectionValue == null || !collectionValue.isString() || pipelineValue == null || !pipelineValue.isArray()) {
+      throw new MongoPipeConfigException("Pipeline '" + id + "' needs a 'collection' and a 'pipeline' array");
+    }
+    this.collection = collectionValue.asString().getValue();
+    BsonArray pipeline = pipelineValue.asArray();
+    List<BsonDocument> stages = new ArrayList<>(pipeline.size());
+    for (BsonValue stage : pipeline) {
+      stages.add(stage.asDocument());
+    }
+    this.stages = Collections.unmodifiableList(stages);
+    this.template = PipelineTemplate.compile(this.stages);
+    this.options = PipelineOptions.fromDocument(id, document).overriddenBy(overrides);
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getCollection() {
+    return collection;
+  }
+
+  /**
+   * @return the stages with the parameter placeholders not bound.
+   */
+  public List<BsonDocument> getStages() {
+    return stages;
+  }
+
+  /**
+   * @return the stages compiled for binding, recompiled with each definition loaded.
+   */
+  public PipelineTemplate getTemplate() {
+    return template;
+  }
+
+  public PipelineOptions getOptions() {
+    return options;
+  }
+
+  /**
+   * @return the whole stored document, not to be modified.
+   */
+  public BsonDocument getDocument() {
+    return document;
+  }
+}
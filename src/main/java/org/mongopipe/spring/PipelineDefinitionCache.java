@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.springframework.core.env.Environment;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.mongodb.client.model.Filters.eq;
+
+/**
+ * Bounded in-process cache of the pipeline definitions, keyed by pipeline id, registered as the "pipelineDefinitionCache" bean.
+ * A change stream on the pipeline store collection invalidates the entries updated from any node. On a standalone server, where
+ * change streams are not available, the entries expire after the TTL instead.
+ */
+public class PipelineDefinitionCache {
+  private static final Log LOG = CustomLogFactory.getLogger(PipelineDefinitionCache.class);
+  // "The $changeStream stage is only supported on replica sets".
+  private static final int CHANGE_STREAM_NOT_SUPPORTED = 40573;
+
+  private final Supplier<MongoDatabase> mongoDatabase;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private String pipelineStoreCollection = "pipeline_store";
+  private int maxSize = 1000;
+  private long ttlMillis = 30000L;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  // Also a generation, so that a definition loaded while being invalidated is not cached.
+  private final AtomicLong invalidations = new AtomicLong();
+  private volatile boolean changeStreamActive;
+  private volatile boolean running;
+  private volatile MongoCursor<?> changeStreamCursor;
+  private volatile Thread watcher;
+  private volatile boolean stopped;
+  private volatile Environment environment;
+  private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+  private static class Entry {
+    final PipelineDefinition definition;
+    final long loadedAt = System.currentTimeMillis();
+
+    Entry(PipelineDefinition definition) {
+      this.definition = definition;
+    }
+  }
+
+  public PipelineDefinitionCache(Supplier<MongoDatabase> mongoDatabase) {
+    this.mongoDatabase = mongoDatabase;
+  }
+
+  /**
+   * @throws MongoPipeConfigException if the pipeline does not exist.
+   */
+  public PipelineDefinition get(String pipelineId) {
+    PipelineDefinition cached = getIfPresent(pipelineId);
+    if (cached != null) {
+      return cached;
+    }
+    misses.increment();
+    if (watcher == null) {
+      start();
+    }
+    long generation = invalidations.get();
+    PipelineDefinition definition = load(pipelineId);
+    if (entries.size() >= maxSize) {
+      evictOldest();
+    }
+    entries.put(pipelineId, new Entry(definition));
+    if (generation != invalidations.get()) {
+      entries.remove(pipelineId);
+    }
+    return definition;
+  }
+
+  /**
+   * @return the cached definition or null if it needs to be loaded, never blocks.
+   */
+  public PipelineDefinition getIfPresent(String pipelineId) {
+    Entry entry = entries.get(pipelineId);
+    if (entry != null && (changeStreamActive || System.currentTimeMillis() - entry.loadedAt < ttlMillis)) {
+      hits.increment();
+      return entry.definition;
+    }
+    return null;
+  }
+
+  /**
+   * Reads the definition from the pipeline store, without caching it.
+   *
+   * @throws MongoPipeConfigException if the pipeline does not exist.
+   */
+  PipelineDefinition load(String pipelineId) {
+    BsonDocument document = collection().find(eq("_id", pipelineId)).first();
+    if (document == null) {
+      throw new MongoPipeConfigException("Pipeline not found: " + pipelineId);
+    }
+    return create(pipelineId, document);
+  }
+
+  private PipelineDefinition create(String pipelineId, BsonDocument document) {
+    return new PipelineDefinition(pipelineId, document, PipelineOptions.fromProperties(pipelineId, environment));
+  }
+
+  /**
+   * @return all the stored pipelines, read from the collection without caching them. Invalid ones are logged and skipped.
+   */
+  public List<PipelineDefinition> loadAll() {
+    List<PipelineDefinition> definitions = new ArrayList<>();
+    for (BsonDocument document : collection().find()) {
+      BsonValue id = document.get("_id");
+      try {
+        definitions.add(create(id.isString() ? id.asString().getValue() : id.toString(), document));
+      } catch (MongoPipeConfigException e) {
+        LOG.warn(e.getMessage());
+      }
+    }
+    return definitions;
+  }
+
+  private void evictOldest() {
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    Map.Entry<String, Entry> oldest = null;
+    while (iterator.hasNext()) {
+      Map.Entry<String, Entry> entry = iterator.next();
+      if (oldest == null || entry.getValue().loadedAt < oldest.getValue().loadedAt) {
+        oldest = entry;
+      }
+    }
+    if (oldest != null) {
+      entries.remove(oldest.getKey(), oldest.getValue());
+    }
+  }
+
+  public void invalidate(String pipelineId) {
+    invalidations.incrementAndGet();
+    entries.remove(pipelineId);
+    invalidationListeners.forEach(listener -> listener.accept(pipelineId));
+  }
+
+  public void invalidateAll() {
+    invalidations.incrementAndGet();
+    entries.clear();
+    invalidationListeners.forEach(listener -> listener.accept(null));
+  }
+
+  /**
+   * @param listener called with the id of each invalidated pipeline, or null when all are.
+   */
+  public void addInvalidationListener(Consumer<String> listener) {
+    invalidationListeners.add(listener);
+  }
+
+  /**
+   * Starts watching the pipeline store collection for changes, done automatically on first use.
+   */
+  public synchronized void start() {
+    if (running || stopped) {
+      return;
+    }
+    running = true;
+    watcher = new Thread(this::watch, "mongopipe-pipeline-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  public synchronized void stop() {
+    stopped = true;
+    running = false;
+    changeStreamActive = false;
+    MongoCursor<?> cursor = changeStreamCursor;
+    if (cursor != null) {
+      cursor.close();
+    }
+    if (watcher != null) {
+      watcher.interrupt();
+    }
+  }
+
+  private void watch() {
+    while (running) {
+      try (MongoCursor<ChangeStreamDocument<BsonDocument>> cursor = collection().watch().iterator()) {
+        changeStreamCursor = cursor;
+        changeStreamActive = true;
+        invalidateAll(); // Changes made before the stream was opened.
+        while (running && cursor.hasNext()) {
+          BsonDocument documentKey = cursor.next().getDocumentKey();
+          BsonValue id = documentKey == null ? null : documentKey.get("_id");
+          if (id != null && id.isString()) {
+            invalidate(id.asString().getValue());
+          } else {
+            invalidateAll();
+          }
+        }
+      } catch (MongoCommandException e) {
+        changeStreamActive = false;
+        if (e.getErrorCode() == CHANGE_STREAM_NOT_SUPPORTED) {
+          LOG.info("Change streams not supported by the server, pipeline definitions expire after " + ttlMillis + " ms.");
+          return;
+        }
+        retryLater(e);
+      } catch (MongoException | IllegalStateException e) {
+        changeStreamActive = false;
+        retryLater(e);
+      } finally {
+        changeStreamCursor = null;
+      }
+    }
+  }
+
+  private void retryLater(RuntimeException e) {
+    if (!running) {
+      return;
+    }
+    LOG.warn("Pipeline store change stream failed, falling back to expiring pipeline definitions after " + ttlMillis + " ms: " + e.getMessage());
+    try {
+      Thread.sleep(ttlMillis);
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      running = false;
+    }
+  }
+
+  private MongoCollection<BsonDocument> collection() {
+    return mongoDatabase.get().getCollection(pipelineStoreCollection, BsonDocument.class);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getInvalidations() {
+    return invalidations.get();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * @return true if the entries are invalidated by a change stream, false if they expire after the TTL.
+   */
+  public boolean isChangeStreamActive() {
+    return changeStreamActive;
+  }
+
+  /**
+   * The collection where the PipelineStore saves the pipelines, the starter sets it from {@code MongoPipeConfig.storeCollection}.
+   * Default "pipeline_store".
+   */
+  public void setPipelineStoreCollection(String pipelineStoreCollection) {
+    this.pipelineStoreCollection = pipelineStoreCollection;
+  }
+
+  /**
+   * Default 1000 pipelines.
+   */
+  public void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Expiry used while no change stream is available, bounding how long an update made on another node is not seen. Default 30
+   * seconds.
+   */
+  public void setTtlMillis(long ttlMillis) {
+    this.ttlMillis = ttlMillis;
+  }
+
+  /**
+   * Where the {@link PipelineOptions} overrides are read from.
+   */
+  void setEnvironment(Environment environment) {
+    this.environment = environment;
+  }
+}
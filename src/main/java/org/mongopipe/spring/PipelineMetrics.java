@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+/**
+ * Records the pipeline runs made through the stores, per pipeline id. See {@link InMemoryPipelineMetrics} and
+ * {@link MicrometerPipelineMetrics}.
+ */
+public interface PipelineMetrics {
+
+  /**
+   * @return the meter of a pipeline, looked up once per run so it should be cheap.
+   */
+  PipelineMeter forPipeline(String pipelineId);
+
+  interface PipelineMeter {
+    /**
+     * @param durationNanos until the results are returned, for streams this is the time to the first batch.
+     */
+    void recordCall(long durationNanos, boolean error);
+
+    /**
+     * @param bytes the decoded BSON size, 0 if not known.
+     */
+    void recordDocuments(long count, long bytes);
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.ReadPreference;
+import com.mongodb.Tag;
+import com.mongodb.TagSet;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationAlternate;
+import com.mongodb.client.model.CollationCaseFirst;
+import com.mongodb.client.model.CollationMaxVariable;
+import com.mongodb.client.model.CollationStrength;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.springframework.core.env.PropertyResolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a pipeline is run, from the "options" of its pipeline store document, e.g.
+ * <pre>
+ * {"_id": "totalOrdersGroupedBySize", ..., "options": {"readPreference": "secondaryPreferred",
+ *     "readPreferenceTags": [{"nodeType": "ANALYTICS"}, {}], "maxStalenessSeconds": 120, "readConcern": "majority",
+ *     "batchSize": 1000, "allowDiskUse": true, "maxTimeMS": 30000, "hint": {"size": 1}, "collation": {"locale": "en", "strength": 2},
+ *     "comment": "monthly report"}}
+ * </pre>
+ * Each can be overridden by the Spring properties "mongopipe.pipelines.&lt;pipelineId&gt;.read-preference", ".read-preference-tags"
+ * (tag sets separated by ';', tags by ',', e.g. "nodeType:ANALYTICS;"), ".max-staleness-seconds", ".read-concern", ".batch-size",
+ * ".allow-disk-use", ".max-time-ms", ".hint" (an index name or JSON keys), ".collation" (JSON) and ".comment", the tags and
+ * staleness replacing the document ones only along with the read preference. The options are read with each definition loaded,
+ * so the document changes apply without a restart.
+ * <p>
+ * The store methods of the pipelines having options run through the {@link PipelineAggregator}. Whether a pipeline has options
+ * is read with the migration, and again after its definition is invalidated.
+ */
+public final class PipelineOptions {
+  static final String PROPERTY_PREFIX = "mongopipe.pipelines.";
+  static final PipelineOptions NONE = new PipelineOptions().resolve();
+
+  private String readPreferenceName;
+  private List<TagSet> tagSets;
+  private Long maxStalenessSeconds;
+  private String readConcernLevel;
+  private Integer batchSize;
+  private Boolean allowDiskUse;
+  private Long maxTimeMillis;
+  private BsonValue hint;
+  private BsonDocument collationDocument;
+  private String comment;
+  private ReadPreference readPreference;
+  private ReadConcern readConcern;
+  private Collation collation;
+
+  private PipelineOptions() {
+  }
+
+  private PipelineOptions resolve() {
+    if (readPreferenceName == null) {
+      if (tagSets != null || maxStalenessSeconds != null) {
+        throw new IllegalArgumentException("readPreferenceTags and maxStalenessSeconds need a readPreference");
+      }
+    } else if (tagSets == null && maxStalenessSeconds == null) {
+      readPreference = ReadPreference.valueOf(readPreferenceName);
+    } else {
+      List<TagSet> tags = tagSets == null ? Collections.emptyList() : tagSets;
+      readPreference = maxStalenessSeconds == null ? ReadPreference.valueOf(readPreferenceName, tags)
+          : ReadPreference.valueOf(readPreferenceName, tags, maxStalenessSeconds, TimeUnit.SECONDS);
+    }
+    readConcern = readConcernLevel == null ? null : new ReadConcern(ReadConcernLevel.fromString(readConcernLevel));
+    if (batchSize != null && batchSize < 0) {
+      throw new IllegalArgumentException("batchSize must not be negative");
+    }
+    if (hint != null && !hint.isString() && !hint.isDocument()) {
+      throw new IllegalArgumentException("hint must be an index name or the index keys");
+    }
+    collation = collationDocument == null ? null : toCollation(collationDocument);
+    return this;
+  }
+
+  /**
+   * @return the options of the "options" field of a pipeline store document.
+   */
+  static PipelineOptions fromDocument(String pipelineId, BsonDocument document) {
+    BsonValue optionsValue = document.get("options");
+    if (optionsValue == null || optionsValue.isNull()) {
+      return NONE;
+    }
+    try {
+      BsonDocument options = optionsValue.asDocument();
+      PipelineOptions result = new PipelineOptions();
+      result.readPreferenceName = getString(options, "readPreference");
+      if (options.containsKey("readPreferenceTags")) {
+        result.tagSets = new ArrayList<>();
+        for (BsonValue tagSet : options.getArray("readPreferenceTags")) {
+          List<Tag> tags = new ArrayList<>();
+          for (Map.Entry<String, BsonValue> tag : tagSet.asDocument().entrySet()) {
+            tags.add(new Tag(tag.getKey(), tag.getValue().asString().getValue()));
+          }
+          result.tagSets.add(new TagSet(tags));
+        }
+      }
+      result.maxStalenessSeconds = options.containsKey("maxStalenessSeconds") ? options.getNumber("maxStalenessSeconds").longValue() : null;
+      result.readConcernLevel = getString(options, "readConcern");
+      result.batchSize = options.containsKey("batchSize") ? options.getNumber("batchSize").intValue() : null;
+      result.allowDiskUse = options.containsKey("allowDiskUse") ? options.getBoolean("allowDiskUse").getValue() : null;
+      result.maxTimeMillis = options.containsKey("maxTimeMS") ? options.getNumber("maxTimeMS").longValue() : null;
+      result.hint = options.get("hint");
+      result.collationDocument = options.containsKey("collation") ? options.getDocument("collation") : null;
+      result.comment = getString(options, "comment");
+      return result.resolve();
+    } catch (RuntimeException e) {
+      throw new MongoPipeConfigException("Invalid options for pipeline '" + pipelineId + "': " + e.getMessage(), e);
+    }
+  }
+
+  private static String getString(BsonDocument document, String key) {
+    return document.containsKey(key) ? document.getString(key).getValue() : null;
+  }
+
+  /**
+   * @return the options set by the "mongopipe.pipelines.&lt;pipelineId&gt;." properties.
+   */
+  static PipelineOptions fromProperties(String pipelineId, PropertyResolver properties) {
+    if (properties == null) {
+      return NONE;
+    }
+    String prefix = PROPERTY_PREFIX + pipelineId + ".";
+    try {
+      PipelineOptions result = new PipelineOptions();
+      result.readPreferenceName = properties.getProperty(prefix + "read-preference");
+      String tags = properties.getProperty(prefix + "read-preference-tags");
+      result.tagSets = tags == null ? null : parseTagSets(tags);
+      result.maxStalenessSeconds = properties.getProperty(prefix + "max-staleness-seconds", Long.class);
+      result.readConcernLevel = properties.getProperty(prefix + "read-concern");
+      result.batchSize = properties.getProperty(prefix + "batch-size", Integer.class);
+      result.allowDiskUse = properties.getProperty(prefix + "allow-disk-use", Boolean.class);
+      result.maxTimeMillis = properties.getProperty(prefix + "max-time-ms", Long.class);
+      String hint = properties.getProperty(prefix + "hint");
+      if (hint != null) {
+        result.hint = hint.trim().startsWith("{") ? BsonDocument.parse(hint) : new BsonString(hint.trim());
+      }
+      String collation = properties.getProperty(prefix + "collation");
+      result.collationDocument = collation == null ? null : BsonDocument.parse(collation);
+      result.comment = properties.getProperty(prefix + "comment");
+      return result.resolve();
+    } catch (RuntimeException e) {
+      throw new MongoPipeConfigException("Invalid " + prefix + "* properties: " + e.getMessage(), e);
+    }
+  }
+
+  // "dc:east,usage:reporting;dc:west;" is 2 tag sets then any server.
+  private static List<TagSet> parseTagSets(String value) {
+    List<TagSet> result = new ArrayList<>();
+    for (String tagSet : value.split(";", -1)) {
+      List<Tag> tags = new ArrayList<>();
+      for (String tag : tagSet.split(",")) {
+        if (tag.trim().isEmpty()) {
+          continue;
+        }
+        int colon = tag.indexOf(':');
+        if (colon < 0) {
+          throw new IllegalArgumentException("Expected name:value tags but got '" + tag + "'");
+        }
+        tags.add(new Tag(tag.substring(0, colon).trim(), tag.substring(colon + 1).trim()));
+      }
+      result.add(new TagSet(tags));
+    }
+    return result;
+  }
+
+  private static Collation toCollation(BsonDocument document) {
+    Collation.Builder builder = Collation.builder();
+    for (Map.Entry<String, BsonValue> field : document.entrySet()) {
+      BsonValue value = field.getValue();
+      switch (field.getKey()) {
+        case "locale":
+          builder.locale(value.asString().getValue());
+          break;
+        case "caseLevel":
+          builder.caseLevel(value.asBoolean().getValue());
+          break;
+        case "caseFirst":
+          builder.collationCaseFirst(CollationCaseFirst.fromString(value.asString().getValue()));
+          break;
+        case "strength":
+          builder.collationStrength(CollationStrength.fromInt(value.asNumber().intValue()));
+          break;
+        case "numericOrdering":
+          builder.numericOrdering(value.asBoolean().getValue());
+          break;
+        case "alternate":
+          builder.collationAlternate(CollationAlternate.fromString(value.asString().getValue()));
+          break;
+        case "maxVariable":
+          builder.collationMaxVariable(CollationMaxVariable.fromString(value.asString().getValue()));
+          break;
+        case "normalization":
+          builder.normalization(value.asBoolean().getValue());
+          break;
+        case "backwards":
+          builder.backwards(value.asBoolean().getValue());
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown collation field '" + field.getKey() + "'");
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return these options with the ones set in the overrides replacing them.
+   */
+  PipelineOptions overriddenBy(PipelineOptions overrides) {
+    if (overrides.isEmpty()) {
+      return this;
+    }
+    if (isEmpty()) {
+      return overrides;
+    }
+    PipelineOptions result = new PipelineOptions();
+    // Tags and staleness only make sense with the read preference they were set with.
+    PipelineOptions readPreferenceOptions = overrides.readPreferenceName != null ? overrides : this;
+    result.readPreferenceName = readPreferenceOptions.readPreferenceName;
+    result.tagSets = readPreferenceOptions.tagSets;
+    result.maxStalenessSeconds = readPreferenceOptions.maxStalenessSeconds;
+    result.readConcernLevel = overrides.readConcernLevel != null ? overrides.readConcernLevel : readConcernLevel;
+    result.batchSize = overrides.batchSize != null ? overrides.batchSize : batchSize;
+    result.allowDiskUse = overrides.allowDiskUse != null ? overrides.allowDiskUse : allowDiskUse;
+    result.maxTimeMillis = overrides.maxTimeMillis != null ? overrides.maxTimeMillis : maxTimeMillis;
+    result.hint = overrides.hint != null ? overrides.hint : hint;
+    result.collationDocument = overrides.collationDocument != null ? overrides.collationDocument : collationDocument;
+    result.comment = overrides.comment != null ? overrides.comment : comment;
+    return result.resolve();
+  }
+
+  boolean isEmpty() {
+    return readPreference == null && readConcern == null && batchSize == null && allowDiskUse == null && maxTimeMillis == null
+        && hint == null && collation == null && comment == null;
+  }
+
+  /**
+   * @return the collection reading with these options.
+   */
+  <T> MongoCollection<T> apply(MongoCollection<T> collection) {
+    MongoCollection<T> result = collection;
+    if (readPreference != null) {
+      result = result.withReadPreference(readPreference);
+    }
+    if (readConcern != null) {
+      result = result.withReadConcern(readConcern);
+    }
+    return result;
+  }
+
+  /**
+   * @return the aggregation with these cursor and execution options.
+   */
+  <T> AggregateIterable<T> apply(AggregateIterable<T> aggregation) {
+    AggregateIterable<T> result = aggregation;
+    if (batchSize != null) {
+      result = result.batchSize(batchSize);
+    }
+    if (allowDiskUse != null) {
+      result = result.allowDiskUse(allowDiskUse);
+    }
+    if (maxTimeMillis != null) {
+      result = result.maxTime(maxTimeMillis, TimeUnit.MILLISECONDS);
+    }
+    if (hint != null) {
+      result = hint.isString() ? result.hintString(hint.asString().getValue()) : result.hint(hint.asDocument());
+    }
+    if (collation != null) {
+      result = result.collation(collation);
+    }
+    if (comment != null) {
+      result = result.comment(comment);
+    }
+    return result;
+  }
+
+  /**
+   * @return null for the one of the client.
+   */
+  public ReadPreference getReadPreference() {
+    return readPreference;
+  }
+
+  /**
+   * @return null for the one of the client.
+   */
+  public ReadConcern getReadConcern() {
+    return readConcern;
+  }
+
+  /**
+   * @return null for the driver default, the first batch then being of 101 documents.
+   */
+  public Integer getBatchSize() {
+    return batchSize;
+  }
+
+  public Boolean getAllowDiskUse() {
+    return allowDiskUse;
+  }
+
+  /**
+   * @return the server time limit, null for none.
+   */
+  public Long getMaxTimeMillis() {
+    return maxTimeMillis;
+  }
+
+  /**
+   * @return the index name as a string or the index keys as a document, null for none.
+   */
+  public BsonValue getHint() {
+    return hint;
+  }
+
+  public Collation getCollation() {
+    return collation;
+  }
+
+  public String getComment() {
+    return comment;
+  }
+
+  @Override
+  public String toString() {
+    return "PipelineOptions{readPreference=" + readPreference + ", readConcern=" + readConcernLevel + ", batchSize=" + batchSize
+        + ", allowDiskUse=" + allowDiskUse + ", maxTimeMS=" + maxTimeMillis + ", hint=" + hint + ", collation=" + collationDocument
+        + ", comment=" + comment + "}";
+  }
+}
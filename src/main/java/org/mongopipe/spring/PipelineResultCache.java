@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.BsonDocument;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.Environment;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caches the results of the @PipelineRun methods by pipeline id and parameters, for the pipelines it is enabled for. Registered
+ * as the "pipelineResultCache" bean.
+ * <p>
+ * Enabled per pipeline with {@link MongoPipeStarter#cachePipelineResults} or the Spring properties
+ * "mongopipe.cache.&lt;pipelineId&gt;.enabled", ".max-size" (default 1000 entries) and ".ttl-millis" (default 60 seconds). Each
+ * pipeline has its own {@link BoundedTtlCache}, or its "mongopipe.&lt;pipelineId&gt;" cache of the {@link CacheManager} if one is
+ * set, which then also decides the eviction. The CacheManager caches can be distributed and serialize their entries, so they are
+ * given the results as raw BSON, decoded on each hit, and the parameters as a JSON string key.
+ * <p>
+ * The entries of a pipeline are dropped when its definition changes in the pipeline store, and an entry computed with a
+ * previous definition is never returned. The documents cached by a {@link BoundedTtlCache} are shared between the callers and
+ * should not be modified.
+ */
+public class PipelineResultCache {
+  public static final String CACHE_NAME_PREFIX = "mongopipe.";
+  static final String PROPERTY_PREFIX = "mongopipe.cache.";
+
+  private final PipelineDefinitionCache pipelineDefinitionCache;
+  private final Map<String, Settings> settings = new ConcurrentHashMap<>();
+  private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+  private final Map<String, CacheStats> stats = new ConcurrentHashMap<>();
+  private volatile Environment environment;
+  private volatile CacheManager cacheManager;
+
+  /**
+   * Caching configuration of a pipeline.
+   */
+  public static class Settings {
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    public Settings(boolean enabled, int maxSize, long ttlMillis) {
+      this.enabled = enabled;
+      this.maxSize = maxSize;
+      this.ttlMillis = ttlMillis;
+    }
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public int getMaxSize() {
+      return maxSize;
+    }
+
+    public long getTtlMillis() {
+      return ttlMillis;
+    }
+  }
+
+  // The definition is kept to not return results of a pipeline changed since. Serialized only with raw results.
+  private static class CachedResults implements Serializable {
+    final BsonDocument definition;
+    final List<?> results;
+
+    CachedResults(BsonDocument definition, List<?> results) {
+      this.definition = definition;
+      this.results = results;
+    }
+  }
+
+  public PipelineResultCache(PipelineDefinitionCache pipelineDefinitionCache) {
+    this.pipelineDefinitionCache = pipelineDefinitionCache;
+    pipelineDefinitionCache.addInvalidationListener(this::invalidate);
+  }
+
+  public boolean isEnabled(String pipelineId) {
+    return getSettings(pipelineId).isEnabled();
+  }
+
+  Settings getSettings(String pipelineId) {
+    Settings result = settings.get(pipelineId);
+    return result != null ? result : settings.computeIfAbsent(pipelineId, this::readSettings);
+  }
+
+  private Settings readSettings(String pipelineId) {
+    Environment env = environment;
+    if (env == null) {
+      return new Settings(false, 1000, 60000L);
+    }
+    String prefix = PROPERTY_PREFIX + pipelineId + ".";
+    return new Settings(env.getProperty(prefix + "enabled", Boolean.class, false), env.getProperty(prefix + "max-size", Integer.class, 1000),
+        env.getProperty(prefix + "ttl-millis", Long.class, 60000L));
+  }
+
+  /**
+   * @return true if the results are cached as raw BSON documents, the keys being strings.
+   */
+  boolean isRaw() {
+    return cacheManager != null;
+  }
+
+  /**
+   * @return the cached results for the key, otherwise the loaded ones after caching them.
+   */
+  List<?> get(String pipelineId, Object key, Supplier<List<?>> loader) {
+    BsonDocument definition = pipelineDefinitionCache.get(pipelineId).getDocument();
+    Cache cache = getCache(pipelineId);
+    CacheStats cacheStats = getStats(pipelineId);
+    Cache.ValueWrapper wrapper = cache.get(key);
+    Object value = wrapper == null ? null : wrapper.get();
+    if (value instanceof CachedResults) {
+      CachedResults cached = (CachedResults) value;
+      if (cached.definition == definition || cached.definition.equals(definition)) {
+        cacheStats.hits.increment();
+        return cached.results;
+      }
+    }
+    cacheStats.misses.increment();
+    List<?> results = loader.get();
+    cache.put(key, new CachedResults(definition, results));
+    return results;
+  }
+
+  private Cache getCache(String pipelineId) {
+    Cache cache = caches.get(pipelineId);
+    if (cache != null) {
+      return cache;
+    }
+    return caches.computeIfAbsent(pipelineId, id -> {
+      String name = CACHE_NAME_PREFIX + id;
+      CacheManager manager = cacheManager;
+      if (manager == null) {
+        Settings pipelineSettings = getSettings(id);
+        return new BoundedTtlCache(name, pipelineSettings.getMaxSize(), pipelineSettings.getTtlMillis());
+      }
+      Cache managed = manager.getCache(name);
+      if (managed == null) {
+        throw new MongoPipeConfigException("No cache named '" + name + "' in the CacheManager for the results of pipeline " + id);
+      }
+      return managed;
+    });
+  }
+
+  private CacheStats getStats(String pipelineId) {
+    CacheStats result = stats.get(pipelineId);
+    return result != null ? result : stats.computeIfAbsent(pipelineId, CacheStats::new);
+  }
+
+  /**
+   * Drops the cached results of the pipeline, or of all if the id is null.
+   */
+  public void invalidate(String pipelineId) {
+    if (pipelineId == null) {
+      caches.values().forEach(Cache::clear);
+    } else {
+      Cache cache = caches.get(pipelineId);
+      if (cache != null) {
+        cache.clear();
+      }
+    }
+  }
+
+  /**
+   * @return the statistics by pipeline id, sorted.
+   */
+  public Map<String, CacheStats> getStats() {
+    return new TreeMap<>(stats);
+  }
+
+  void setSettings(String pipelineId, Settings pipelineSettings) {
+    settings.put(pipelineId, pipelineSettings);
+  }
+
+  void setEnvironment(Environment environment) {
+    this.environment = environment;
+  }
+
+  void setCacheManager(CacheManager cacheManager) {
+    this.cacheManager = cacheManager;
+  }
+
+  public class CacheStats {
+    private final String pipelineId;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    CacheStats(String pipelineId) {
+      this.pipelineId = pipelineId;
+    }
+
+    public String getPipelineId() {
+      return pipelineId;
+    }
+
+    public long getHits() {
+      return hits.sum();
+    }
+
+    public long getMisses() {
+      return misses.sum();
+    }
+
+    public double getHitRatio() {
+      long hitCount = getHits();
+      long total = hitCount + getMisses();
+      return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * @return the entries evicted to stay under the max size, -1 when using a CacheManager.
+     */
+    public long getEvictions() {
+      Cache cache = caches.get(pipelineId);
+      return cache instanceof BoundedTtlCache ? ((BoundedTtlCache) cache).getEvictions() : -1;
+    }
+
+    @Override
+    public String toString() {
+      return pipelineId + ": hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions();
+    }
+  }
+}
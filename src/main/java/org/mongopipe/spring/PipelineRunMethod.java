@@ -0,0 +1,418 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.mongopipe.core.annotation.PipelineRun;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.util.ClassUtils;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A @PipelineRun store method resolved once: pipeline id, parameter names and how to return the results.
+ */
+class PipelineRunMethod {
+  private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+  enum ResultType {
+    STREAM, LIST, OPTIONAL, SINGLE, FLUX, MONO, MONO_LIST, EXPORT, SLICE, UNSUPPORTED
+  }
+
+  private final Method method;
+  private final String pipelineId;
+  private final String[] parameterNames;
+  private final ResultType resultType;
+  private final Class<?> elementType;
+  private final boolean async;
+  // OutputStream or Writer the results are exported to, the last parameter.
+  private final Class<?> exportTarget;
+  // Index of the KeysetPage parameter, -1 if none.
+  private final int pageParameter;
+  private final boolean projectionPushdown;
+  // Resolved on first use, null unless the pushdown is enabled and the element type is a POJO decoded by the default codecs.
+  private volatile BsonDocument projection;
+  private volatile boolean projectionResolved;
+  private volatile Codec<?> codec;
+
+  PipelineRunMethod(Method method) {
+    this(method, false);
+  }
+
+  PipelineRunMethod(Method method, boolean projectionPushdown) {
+    this.method = method;
+    this.pipelineId = method.getAnnotation(PipelineRun.class).value();
+    this.parameterNames = PARAMETER_NAME_DISCOVERER.getParameterNames(method);
+    Class<?> returnType = method.getReturnType();
+    Type elementGenericType = method.getGenericReturnType();
+    async = returnType == CompletableFuture.class;
+    if (async) {
+      // Results are returned as for the future type argument.
+      Type futureArgument = elementGenericType instanceof ParameterizedType ? ((ParameterizedType) elementGenericType).getActualTypeArguments()[0] : Document.class;
+      elementGenericType = futureArgument;
+      returnType = futureArgument instanceof ParameterizedType ? (Class<?>) ((ParameterizedType) futureArgument).getRawType()
+          : futureArgument instanceof Class ? (Class<?>) futureArgument : Document.class;
+    }
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    Class<?> lastParameterType = parameterTypes.length == 0 ? null : parameterTypes[parameterTypes.length - 1];
+    exportTarget = lastParameterType != null && (OutputStream.class.isAssignableFrom(lastParameterType) || Writer.class.isAssignableFrom(lastParameterType))
+        ? lastParameterType : null;
+    pageParameter = Arrays.asList(parameterTypes).indexOf(KeysetPage.class);
+    if (returnType == PipelineSlice.class) {
+      resultType = pageParameter >= 0 && exportTarget == null ? ResultType.SLICE : ResultType.UNSUPPORTED;
+    } else if (pageParameter >= 0) {
+      resultType = ResultType.UNSUPPORTED;
+    } else if (exportTarget != null) {
+      boolean countReturned = returnType == long.class || returnType == Long.class;
+      resultType = !async && (returnType == void.class || countReturned) ? ResultType.EXPORT : ResultType.UNSUPPORTED;
+    } else if (async && returnType.getName().startsWith("reactor.core.publisher.")) {
+      // By name so that Reactor is only needed if used.
+      resultType = ResultType.UNSUPPORTED;
+    } else if (returnType.getName().equals("reactor.core.publisher.Flux")) {
+      resultType = ResultType.FLUX;
+    } else if (returnType.getName().equals("reactor.core.publisher.Mono")) {
+      Type monoArgument = ((ParameterizedType) elementGenericType).getActualTypeArguments()[0];
+      if (monoArgument instanceof ParameterizedType && ((ParameterizedType) monoArgument).getRawType() == List.class) {
+        resultType = ResultType.MONO_LIST;
+        elementGenericType = monoArgument;
+      } else {
+        resultType = ResultType.MONO;
+      }
+    } else if (returnType == Stream.class) {
+      resultType = ResultType.STREAM;
+    } else if (returnType == List.class || returnType == Collection.class || returnType == Iterable.class) {
+      resultType = ResultType.LIST;
+    } else if (returnType == Optional.class) {
+      resultType = ResultType.OPTIONAL;
+    } else if (!isSimpleType(returnType) && !Collection.class.isAssignableFrom(returnType) && !returnType.isArray()) {
+      resultType = ResultType.SINGLE;
+    } else {
+      resultType = ResultType.UNSUPPORTED;
+    }
+    elementType = resultType == ResultType.EXPORT ? RawBsonDocument.class
+        : resultType == ResultType.SINGLE ? returnType : typeArgument(elementGenericType, 0);
+    this.projectionPushdown = projectionPushdown && resultType != ResultType.UNSUPPORTED;
+  }
+
+  /**
+   * @return the class of the type argument, Document if not resolvable.
+   */
+  static Class<?> typeArgument(Type type, int index) {
+    if (type instanceof ParameterizedType) {
+      Type argument = ((ParameterizedType) type).getActualTypeArguments()[index];
+      if (argument instanceof Class) {
+        return (Class<?>) argument;
+      }
+      if (argument instanceof ParameterizedType) {
+        return (Class<?>) ((ParameterizedType) argument).getRawType();
+      }
+    }
+    return Document.class;
+  }
+
+  // Single values (e.g. counts) are extracted by the core runner.
+  private static boolean isSimpleType(Class<?> type) {
+    return ClassUtils.isPrimitiveOrWrapper(type) || type == void.class || CharSequence.class.isAssignableFrom(type) || Number.class.isAssignableFrom(type);
+  }
+
+  /**
+   * @return true for the CompletableFuture methods, the {@link #getResultType} being then the one of the future.
+   */
+  boolean isAsync() {
+    return async;
+  }
+
+  /**
+   * @return true if the core store can not run it: futures, raw BSON results, exports and pages.
+   */
+  boolean requiresAggregator() {
+    return async || resultType == ResultType.EXPORT || resultType == ResultType.SLICE || elementType == RawBsonDocument.class;
+  }
+
+  /**
+   * @return false for the exports, writing the results instead of returning them, and for the pages, depending on the
+   *     KeysetPage not in the parameters.
+   */
+  boolean isShareable() {
+    return resultType != ResultType.EXPORT && resultType != ResultType.SLICE;
+  }
+
+  /**
+   * @return false also for the streams, read lazily unless a cache is enabled for the pipeline.
+   */
+  boolean isCoalescable() {
+    return isShareable() && resultType != ResultType.STREAM;
+  }
+
+  boolean isReactive() {
+    return resultType == ResultType.FLUX || resultType == ResultType.MONO || resultType == ResultType.MONO_LIST;
+  }
+
+  boolean isSupported() {
+    return resultType != ResultType.UNSUPPORTED && (resultType == ResultType.SINGLE || !isSimpleType(elementType));
+  }
+
+  Map<String, Object> getParameters(Object[] args) {
+    Map<String, Object> parameters = new HashMap<>();
+    if (args == null || args.length == 0) {
+      return parameters;
+    }
+    if (parameterNames == null) {
+      throw new MongoPipeConfigException("Parameter names not available for " + method + ", compile the store with -parameters");
+    }
+    int count = exportTarget != null ? args.length - 1 : args.length;
+    for (int i = 0; i < count; i++) {
+      if (i != pageParameter) {
+        parameters.put(parameterNames[i], args[i]);
+      }
+    }
+    return parameters;
+  }
+
+  /**
+   * @return the types of the parameters bound to the placeholders by name, empty if the parameter names are not available.
+   */
+  Map<String, Class<?>> getParameterTypes() {
+    Map<String, Class<?>> parameterTypes = new HashMap<>();
+    if (parameterNames == null) {
+      return parameterTypes;
+    }
+    Class<?>[] types = method.getParameterTypes();
+    int count = exportTarget != null ? types.length - 1 : types.length;
+    for (int i = 0; i < count; i++) {
+      if (i != pageParameter) {
+        parameterTypes.put(parameterNames[i], types[i]);
+      }
+    }
+    return parameterTypes;
+  }
+
+  /**
+   * @param meter if not null the results are read as raw BSON to also count the bytes.
+   */
+  Object run(PipelineAggregator pipelineAggregator, Object[] args, PipelineMetrics.PipelineMeter meter) {
+    Map<String, Object> parameters = getParameters(args);
+    if (resultType == ResultType.EXPORT) {
+      return export(pipelineAggregator.aggregate(pipelineId, parameters, RawBsonDocument.class), args[args.length - 1], meter);
+    }
+    if (resultType == ResultType.SLICE) {
+      return page(pipelineAggregator, parameters, (KeysetPage) args[pageParameter], meter);
+    }
+    if (resultType != ResultType.STREAM) {
+      return toResult(fetch(pipelineAggregator, parameters, meter), false);
+    }
+    if (meter == null) {
+      return toStream(pipelineAggregator.aggregate(pipelineId, parameters, elementType, getProjection(pipelineAggregator)).iterator());
+    }
+    return toStream(pipelineAggregator.aggregate(pipelineId, parameters, RawBsonDocument.class, getProjection(pipelineAggregator)).iterator()).map(decoder(pipelineAggregator, meter));
+  }
+
+  /**
+   * Same as {@link #run} but the results are materialized to be shared, with the identical runs in flight if a coalescer is given
+   * and with the next runs if a cache is given.
+   */
+  Object runShared(PipelineResultCache pipelineResultCache, PipelineCallCoalescer pipelineCallCoalescer, PipelineAggregator pipelineAggregator,
+      Object[] args, PipelineMetrics.PipelineMeter meter) {
+    Map<String, Object> parameters = getParameters(args);
+    List<Object> key = Arrays.asList(elementType.getName(), isFirstOnly(), parameters);
+    boolean raw = pipelineResultCache != null && pipelineResultCache.isRaw();
+    Supplier<List<?>> fetch = raw ? () -> fetchRaw(pipelineAggregator, parameters, meter) : () -> fetch(pipelineAggregator, parameters, meter);
+    Supplier<List<?>> loader = pipelineCallCoalescer == null ? fetch : () -> pipelineCallCoalescer.execute(Arrays.asList(pipelineId, key), fetch);
+    if (!raw) {
+      return toResult(pipelineResultCache == null ? loader.get() : pipelineResultCache.get(pipelineId, key, loader), true);
+    }
+    List<?> results = pipelineResultCache.get(pipelineId, rawKey(pipelineAggregator, parameters), loader);
+    if (elementType == RawBsonDocument.class) {
+      return toResult(results, true);
+    }
+    Codec<?> elementCodec = getCodec(pipelineAggregator);
+    List<Object> decoded = new ArrayList<>(results.size());
+    for (Object document : results) {
+      decoded.add(((RawBsonDocument) document).decode(elementCodec));
+    }
+    return toResult(decoded, false);
+  }
+
+  // Serializable, the parameters being encoded with the database codecs.
+  private String rawKey(PipelineAggregator pipelineAggregator, Map<String, Object> parameters) {
+    BsonDocument encoded = new Document(new TreeMap<>(parameters)).toBsonDocument(BsonDocument.class,
+        pipelineAggregator.getMongoDatabase().getCodecRegistry());
+    return elementType.getName() + ":" + isFirstOnly() + ":" + encoded.toJson();
+  }
+
+  private List<?> fetchRaw(PipelineAggregator pipelineAggregator, Map<String, Object> parameters, PipelineMetrics.PipelineMeter meter) {
+    AggregateIterable<RawBsonDocument> results = pipelineAggregator.aggregate(pipelineId, parameters, RawBsonDocument.class, getProjection(pipelineAggregator));
+    List<RawBsonDocument> list = isFirstOnly() ? toList(results.first()) : results.into(new ArrayList<>());
+    if (meter != null) {
+      list.forEach(document -> meter.recordDocuments(1, document.getByteBuffer().remaining()));
+    }
+    return list;
+  }
+
+  private Object export(MongoIterable<RawBsonDocument> results, Object target, PipelineMetrics.PipelineMeter meter) {
+    if (target == null) {
+      throw new IllegalArgumentException("No " + exportTarget.getSimpleName() + " given to export the results of pipeline " + pipelineId);
+    }
+    long count = target instanceof OutputStream ? ResultExport.writeBson(results, (OutputStream) target, meter)
+        : ResultExport.writeJson(results, (Writer) target, meter);
+    return method.getReturnType() == void.class ? null : count;
+  }
+
+  private PipelineSlice<?> page(PipelineAggregator pipelineAggregator, Map<String, Object> parameters, KeysetPage page,
+      PipelineMetrics.PipelineMeter meter) {
+    if (page == null) {
+      throw new IllegalArgumentException("No KeysetPage given for pipeline " + pipelineId + ", use KeysetPage.first for the first page");
+    }
+    PipelineSlice<RawBsonDocument> slice = pipelineAggregator.aggregatePage(pipelineId, parameters, page, getProjection(pipelineAggregator));
+    if (meter != null) {
+      return slice.map(decoder(pipelineAggregator, meter));
+    }
+    if (elementType == RawBsonDocument.class) {
+      return slice;
+    }
+    Codec<?> elementCodec = getCodec(pipelineAggregator);
+    return slice.map(document -> document.decode(elementCodec));
+  }
+
+  private boolean isFirstOnly() {
+    return resultType == ResultType.SINGLE || resultType == ResultType.OPTIONAL;
+  }
+
+  private List<?> fetch(PipelineAggregator pipelineAggregator, Map<String, Object> parameters, PipelineMetrics.PipelineMeter meter) {
+    if (meter == null) {
+      AggregateIterable<?> results = pipelineAggregator.aggregate(pipelineId, parameters, elementType, getProjection(pipelineAggregator));
+      return isFirstOnly() ? toList(results.first()) : results.into(new ArrayList<>());
+    }
+    Function<RawBsonDocument, Object> decoder = decoder(pipelineAggregator, meter);
+    AggregateIterable<RawBsonDocument> results = pipelineAggregator.aggregate(pipelineId, parameters, RawBsonDocument.class, getProjection(pipelineAggregator));
+    if (isFirstOnly()) {
+      RawBsonDocument first = results.first();
+      return toList(first == null ? null : decoder.apply(first));
+    }
+    List<Object> list = new ArrayList<>();
+    for (RawBsonDocument document : results) {
+      list.add(decoder.apply(document));
+    }
+    return list;
+  }
+
+  private static <T> List<T> toList(T first) {
+    return first == null ? Collections.emptyList() : Collections.singletonList(first);
+  }
+
+  // A shared (cached) list is copied for the caller.
+  private Object toResult(List<?> results, boolean shared) {
+    Object first = results.isEmpty() ? null : results.get(0);
+    switch (resultType) {
+      case STREAM:
+        return results.stream();
+      case LIST:
+        return shared ? new ArrayList<>(results) : results;
+      case OPTIONAL:
+        return Optional.ofNullable(first);
+      default:
+        return first;
+    }
+  }
+
+  private Function<RawBsonDocument, Object> decoder(PipelineAggregator pipelineAggregator, PipelineMetrics.PipelineMeter meter) {
+    if (elementType == RawBsonDocument.class) {
+      return document -> {
+        meter.recordDocuments(1, document.getByteBuffer().remaining());
+        return document;
+      };
+    }
+    Codec<?> codec = getCodec(pipelineAggregator);
+    return document -> {
+      meter.recordDocuments(1, document.getByteBuffer().remaining());
+      return document.decode(codec);
+    };
+  }
+
+  /**
+   * Resolves the codec of the result elements ahead of the first run.
+   */
+  void warmUp(PipelineAggregator pipelineAggregator) {
+    if (isSupported() && !isReactive() && elementType != RawBsonDocument.class) {
+      getCodec(pipelineAggregator);
+      getProjection(pipelineAggregator);
+    }
+  }
+
+  private Codec<?> getCodec(PipelineAggregator pipelineAggregator) {
+    Codec<?> result = codec;
+    if (result == null) {
+      codec = result = pipelineAggregator.getMongoDatabase().getCodecRegistry().get(elementType);
+    }
+    return result;
+  }
+
+  static <T> Stream<T> toStream(MongoCursor<T> cursor) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false).onClose(cursor::close);
+  }
+
+  String getPipelineId() {
+    return pipelineId;
+  }
+
+  ResultType getResultType() {
+    return resultType;
+  }
+
+  Class<?> getElementType() {
+    return elementType;
+  }
+
+  /**
+   * @return the projection of the fields mapped by the element type, not pushed down for the types decoded by a codec of the
+   *     database registry as it can map other fields.
+   */
+  BsonDocument getProjection(PipelineAggregator pipelineAggregator) {
+    if (!projectionResolved) {
+      projection = projectionPushdown && pipelineAggregator.hasDefaultCodec(elementType) ? ResultProjection.forType(elementType) : null;
+      projectionResolved = true;
+    }
+    return projection;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of the results of a @PipelineRun method, see {@link KeysetPage}.
+ */
+public class PipelineSlice<T> {
+  private final List<T> content;
+  private final String nextToken;
+  private final int size;
+
+  PipelineSlice(List<T> content, String nextToken, int size) {
+    this.content = Collections.unmodifiableList(content);
+    this.nextToken = nextToken;
+    this.size = size;
+  }
+
+  public List<T> getContent() {
+    return content;
+  }
+
+  public boolean hasNext() {
+    return nextToken != null;
+  }
+
+  /**
+   * @return the token of the next page, null if this is the last one.
+   */
+  public String getNextToken() {
+    return nextToken;
+  }
+
+  /**
+   * @return the next page of the same size, null if this is the last one.
+   */
+  public KeysetPage nextPage() {
+    return nextToken == null ? null : KeysetPage.after(nextToken, size);
+  }
+
+  public <U> PipelineSlice<U> map(Function<? super T, ? extends U> mapper) {
+    List<U> mapped = new ArrayList<>(content.size());
+    for (T element : content) {
+      mapped.add(mapper.apply(element));
+    }
+    return new PipelineSlice<>(mapped, nextToken, size);
+  }
+
+  @Override
+  public String toString() {
+    return "PipelineSlice{size=" + content.size() + ", hasNext=" + hasNext() + "}";
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.BsonArray;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The stages of a pipeline compiled once when its definition is loaded, with a slot for each distinct "${paramName}" placeholder.
+ * Binding fills the slots and only copies the documents and arrays leading to a placeholder, the rest of the pipeline being
+ * shared between the runs. A string being exactly a placeholder is replaced by the value itself (keeping its type), otherwise the
+ * value is inserted as text.
+ */
+public final class PipelineTemplate {
+  private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]+)}");
+
+  private final List<BsonDocument> stages;
+  // Null for the stages without placeholders.
+  private final Node[] stageNodes;
+  private final String[] slotNames;
+
+  private PipelineTemplate(List<BsonDocument> stages, Node[] stageNodes, String[] slotNames) {
+    this.stages = stages;
+    this.stageNodes = stageNodes;
+    this.slotNames = slotNames;
+  }
+
+  static PipelineTemplate compile(List<BsonDocument> stages) {
+    Map<String, Integer> slots = new LinkedHashMap<>();
+    Node[] stageNodes = new Node[stages.size()];
+    for (int i = 0; i < stageNodes.length; i++) {
+      Node node = compile(stages.get(i), slots);
+      stageNodes[i] = node instanceof Constant ? null : node;
+    }
+    return new PipelineTemplate(stages, stageNodes, slots.keySet().toArray(new String[0]));
+  }
+
+  private static Node compile(BsonValue value, Map<String, Integer> slots) {
+    if (value.isDocument()) {
+      BsonDocument document = value.asDocument();
+      String[] keys = new String[document.size()];
+      Node[] values = new Node[keys.length];
+      boolean constant = true;
+      int i = 0;
+      for (Map.Entry<String, BsonValue> entry : document.entrySet()) {
+        keys[i] = entry.getKey();
+        values[i] = compile(entry.getValue(), slots);
+        constant &= values[i] instanceof Constant;
+        i++;
+      }
+      return constant ? new Constant(value) : new DocumentNode(keys, values);
+    }
+    if (value.isArray()) {
+      BsonArray array = value.asArray();
+      Node[] items = new Node[array.size()];
+      boolean constant = true;
+      for (int i = 0; i < items.length; i++) {
+        items[i] = compile(array.get(i), slots);
+        constant &= items[i] instanceof Constant;
+      }
+      return constant ? new Constant(value) : new ArrayNode(items);
+    }
+    if (value.isString()) {
+      return compileString(value.asString(), slots);
+    }
+    return new Constant(value);
+  }
+
+  private static Node compileString(BsonString value, Map<String, Integer> slots) {
+    String text = value.getValue();
+    Matcher matcher = PLACEHOLDER.matcher(text);
+    if (!matcher.find()) {
+      return new Constant(value);
+    }
+    if (matcher.start() == 0 && matcher.end() == text.length()) {
+      return new Slot(slot(matcher.group(1), slots));
+    }
+    List<String> literals = new ArrayList<>();
+    List<Integer> textSlots = new ArrayList<>();
+    int position = 0;
+    do {
+      literals.add(text.substring(position, matcher.start()));
+      textSlots.add(slot(matcher.group(1), slots));
+      position = matcher.end();
+    } while (matcher.find());
+    literals.add(text.substring(position));
+    return new Text(literals.toArray(new String[0]), textSlots.stream().mapToInt(Integer::intValue).toArray());
+  }
+
+  private static int slot(String name, Map<String, Integer> slots) {
+    Integer slot = slots.get(name);
+    if (slot == null) {
+      slot = slots.size();
+      slots.put(name, slot);
+    }
+    return slot;
+  }
+
+  /**
+   * @return the bound stages, to be only read.
+   */
+  public List<BsonDocument> bind(Map<String, ?> parameters, CodecRegistry codecRegistry) {
+    if (slotNames.length == 0) {
+      return stages;
+    }
+    Object[] values = new Object[slotNames.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = parameters.get(slotNames[i]);
+    }
+    Binding binding = new Binding(values, codecRegistry);
+    List<BsonDocument> result = new ArrayList<>(stageNodes.length);
+    for (int i = 0; i < stageNodes.length; i++) {
+      result.add(stageNodes[i] == null ? stages.get(i) : stageNodes[i].bind(binding).asDocument());
+    }
+    return result;
+  }
+
+  /**
+   * @return the distinct placeholder names, in order of appearance.
+   */
+  public List<String> getParameterNames() {
+    List<String> names = new ArrayList<>(slotNames.length);
+    for (String slotName : slotNames) {
+      names.add(slotName);
+    }
+    return names;
+  }
+
+  // Each slot value is converted at most once per binding.
+  private static class Binding {
+    final Object[] values;
+    final BsonValue[] bsonValues;
+    final CodecRegistry codecRegistry;
+
+    Binding(Object[] values, CodecRegistry codecRegistry) {
+      this.values = values;
+      this.bsonValues = new BsonValue[values.length];
+      this.codecRegistry = codecRegistry;
+    }
+
+    BsonValue bsonValue(int slot) {
+      BsonValue result = bsonValues[slot];
+      if (result == null) {
+        bsonValues[slot] = result = toBsonValue(values[slot], codecRegistry);
+      }
+      return result;
+    }
+  }
+
+  private static BsonValue toBsonValue(Object value, CodecRegistry codecRegistry) {
+    if (value == null) {
+      return BsonNull.VALUE;
+    }
+    if (value instanceof BsonValue) {
+      return (BsonValue) value;
+    }
+    // The common types encoded as the DocumentCodec does, without encoding a document.
+    if (value instanceof String) {
+      return new BsonString((String) value);
+    }
+    if (value instanceof Integer) {
+      return new BsonInt32((Integer) value);
+    }
+    if (value instanceof Long) {
+      return new BsonInt64((Long) value);
+    }
+    if (value instanceof Double) {
+      return new BsonDouble((Double) value);
+    }
+    if (value instanceof Boolean) {
+      return BsonBoolean.valueOf((Boolean) value);
+    }
+    return new Document("value", value).toBsonDocument(BsonDocument.class, codecRegistry).get("value");
+  }
+
+  private interface Node {
+    BsonValue bind(Binding binding);
+  }
+
+  private static class Constant implements Node {
+    final BsonValue value;
+
+    Constant(BsonValue value) {
+      this.value = value;
+    }
+
+    @Override
+    public BsonValue bind(Binding binding) {
+      return value;
+    }
+  }
+
+  private static class DocumentNode implements Node {
+    final String[] keys;
+    final Node[] values;
+
+    DocumentNode(String[] keys, Node[] values) {
+      this.keys = keys;
+      this.values = values;
+    }
+
+    @Override
+    public BsonValue bind(Binding binding) {
+      BsonDocument document = new BsonDocument(keys.length);
+      for (int i = 0; i < keys.length; i++) {
+        document.append(keys[i], values[i].bind(binding));
+      }
+      return document;
+    }
+  }
+
+  private static class ArrayNode implements Node {
+    final Node[] items;
+
+    ArrayNode(Node[] items) {
+      this.items = items;
+    }
+
+    @Override
+    public BsonValue bind(Binding binding) {
+      BsonArray array = new BsonArray(items.length);
+      for (Node item : items) {
+        array.add(item.bind(binding));
+      }
+      return array;
+    }
+  }
+
+  private static class Slot implements Node {
+    final int slot;
+
+    Slot(int slot) {
+      this.slot = slot;
+    }
+
+    @Override
+    public BsonValue bind(Binding binding) {
+      return binding.bsonValue(slot);
+    }
+  }
+
+  // Placeholders inside a text, bound as text.
+  private static class Text implements Node {
+    final String[] literals;
+    final int[] slots;
+
+    Text(String[] literals, int[] slots) {
+      this.literals = literals;
+      this.slots = slots;
+    }
+
+    @Override
+    public BsonValue bind(Binding binding) {
+      StringBuilder text = new StringBuilder(literals[0]);
+      for (int i = 0; i < slots.length; i++) {
+        text.append(binding.values[slots[i]]).append(literals[i + 1]);
+      }
+      return new BsonString(text.toString());
+    }
+  }
+}
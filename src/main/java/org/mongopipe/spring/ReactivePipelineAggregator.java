@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.reactivestreams.client.AggregatePublisher;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.springframework.beans.factory.ListableBeanFactory;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+/**
+ * Runs the pipelines with the MongoDB Reactive Streams driver, for the Flux and Mono @PipelineRun methods. The results are
+ * fetched in batches as requested downstream. Only loaded if the reactive driver and Reactor are on the classpath.
+ */
+public class ReactivePipelineAggregator {
+  private final PipelineDefinitionCache definitions;
+  private final String uri;
+  private final String databaseName;
+  private MongoClient mongoClient;
+  private volatile MongoClient contextMongoClient;
+  private volatile MongoDatabase mongoDatabase;
+
+  /**
+   * @param uri used to create the reactive client on first use.
+   */
+  public ReactivePipelineAggregator(PipelineDefinitionCache definitions, String uri, String databaseName) {
+    this.definitions = definitions;
+    this.uri = uri;
+    this.databaseName = databaseName;
+  }
+
+  /**
+   * @return the results publisher, the definition being loaded without blocking the subscriber thread if not cached.
+   */
+  public <T> Mono<AggregatePublisher<T>> aggregate(String pipelineId, Map<String, ?> parameters, Class<T> resultClass) {
+    return aggregate(pipelineId, parameters, resultClass, null);
+  }
+
+  /**
+   * @param projection if not null appended as a final $project stage, unless the pipeline already ends with one.
+   */
+  public <T> Mono<AggregatePublisher<T>> aggregate(String pipelineId, Map<String, ?> parameters, Class<T> resultClass, BsonDocument projection) {
+    PipelineDefinition cached = definitions.getIfPresent(pipelineId);
+    Mono<PipelineDefinition> definition = cached != null ? Mono.just(cached) :
+        Mono.fromCallable(() -> definitions.get(pipelineId)).subscribeOn(Schedulers.boundedElastic());
+    return definition.map(pipelineDefinition -> {
+      MongoDatabase database = getMongoDatabase();
+      PipelineOptions options = pipelineDefinition.getOptions();
+      return withOptions(withOptions(database.getCollection(pipelineDefinition.getCollection(), BsonDocument.class), options)
+          .aggregate(ResultProjection.apply(pipelineDefinition.getTemplate().bind(parameters, database.getCodecRegistry()), projection), resultClass), options);
+    });
+  }
+
+  private static MongoCollection<BsonDocument> withOptions(MongoCollection<BsonDocument> collection, PipelineOptions options) {
+    MongoCollection<BsonDocument> result = collection;
+    if (options.getReadPreference() != null) {
+      result = result.withReadPreference(options.getReadPreference());
+    }
+    if (options.getReadConcern() != null) {
+      result = result.withReadConcern(options.getReadConcern());
+    }
+    return result;
+  }
+
+  private static <T> AggregatePublisher<T> withOptions(AggregatePublisher<T> aggregation, PipelineOptions options) {
+    AggregatePublisher<T> result = aggregation;
+    if (options.getBatchSize() != null) {
+      result = result.batchSize(options.getBatchSize());
+    }
+    if (options.getAllowDiskUse() != null) {
+      result = result.allowDiskUse(options.getAllowDiskUse());
+    }
+    if (options.getMaxTimeMillis() != null) {
+      result = result.maxTime(options.getMaxTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+    if (options.getHint() != null) {
+      result = options.getHint().isString() ? result.hintString(options.getHint().asString().getValue()) : result.hint(options.getHint().asDocument());
+    }
+    if (options.getCollation() != null) {
+      result = result.collation(options.getCollation());
+    }
+    if (options.getComment() != null) {
+      result = result.comment(options.getComment());
+    }
+    return result;
+  }
+
+  public MongoDatabase getMongoDatabase() {
+    MongoDatabase result = mongoDatabase;
+    if (result == null) {
+      synchronized (this) {
+        result = mongoDatabase;
+        if (result == null) {
+          MongoClient client = contextMongoClient;
+          if (client == null) {
+            if (uri == null) {
+              throw new MongoPipeConfigException("The MongoPipeConfig uri is needed for the reactive pipeline runs");
+            }
+            client = mongoClient = MongoClients.create(uri);
+          }
+          MongoDatabase database = client.getDatabase(databaseName);
+          // As for the PipelineAggregator: database codecs, then generated codecs, then automatic POJO codecs.
+          CodecRegistry codecRegistry = fromRegistries(database.getCodecRegistry(),
+              fromProviders(new GeneratedCodecProvider(), PojoCodecProvider.builder().automatic(true).build()));
+          mongoDatabase = result = database.withCodecRegistry(codecRegistry);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Use the reactive MongoClient bean if any, instead of creating one. Not closed by this aggregator.
+   */
+  void adoptContextMongoClient(ListableBeanFactory beanFactory) {
+    MongoClient client = MongoPipeStarter.findBean(beanFactory, MongoClient.class);
+    if (client != null) {
+      contextMongoClient = client;
+    }
+  }
+
+  synchronized void close() {
+    if (mongoClient != null) {
+      mongoClient.close();
+    }
+  }
+}
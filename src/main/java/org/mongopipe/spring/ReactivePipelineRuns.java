@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the Flux and Mono @PipelineRun methods. Kept apart so that Reactor is only loaded when used.
+ */
+class ReactivePipelineRuns {
+
+  private ReactivePipelineRuns() {
+  }
+
+  static Object run(PipelineRunMethod pipelineRunMethod, StoreSupport storeSupport, Object[] args, PipelineMetrics.PipelineMeter meter) {
+    ReactivePipelineAggregator aggregator = storeSupport.reactivePipelineAggregator;
+    // Wait for the migration without blocking. A cancelled or timed out subscription cancels the future, so each one gets its own
+    // dependent copy.
+    Mono<Void> migrated = Mono.defer(() -> Mono.fromFuture(storeSupport.migrationStatus.getFuture()))
+        .timeout(Duration.ofMillis(storeSupport.migrationTimeoutMillis));
+    Flux<?> results = migrated.then(Mono.defer(() -> aggregator.aggregate(pipelineRunMethod.getPipelineId(), pipelineRunMethod.getParameters(args),
+        pipelineRunMethod.getElementType(), pipelineRunMethod.getProjection(storeSupport.pipelineAggregator)))).flatMapMany(Flux::from);
+    if (meter != null) {
+      results = measure(results, meter);
+    }
+    switch (pipelineRunMethod.getResultType()) {
+      case FLUX:
+        return results;
+      case MONO_LIST:
+        return results.collectList();
+      default:
+        return results.next();
+    }
+  }
+
+  // Duration from subscription to termination.
+  private static <T> Flux<T> measure(Flux<T> results, PipelineMetrics.PipelineMeter meter) {
+    return Flux.defer(() -> {
+      long start = System.nanoTime();
+      AtomicLong documents = new AtomicLong();
+      return results
+          .doOnNext(document -> documents.incrementAndGet())
+          .doOnError(error -> meter.recordCall(System.nanoTime() - start, true))
+          .doOnComplete(() -> meter.recordCall(System.nanoTime() - start, false))
+          .doFinally(signal -> meter.recordDocuments(documents.get(), 0));
+    });
+  }
+}
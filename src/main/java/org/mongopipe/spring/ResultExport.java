@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriter;
+import org.bson.json.JsonWriterSettings;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes the results as they come from the server, without decoding them: the BSON bytes one document after the other (as
+ * mongodump does), or one relaxed extended JSON document per line.
+ */
+final class ResultExport {
+  private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+  private static final RawBsonDocumentCodec RAW_CODEC = new RawBsonDocumentCodec();
+
+  private ResultExport() {
+  }
+
+  /**
+   * @return the documents written.
+   */
+  static long writeBson(MongoIterable<RawBsonDocument> documents, OutputStream outputStream, PipelineMetrics.PipelineMeter meter) {
+    long count = 0;
+    // Closed also when the target fails mid-export, e.g. a client disconnecting, not to leave the server cursor open.
+    try (MongoCursor<RawBsonDocument> cursor = documents.iterator()) {
+      while (cursor.hasNext()) {
+        RawBsonDocument document = cursor.next();
+        ByteBuffer bytes = document.getByteBuffer().asNIO();
+        int length = bytes.remaining();
+        if (bytes.hasArray()) {
+          outputStream.write(bytes.array(), bytes.arrayOffset() + bytes.position(), length);
+        } else {
+          byte[] copy = new byte[length];
+          bytes.get(copy);
+          outputStream.write(copy);
+        }
+        count++;
+        if (meter != null) {
+          meter.recordDocuments(1, length);
+        }
+      }
+      outputStream.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return count;
+  }
+
+  /**
+   * @return the documents written.
+   */
+  static long writeJson(MongoIterable<RawBsonDocument> documents, Writer writer, PipelineMetrics.PipelineMeter meter) {
+    long count = 0;
+    try (MongoCursor<RawBsonDocument> cursor = documents.iterator()) {
+      while (cursor.hasNext()) {
+        RawBsonDocument document = cursor.next();
+        // Streams the BSON into the writer, no intermediate String.
+        RAW_CODEC.encode(new JsonWriter(writer, JSON_SETTINGS), document, EncoderContext.builder().build());
+        writer.write('\n');
+        count++;
+        if (meter != null) {
+          meter.recordDocuments(1, document.getByteBuffer().remaining());
+        }
+      }
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return count;
+  }
+}
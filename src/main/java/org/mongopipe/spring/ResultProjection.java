@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.codecs.pojo.ClassModel;
+import org.bson.codecs.pojo.PropertyModel;
+import org.bson.conversions.Bson;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The final $project stage keeping only the fields mapped by a POJO result type, so that the rest of the documents is neither
+ * sent nor decoded. The mapped fields are the ones of the POJO codec with the default conventions, i.e. named by @BsonProperty
+ * and @BsonId ("_id"), so it is only used for the types decoded by the generated or the default POJO codecs.
+ */
+final class ResultProjection {
+  private static final BsonInt32 INCLUDE = new BsonInt32(1);
+
+  private ResultProjection() {
+  }
+
+  /**
+   * @return the projection, null if the type is not a POJO.
+   */
+  static BsonDocument forType(Class<?> type) {
+    if (ClassUtils.isPrimitiveOrWrapper(type) || type.isInterface() || type.isArray() || type.getName().startsWith("java.")
+        || Bson.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)) {
+      return null;
+    }
+    ClassModel<?> classModel;
+    try {
+      classModel = ClassModel.builder(type).build();
+    } catch (RuntimeException e) {
+      return null; // Not mappable, left to the codec to report.
+    }
+    BsonDocument projection = new BsonDocument();
+    PropertyModel<?> idProperty = classModel.getIdPropertyModel();
+    projection.append("_id", idProperty != null ? INCLUDE : new BsonInt32(0));
+    for (PropertyModel<?> property : classModel.getPropertyModels()) {
+      if (property != idProperty && property.getReadName() != null) {
+        projection.append(property.getReadName(), INCLUDE);
+      }
+    }
+    return projection.size() > 1 ? projection : null;
+  }
+
+  /**
+   * @return the stages followed by the projection, unless it is null or the pipeline already ends with a projection or a write.
+   */
+  static List<BsonDocument> apply(List<BsonDocument> stages, BsonDocument projection) {
+    if (projection == null || stages.isEmpty()) {
+      return stages;
+    }
+    BsonDocument last = stages.get(stages.size() - 1);
+    if (last.containsKey("$project") || last.containsKey("$unset") || last.containsKey("$out") || last.containsKey("$merge")) {
+      return stages;
+    }
+    List<BsonDocument> result = new ArrayList<>(stages.size() + 1);
+    result.addAll(stages);
+    result.add(new BsonDocument("$project", projection));
+    return result;
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.springframework.beans.factory.FactoryBean;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Registered by {@link MongoPipeStarter} for every store. The returned proxy is cheap, the actual store being created on first
+ * use unless pre-initialized, see {@link MongoPipeStarter#setStoreInitialization}.
+ */
+public class StoreFactoryBean implements FactoryBean<Object> {
+  private final Class<?> storeClass;
+  private final StoreInvocationHandler storeInvocationHandler;
+
+  StoreFactoryBean(Class<?> storeClass, StoreInvocationHandler storeInvocationHandler) {
+    this.storeClass = storeClass;
+    this.storeInvocationHandler = storeInvocationHandler;
+  }
+
+  @Override
+  public Object getObject() {
+    return Proxy.newProxyInstance(storeClass.getClassLoader(), new Class[] {storeClass}, storeInvocationHandler);
+  }
+
+  @Override
+  public Class<?> getObjectType() {
+    return storeClass;
+  }
+
+  @Override
+  public boolean isSingleton() {
+    return true;
+  }
+}
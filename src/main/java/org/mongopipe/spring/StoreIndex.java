@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mongopipe.spring;
+
+import org.mongopipe.core.exception.MongoPipeConfigException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The @Store classes index generated at compile time by {@link StoreIndexProcessor}. Every jar or classes folder compiled with
+ * the processor contributes its own index resource, all of them are merged.
+ */
+public class StoreIndex {
+  public static final String INDEX_LOCATION = "META-INF/mongopipe.stores";
+
+  private final Set<String> storeClassNames;
+  // The jars and classes folders with an index, as "jar:file:/app/lib.jar!/" or "file:/app/classes/".
+  private final Set<String> indexedRoots;
+
+  StoreIndex(Set<String> storeClassNames, Set<String> indexedRoots) {
+    this.storeClassNames = Collections.unmodifiableSet(storeClassNames);
+    this.indexedRoots = Collections.unmodifiableSet(indexedRoots);
+  }
+
+  /**
+   * @return the index or null if no index resource is found on the classpath, in which case the classpath must be scanned.
+   */
+  public static StoreIndex load(ClassLoader classLoader) {
+    try {
+      Enumeration<URL> urls = classLoader == null ? ClassLoader.getSystemResources(INDEX_LOCATION) : classLoader.getResources(INDEX_LOCATION);
+      if (!urls.hasMoreElements()) {
+        return null;
+      }
+      Set<String> storeClassNames = new LinkedHashSet<>();
+      Set<String> indexedRoots = new LinkedHashSet<>();
+      while (urls.hasMoreElements()) {
+        URL url = urls.nextElement();
+        readIndex(url, storeClassNames);
+        indexedRoots.add(root(url, INDEX_LOCATION));
+      }
+      return new StoreIndex(storeClassNames, indexedRoots);
+    } catch (IOException e) {
+      throw new MongoPipeConfigException("Could not read store index from " + INDEX_LOCATION, e);
+    }
+  }
+
+  private static void readIndex(URL url, Set<String> storeClassNames) throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          storeClassNames.add(line);
+        }
+      }
+    }
+  }
+
+  // The classpath root of a resource found with the given path.
+  private static String root(URL url, String path) {
+    String location = url.toString();
+    if (location.endsWith("/")) {
+      location = location.substring(0, location.length() - 1);
+    }
+    return path.isEmpty() ? location + "/" : location.substring(0, location.length() - path.length());
+  }
+
+  /**
+   * @return the jars and classes folders containing the package but without an index, e.g. compiled without the processor, or
+   * with no store at all. Their stores can only be found by scanning.
+   */
+  public Set<String> getUnindexedRoots(ClassLoader classLoader, String basePackage) {
+    String path = basePackage == null ? "" : basePackage.replace('.', '/');
+    Set<String> result = new LinkedHashSet<>();
+    try {
+      Enumeration<URL> urls = classLoader == null ? ClassLoader.getSystemResources(path) : classLoader.getResources(path);
+      while (urls.hasMoreElements()) {
+        String root = root(urls.nextElement(), path);
+        if (!indexedRoots.contains(root)) {
+          result.add(root);
+        }
+      }
+    } catch (IOException e) {
+      throw new MongoPipeConfigException("Could not list the classpath roots of " + path, e);
+    }
+    return result;
+  }
+
+  /**
+   * @param basePackage the package to filter on, null or empty for all.
+   */
+  public Set<String> getStoreClassNames(String basePackage) {
+    if (basePackage == null || basePackage.isEmpty()) {
+      return storeClassNames;
+    }
+    Set<String> result = new LinkedHashSet<>();
+    for (String storeClassName : storeClassNames) {
+      if (storeClassName.startsWith(basePackage + ".")) {
+        result.add(storeClassName);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mongopipe.spring;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor writing all the @Store annotated types into the {@link StoreIndex#INDEX_LOCATION} resource at compile
+ * time. Picked automatically by javac when the library is on the classpath, so that {@link MongoPipeStarter} does not need
+ * to scan the classpath on startup.
+ * It also generates a codec (see {@link CodecGenerator}) for every @Item type and @PipelineRun result element type compiled
+ * together with the stores, picked up at runtime by {@link GeneratedCodecProvider}. Disable with
+ * <code>-Amongopipe.generateCodecs=false</code>.
+ */
+@SupportedAnnotationTypes(StoreIndexProcessor.STORE_ANNOTATION)
+@SupportedOptions(StoreIndexProcessor.GENERATE_CODECS_OPTION)
+public class StoreIndexProcessor extends AbstractProcessor {
+  static final String STORE_ANNOTATION = "org.mongopipe.core.annotation.Store";
+  static final String PIPELINE_RUN_ANNOTATION = "org.mongopipe.core.annotation.PipelineRun";
+  static final String GENERATE_CODECS_OPTION = "mongopipe.generateCodecs";
+  // Unwrapped to reach the element type of a @PipelineRun method result.
+  private static final List<String> CONTAINER_TYPES = Arrays.asList("java.util.stream.Stream", "java.util.List", "java.util.Collection",
+      "java.lang.Iterable", "java.util.Optional", "java.util.concurrent.CompletableFuture", "reactor.core.publisher.Flux",
+      "reactor.core.publisher.Mono");
+
+  private final Set<String> storeClassNames = new TreeSet<>();
+  private final Set<String> codecTypeNames = new HashSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        if (element instanceof TypeElement) {
+          storeClassNames.add(processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString());
+          if (!"false".equals(processingEnv.getOptions().get(GENERATE_CODECS_OPTION))) {
+            generateCodecs((TypeElement) element, roundEnv.getRootElements());
+          }
+        }
+      }
+    }
+    if (roundEnv.processingOver() && !storeClassNames.isEmpty()) {
+      writeIndex();
+    }
+    return false; // Let other processors see @Store too.
+  }
+
+  private void writeIndex() {
+    storeClassNames.addAll(readPreviousIndex());
+    try {
+      FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", StoreIndex.INDEX_LOCATION);
+      try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+        writer.write("# Generated by " + StoreIndexProcessor.class.getName() + ", do not edit.\n");
+        for (String storeClassName : storeClassNames) {
+          writer.write(storeClassName);
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Could not write the store index, stores will be scanned on startup: " + e.getMessage());
+    }
+  }
+
+  // An incremental compile only sees the changed sources, keep the stores of the previous index that still exist.
+  private Set<String> readPreviousIndex() {
+    Set<String> previous = new TreeSet<>();
+    CharSequence content;
+    try {
+      content = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", StoreIndex.INDEX_LOCATION).getCharContent(true);
+    } catch (IOException | IllegalArgumentException e) {
+      return previous; // Clean build.
+    }
+    for (String line : content.toString().split("\n")) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#") || storeClassNames.contains(line)) {
+        continue;
+      }
+      TypeElement type = processingEnv.getElementUtils().getTypeElement(line.replace('$', '.'));
+      if (type != null && CodecGenerator.findAnnotation(type, STORE_ANNOTATION) != null) {
+        previous.add(line);
+      }
+    }
+    return previous;
+  }
+
+  private void generateCodecs(TypeElement store, Set<? extends Element> rootElements) {
+    Set<TypeElement> types = new LinkedHashSet<>();
+    AnnotationMirror storeAnnotation = CodecGenerator.findAnnotation(store, STORE_ANNOTATION);
+    for (Object item : (List<?>) annotationValue(storeAnnotation, "items", Collections.emptyList())) {
+      Object type = annotationValue((AnnotationMirror) ((AnnotationValue) item).getValue(), "type", null);
+      if (type instanceof DeclaredType) {
+        types.add((TypeElement) ((DeclaredType) type).asElement());
+      }
+    }
+    for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(store))) {
+      if (CodecGenerator.findAnnotation(method, PIPELINE_RUN_ANNOTATION) != null) {
+        TypeMirror elementType = elementType(method.getReturnType());
+        if (elementType != null) {
+          types.add((TypeElement) ((DeclaredType) elementType).asElement());
+        }
+      }
+    }
+    CodecGenerator generator = new CodecGenerator(processingEnv.getElementUtils());
+    for (TypeElement type : types) {
+      String typeName = type.getQualifiedName().toString();
+      // Only the types compiled now, the others are either already generated or from libraries.
+      if (!rootElements.contains(outermost(type)) || !codecTypeNames.add(typeName)) {
+        continue;
+      }
+      try {
+        String source = generator.generate(type);
+        String packageName = generator.getPackageName(type);
+        String codecName = (packageName.isEmpty() ? "" : packageName + ".") + CodecGenerator.codecSimpleName(type);
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(codecName, type);
+        try (Writer writer = file.openWriter()) {
+          writer.write(source);
+        }
+      } catch (CodecGenerator.UnsupportedTypeException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "No codec generated for " + typeName + ", " + e.getMessage()
+            + ", the POJO codec will be used.", type);
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "Could not write the codec of " + typeName + ": " + e.getMessage(), type);
+      }
+    }
+  }
+
+  private TypeMirror elementType(TypeMirror type) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      return null;
+    }
+    DeclaredType declaredType = (DeclaredType) type;
+    String typeName = ((TypeElement) declaredType.asElement()).getQualifiedName().toString();
+    if (CONTAINER_TYPES.contains(typeName)) {
+      return declaredType.getTypeArguments().size() == 1 ? elementType(declaredType.getTypeArguments().get(0)) : null;
+    }
+    return typeName.startsWith("java.") ? null : type;
+  }
+
+  private static Element outermost(TypeElement type) {
+    Element element = type;
+    while (element.getEnclosingElement() instanceof TypeElement) {
+      element = element.getEnclosingElement();
+    }
+    return element;
+  }
+
+  private static Object annotationValue(AnnotationMirror annotation, String name, Object defaultValue) {
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        return entry.getValue().getValue();
+      }
+    }
+    return defaultValue;
+  }
+}
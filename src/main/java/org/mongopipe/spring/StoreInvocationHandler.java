@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.codecs.configuration.CodecRegistry;
+import org.mongopipe.core.annotation.Item;
+import org.mongopipe.core.annotation.PipelineRun;
+import org.mongopipe.core.annotation.Store;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Wraps a store created by Stores.from, lazily. Pipeline runs wait for the migration to finish when it runs asynchronously,
+ * and run through the {@link PipelineAggregator} when enabled. The runs the core store can not do (CompletableFuture results, on
+ * the {@link StoreSupport#getAsyncExecutor()}, raw BSON results and exports) always run through it, as do the ones with a
+ * {@link PipelineResultCache} or the {@link PipelineCallCoalescer} enabled, and the pipelines with {@link PipelineOptions}. Also
+ * records the {@link PipelineMetrics}. The {@link BulkStore} methods run through {@link BulkOperations}.
+ */
+class StoreInvocationHandler implements InvocationHandler {
+  private static final Log LOG = CustomLogFactory.getLogger(StoreInvocationHandler.class);
+  private final Class<?> storeClass;
+  private final LazyStore store;
+  private final StoreSupport storeSupport;
+  private final Map<Method, PipelineRunMethod> pipelineRunMethods = new ConcurrentHashMap<>();
+  private volatile BulkOperations bulkOperations;
+
+  StoreInvocationHandler(Class<?> storeClass, LazyStore store, StoreSupport storeSupport) {
+    this.storeClass = storeClass;
+    this.store = store;
+    this.storeSupport = storeSupport;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return invokeObjectMethod(proxy, method, args);
+    }
+    storeSupport.starter.run();
+    if (method.getDeclaringClass() == BulkStore.class) {
+      return getBulkOperations().invoke(method.getName(), args);
+    }
+    if (!method.isAnnotationPresent(PipelineRun.class)) {
+      return invokeStore(method, args);
+    }
+    PipelineRunMethod pipelineRunMethod = getPipelineRunMethod(method);
+    PipelineMetrics pipelineMetrics = storeSupport.pipelineMetrics;
+    PipelineMetrics.PipelineMeter meter = pipelineMetrics == null ? null : pipelineMetrics.forPipeline(pipelineRunMethod.getPipelineId());
+    if (pipelineRunMethod.isReactive()) {
+      if (storeSupport.reactivePipelineAggregator == null) {
+        throw new MongoPipeConfigException("Add mongodb-driver-reactivestreams and reactor-core to the classpath for " + method);
+      }
+      return ReactivePipelineRuns.run(pipelineRunMethod, storeSupport, args, meter);
+    }
+    if (pipelineRunMethod.isAsync()) {
+      if (!pipelineRunMethod.isSupported()) {
+        throw new MongoPipeConfigException("Unsupported CompletableFuture result type for " + method);
+      }
+      return CompletableFuture.supplyAsync(() -> {
+        try {
+          return runMeasured(pipelineRunMethod, method, args, meter);
+        } catch (RuntimeException e) {
+          throw e;
+        } catch (Throwable e) {
+          throw new CompletionException(e);
+        }
+      }, storeSupport.getAsyncExecutor());
+    }
+    return runMeasured(pipelineRunMethod, method, args, meter);
+  }
+
+  private PipelineRunMethod getPipelineRunMethod(Method method) {
+    PipelineRunMethod result = pipelineRunMethods.get(method);
+    return result != null ? result : pipelineRunMethods.computeIfAbsent(method, key -> new PipelineRunMethod(key, storeSupport.projectionPushdown));
+  }
+
+  private BulkOperations getBulkOperations() {
+    BulkOperations result = bulkOperations;
+    if (result == null) {
+      bulkOperations = result = new BulkOperations(storeClass, storeSupport);
+    }
+    return result;
+  }
+
+  /**
+   * Resolves the @PipelineRun methods ahead of the first calls, e.g. their result and parameter types.
+   */
+  void prepare() {
+    for (Method method : storeClass.getMethods()) {
+      if (method.isAnnotationPresent(PipelineRun.class)) {
+        getPipelineRunMethod(method);
+      }
+    }
+  }
+
+  /**
+   * Creates the codecs of the store @Item types and of its @PipelineRun results, instead of on the first runs.
+   */
+  void warmUpCodecs() {
+    prepare();
+    PipelineAggregator pipelineAggregator = storeSupport.pipelineAggregator;
+    Store storeAnnotation = storeClass.getAnnotation(Store.class);
+    if (storeAnnotation != null) {
+      CodecRegistry codecRegistry = pipelineAggregator.getMongoDatabase().getCodecRegistry();
+      for (Item item : storeAnnotation.items()) {
+        try {
+          codecRegistry.get(item.type());
+        } catch (RuntimeException e) {
+          LOG.warn("No codec for the " + storeClass.getName() + " item " + item.type().getName() + ": " + e.getMessage());
+        }
+      }
+    }
+    for (Map.Entry<Method, PipelineRunMethod> entry : pipelineRunMethods.entrySet()) {
+      try {
+        entry.getValue().warmUp(pipelineAggregator);
+      } catch (RuntimeException e) {
+        LOG.warn("No codec for the results of " + entry.getKey() + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private Object runMeasured(PipelineRunMethod pipelineRunMethod, Method method, Object[] args, PipelineMetrics.PipelineMeter meter) throws Throwable {
+    storeSupport.migrationStatus.await(storeSupport.migrationTimeoutMillis);
+    if (meter == null) {
+      return runPipeline(pipelineRunMethod, method, args, null);
+    }
+    long start = System.nanoTime();
+    boolean error = true;
+    try {
+      Object result = runPipeline(pipelineRunMethod, method, args, meter);
+      error = false;
+      return result;
+    } finally {
+      long durationNanos = System.nanoTime() - start;
+      meter.recordCall(durationNanos, error);
+      if (storeSupport.slowPipelineThresholdMillis >= 0 && durationNanos > TimeUnit.MILLISECONDS.toNanos(storeSupport.slowPipelineThresholdMillis)) {
+        LOG.warn("Slow pipeline '" + pipelineRunMethod.getPipelineId() + "' run by " + storeClass.getSimpleName() + "." + method.getName() + " took "
+            + TimeUnit.NANOSECONDS.toMillis(durationNanos) + " ms");
+      }
+    }
+  }
+
+  private Object runPipeline(PipelineRunMethod pipelineRunMethod, Method method, Object[] args, PipelineMetrics.PipelineMeter meter) throws Throwable {
+    if (pipelineRunMethod.isSupported()) {
+      PipelineResultCache pipelineResultCache = storeSupport.pipelineResultCache;
+      if (pipelineResultCache != null && !pipelineResultCache.isEnabled(pipelineRunMethod.getPipelineId())) {
+        pipelineResultCache = null;
+      }
+      PipelineCallCoalescer pipelineCallCoalescer = pipelineRunMethod.isCoalescable() ? storeSupport.pipelineCallCoalescer : null;
+      if ((pipelineResultCache != null || pipelineCallCoalescer != null) && pipelineRunMethod.isShareable()) {
+        return pipelineRunMethod.runShared(pipelineResultCache, pipelineCallCoalescer, storeSupport.pipelineAggregator, args, meter);
+      }
+      if (storeSupport.aggregatorEnabled || pipelineRunMethod.requiresAggregator() || storeSupport.pipelineAggregator.hasOptions(pipelineRunMethod.getPipelineId())) {
+        return pipelineRunMethod.run(storeSupport.pipelineAggregator, args, meter);
+      }
+    }
+    Object result = invokeStore(method, args);
+    return meter == null ? result : countDocuments(result, meter);
+  }
+
+  // Bytes are not known for the results of the core store.
+  private static Object countDocuments(Object result, PipelineMetrics.PipelineMeter meter) {
+    if (result instanceof Stream) {
+      return ((Stream<?>) result).peek(document -> meter.recordDocuments(1, 0));
+    }
+    if (result instanceof Collection) {
+      meter.recordDocuments(((Collection<?>) result).size(), 0);
+    } else if (result instanceof Optional) {
+      meter.recordDocuments(((Optional<?>) result).isPresent() ? 1 : 0, 0);
+    } else if (result != null) {
+      meter.recordDocuments(1, 0);
+    }
+    return result;
+  }
+
+  private Object invokeStore(Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(store.get(), args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+  }
+
+  private Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+    switch (method.getName()) {
+      case "equals":
+        return proxy == args[0];
+      case "hashCode":
+        return System.identityHashCode(proxy);
+      default:
+        return "MongoPipe store " + storeClass.getName();
+    }
+  }
+}
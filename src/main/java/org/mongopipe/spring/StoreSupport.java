@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.springframework.beans.factory.BeanFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * What the store proxies of a {@link MongoPipeStarter} share, configured through the starter setters.
+ */
+class StoreSupport {
+  final MigrationStatus migrationStatus;
+  final PipelineAggregator pipelineAggregator;
+  // Null if the reactive driver is not on the classpath.
+  ReactivePipelineAggregator reactivePipelineAggregator;
+  long migrationTimeoutMillis = 60000L;
+  // Starts the migration if not yet started, called on each store use.
+  Runnable starter = () -> { };
+  // Run the @PipelineRun methods with the PipelineAggregator instead of the core store.
+  boolean aggregatorEnabled;
+  // Null when disabled.
+  volatile PipelineMetrics pipelineMetrics;
+  long slowPipelineThresholdMillis = -1;
+  // Only used for the pipelines it is enabled for.
+  PipelineResultCache pipelineResultCache;
+  // Null when disabled.
+  PipelineCallCoalescer pipelineCallCoalescer;
+  // Append a $project of the POJO result fields.
+  boolean projectionPushdown;
+  // Where the executor bean of the CompletableFuture methods is looked up, set by the starter.
+  volatile BeanFactory beanFactory;
+  // Documents per bulkWrite of the BulkStore methods.
+  int bulkBatchSize = 1000;
+  // Null when the write-behind is disabled.
+  WriteBehindBuffers writeBehindBuffers;
+  String asyncExecutorBeanName = MongoPipeStarter.ASYNC_EXECUTOR_BEAN_NAME;
+  private volatile Executor asyncExecutor;
+  private ExecutorService defaultAsyncExecutor;
+
+  StoreSupport(MigrationStatus migrationStatus, PipelineAggregator pipelineAggregator) {
+    this.migrationStatus = migrationStatus;
+    this.pipelineAggregator = pipelineAggregator;
+  }
+
+  /**
+   * @return the executor bean if defined, otherwise a default one created on first use.
+   */
+  Executor getAsyncExecutor() {
+    Executor result = asyncExecutor;
+    if (result == null) {
+      synchronized (this) {
+        result = asyncExecutor;
+        if (result == null) {
+          BeanFactory factory = beanFactory;
+          if (factory != null && factory.containsBean(asyncExecutorBeanName)) {
+            result = factory.getBean(asyncExecutorBeanName, Executor.class);
+          } else {
+            result = defaultAsyncExecutor = PipelineExecutors.createDefault();
+          }
+          asyncExecutor = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  void setAsyncExecutor(Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  synchronized void shutdown() {
+    if (defaultAsyncExecutor != null) {
+      defaultAsyncExecutor.shutdown();
+      defaultAsyncExecutor = null;
+      asyncExecutor = null;
+    }
+  }
+}
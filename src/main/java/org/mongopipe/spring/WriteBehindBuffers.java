@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.mongopipe.core.logging.CustomLogFactory;
+import org.mongopipe.core.logging.Log;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The write-behind buffers of the {@link BulkStore#saveBehind} items, one per collection. A buffer is written in the background
+ * when it holds a batch, every flush interval, and when the context stops. While a buffer is full the callers wait, so the
+ * writers are slowed down to the database pace instead of filling the memory. Registered as the "writeBehindBuffers" bean, see
+ * {@link MongoPipeStarter#setWriteBehind}.
+ */
+public class WriteBehindBuffers implements SmartLifecycle {
+  private static final Log LOG = CustomLogFactory.getLogger(WriteBehindBuffers.class);
+  private final int capacity;
+  private final int batchSize;
+  private final long flushIntervalMillis;
+  private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+  private final AtomicLong writtenCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private volatile Consumer<BulkFailure> failureListener = failure -> LOG.error("Write-behind failure: " + failure);
+  private volatile ScheduledExecutorService scheduler;
+  private volatile boolean running;
+
+  /**
+   * @param capacity the items a collection buffer holds before the callers wait.
+   * @param batchSize the items written per bulkWrite, a full batch being written right away.
+   * @param flushIntervalMillis the longest an item waits in the buffer while the context runs.
+   */
+  public WriteBehindBuffers(int capacity, int batchSize, long flushIntervalMillis) {
+    if (capacity < 1 || batchSize < 1 || flushIntervalMillis < 1) {
+      throw new IllegalArgumentException("Write-behind capacity, batch size and flush interval must be positive");
+    }
+    this.capacity = capacity;
+    this.batchSize = Math.min(batchSize, capacity);
+    this.flushIntervalMillis = flushIntervalMillis;
+  }
+
+  /**
+   * Called with each document of the flushes that could not be written, on the flushing thread. Default logs an error.
+   */
+  public void setFailureListener(Consumer<BulkFailure> failureListener) {
+    this.failureListener = failureListener;
+  }
+
+  void add(BulkOperations bulkOperations, Object item, RawBsonDocument document) {
+    Buffer buffer = buffers.computeIfAbsent(bulkOperations.getCollectionName(), name -> new Buffer(bulkOperations));
+    if (!running) {
+      // Not started yet or stopped, write it now rather than leaving it behind.
+      buffer.flush();
+      buffer.write(Collections.singletonList(new Entry(item, document)));
+      return;
+    }
+    try {
+      buffer.queue.put(new Entry(item, document));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the " + buffer.bulkOperations.getCollectionName() + " write-behind buffer", e);
+    }
+    ScheduledExecutorService currentScheduler = scheduler;
+    if (!running || currentScheduler == null) {
+      // Stopped meanwhile, after the final flush.
+      buffer.flush();
+    } else if (buffer.queue.size() >= batchSize && buffer.flushScheduled.compareAndSet(false, true)) {
+      try {
+        currentScheduler.execute(() -> {
+          buffer.flushScheduled.set(false);
+          buffer.flush();
+        });
+      } catch (RejectedExecutionException e) {
+        buffer.flushScheduled.set(false);
+        buffer.flush();
+      }
+    }
+  }
+
+  /**
+   * Writes now the items buffered for the collection.
+   */
+  public void flush(String collectionName) {
+    Buffer buffer = buffers.get(collectionName);
+    if (buffer != null) {
+      buffer.flush();
+    }
+  }
+
+  /**
+   * Writes now all the buffered items.
+   */
+  public void flush() {
+    buffers.values().forEach(Buffer::flush);
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      // Keep the scheduled flushes running.
+      LOG.error("Write-behind flush failed: " + e.getMessage(), e);
+    }
+  }
+
+  public long getWrittenCount() {
+    return writtenCount.get();
+  }
+
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  public int getPendingCount() {
+    int result = 0;
+    for (Buffer buffer : buffers.values()) {
+      result += buffer.queue.size();
+    }
+    return result;
+  }
+
+  @Override
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mongopipe-write-behind");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    running = true;
+  }
+
+  @Override
+  public synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    ScheduledExecutorService stoppedScheduler = scheduler;
+    scheduler = null;
+    stoppedScheduler.shutdown();
+    try {
+      stoppedScheduler.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  @Override
+  public void stop(Runnable callback) {
+    stop();
+    callback.run();
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  @Override
+  public boolean isAutoStartup() {
+    return true;
+  }
+
+  @Override
+  public int getPhase() {
+    return 0;
+  }
+
+  private static final class Entry {
+    final Object item;
+    final RawBsonDocument document;
+
+    Entry(Object item, RawBsonDocument document) {
+      this.item = item;
+      this.document = document;
+    }
+  }
+
+  private final class Buffer {
+    final BulkOperations bulkOperations;
+    final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(capacity);
+    final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    Buffer(BulkOperations bulkOperations) {
+      this.bulkOperations = bulkOperations;
+    }
+
+    // Serialized so that the saves of an item are written in order.
+    synchronized void flush() {
+      List<Entry> entries = new ArrayList<>(batchSize);
+      while (queue.drainTo(entries, batchSize) > 0) {
+        write(entries);
+        entries.clear();
+      }
+    }
+
+    synchronized void write(List<Entry> entries) {
+      // The bulkWrite is unordered, so only the last save of an _id is kept for the last write to win.
+      Set<BsonValue> ids = new HashSet<>();
+      List<Object> items = new ArrayList<>(entries.size());
+      List<RawBsonDocument> documents = new ArrayList<>(entries.size());
+      for (int i = entries.size() - 1; i >= 0; i--) {
+        Entry entry = entries.get(i);
+        BsonValue id = entry.document.get("_id");
+        if (id == null || ids.add(id)) {
+          items.add(entry.item);
+          documents.add(entry.document);
+        }
+      }
+      Collections.reverse(items);
+      Collections.reverse(documents);
+      BulkReport report = BulkWriter.write(bulkOperations.getCollection(), items, documents, true, batchSize);
+      writtenCount.addAndGet(entries.size() - report.getFailures().size());
+      failedCount.addAndGet(report.getFailures().size());
+      Consumer<BulkFailure> listener = failureListener;
+      for (BulkFailure failure : report.getFailures()) {
+        try {
+          listener.accept(failure);
+        } catch (RuntimeException e) {
+          LOG.error("Write-behind failure listener error: " + e.getMessage(), e);
+        }
+      }
+    }
+  }
+}
@@ -26,25 +26,34 @@ import de.flapdoodle.embed.mongo.MongodProcess;
 import de.flapdoodle.embed.mongo.MongodStarter;
 import de.flapdoodle.embed.mongo.config.MongodConfig;
 import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.config.Storage;
 import de.flapdoodle.embed.mongo.distribution.Version;
 import de.flapdoodle.embed.process.runtime.Network;
 import org.mongopipe.core.logging.CustomLogFactory;
+import org.bson.Document;
 import org.mongopipe.core.logging.Log;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 
+import java.util.Collections;
+
 /**
- * Starts a MongoDB server standalone.
+ * Starts a MongoDB server standalone, or as a single node replica set.
  */
-public class MongoDBServerStarter implements InitializingBean {
+public class MongoDBServerStarter implements InitializingBean, DisposableBean {
   private static final Log LOG = CustomLogFactory.getLogger(MongoDBServerStarter.class);
   /** please store Starter or RuntimeConfig in a static final field if you want to use artifact store caching (or else disable caching) */
   public static final MongodStarter STARTER = MongodStarter.getDefaultInstance();
+  public static final String REPLICA_SET_NAME = "rs0";
 
   private MongodExecutable mongodExecutable;
   private MongodProcess mongod;
 
   private static int port;
   private static MongodConfig mongodConfig;
+  private static int replicaSetPort;
+  private static MongodConfig replicaSetConfig;
+  private final boolean replicaSet;
   private MongoDatabase db;
   private MongoClient mongoClient;
 
@@ -56,30 +65,74 @@ public class MongoDBServerStarter implements InitializingBean {
       // https://github.com/flapdoodle-oss/de.flapdoodle.embed.mongo/blob/de.flapdoodle.embed.mongo-3.5.0/README.md#usage---optimization
       port = Network.getFreeServerPort();
       mongodConfig = MongodConfig.builder().version(Version.V4_4_17).net(new Net(port, Network.localhostIsIPv6())).build();
+      replicaSetPort = Network.getFreeServerPort();
+      replicaSetConfig = MongodConfig.builder().version(Version.V4_4_17).net(new Net(replicaSetPort, Network.localhostIsIPv6()))
+          .replication(new Storage(null, REPLICA_SET_NAME, 0)).build();
     } catch (Exception e) {
       e.printStackTrace();
     }
   }
 
+  public MongoDBServerStarter() {
+    this(false);
+  }
+
+  /**
+   * @param replicaSet start a single node replica set, e.g. for the read preferences sent to the server.
+   */
+  public MongoDBServerStarter(boolean replicaSet) {
+    this.replicaSet = replicaSet;
+  }
+
   protected void setUp() throws Exception {
     LOG.info("---------- Database setup ----------");
-    mongodExecutable = STARTER.prepare(mongodConfig);
+    mongodExecutable = STARTER.prepare(replicaSet ? replicaSetConfig : mongodConfig);
     mongod = mongodExecutable.start();
+    if (replicaSet) {
+      initiateReplicaSet();
+    }
 
-    ConnectionString connectionString = new ConnectionString("mongodb://localhost:" + port);
+    ConnectionString connectionString = new ConnectionString(getUri());
     MongoClientSettings mongoClientSettings = MongoClientSettings.builder().applyConnectionString(connectionString).build();
     mongoClient = MongoClients.create(mongoClientSettings);
     db = mongoClient.getDatabase("test");
 
   }
 
+  private void initiateReplicaSet() throws InterruptedException {
+    try (MongoClient directClient = MongoClients.create("mongodb://localhost:" + replicaSetPort + "/?directConnection=true")) {
+      MongoDatabase admin = directClient.getDatabase("admin");
+      admin.runCommand(new Document("replSetInitiate", new Document("_id", REPLICA_SET_NAME)
+          .append("members", Collections.singletonList(new Document("_id", 0).append("host", "localhost:" + replicaSetPort)))));
+      long deadline = System.currentTimeMillis() + 30000;
+      while (!Boolean.TRUE.equals(admin.runCommand(new Document("isMaster", 1)).getBoolean("ismaster"))) {
+        if (System.currentTimeMillis() > deadline) {
+          throw new IllegalStateException("Replica set " + REPLICA_SET_NAME + " has no primary");
+        }
+        Thread.sleep(100);
+      }
+    }
+  }
+
   @Override
   public void afterPropertiesSet() throws Exception {
     setUp();
   }
 
+  @Override
+  public void destroy() {
+    // Frees the port for the next test class.
+    mongoClient.close();
+    mongod.stop();
+    mongodExecutable.stop();
+  }
+
   public int getPort() {
-    return port;
+    return replicaSet ? replicaSetPort : port;
+  }
+
+  public String getUri() {
+    return replicaSet ? "mongodb://localhost:" + replicaSetPort + "/?replicaSet=" + REPLICA_SET_NAME : "mongodb://localhost:" + port;
   }
 
   public void setPort(int port) {
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.Document;
+import org.junit.AfterClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.AsyncRestaurant;
+import org.test.Order;
+import org.test.Pizza;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestAsyncStores {
+  private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4);
+  private static final AtomicInteger EXECUTED = new AtomicInteger();
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+
+    @Bean(name = MongoPipeStarter.ASYNC_EXECUTOR_BEAN_NAME)
+    public Executor mongoPipeExecutor() {
+      return runnable -> {
+        EXECUTED.incrementAndGet();
+        EXECUTOR.execute(runnable);
+      };
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  AsyncRestaurant asyncRestaurant;
+
+  @Test
+  public void test() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+    mongoDBServerStarter.getDb().getCollection("orders").insertMany(Arrays.asList(
+        new Document("name", "Pepperoni").append("size", "small").append("quantity", 2),
+        new Document("name", "Pepperoni").append("size", "small").append("quantity", 3),
+        new Document("name", "Vegan").append("size", "medium").append("quantity", 1)));
+
+    // When, both pipelines run at the same time.
+    CompletableFuture<List<Pizza>> pizzas = asyncRestaurant.getPizzasBySize("small");
+    CompletableFuture<List<Order>> orders = asyncRestaurant.getTotalOrders("small");
+    CompletableFuture.allOf(pizzas, orders).join();
+
+    // Then
+    assertEquals("[Cheese, Pepperoni]", pizzas.join().stream().map(Pizza::getName).collect(Collectors.toList()).toString());
+    assertEquals(1, orders.join().size());
+    assertEquals("Pepperoni", orders.join().get(0).getPizza());
+    assertEquals(5L, orders.join().get(0).getTotalQuantity().longValue());
+    assertEquals("Vegan", asyncRestaurant.getFirstPizzaBySize("medium").join().getName());
+    try (Stream<Pizza> stream = asyncRestaurant.streamPizzasBySize("small").join()) {
+      assertEquals(2, stream.count());
+    }
+    assertEquals(4, EXECUTED.get());
+  }
+
+  @AfterClass
+  public static void shutdown() {
+    EXECUTOR.shutdown();
+  }
+
+  @Test
+  public void testDefaultExecutor() throws Exception {
+    Executor executor = PipelineExecutors.createThreadPool(1);
+    try {
+      CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor);
+      assertTrue(first.get().startsWith("mongopipe-async-"));
+    } finally {
+      ((ExecutorService) executor).shutdown();
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.Pizza;
+import org.test.PizzaIngestion;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestBulkStore {
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setBulkBatchSize(3);
+      // Interval long enough for only the size and shutdown flushes to happen.
+      mongoPipeStarter.setWriteBehind(100, 5, 3600000L);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PizzaIngestion pizzaIngestion;
+
+  @Autowired
+  WriteBehindBuffers writeBehindBuffers;
+
+  MongoCollection<Document> collection;
+
+  @Before
+  public void setUp() {
+    collection = mongoDBServerStarter.getDb().getCollection("ingestedPizzas");
+    collection.drop();
+  }
+
+  private static Pizza pizza(String id, String name) {
+    Pizza pizza = new Pizza();
+    pizza.setId(id);
+    pizza.setName(name);
+    pizza.setSize("medium");
+    return pizza;
+  }
+
+  @Test
+  public void testInsertAllReportsFailedDocuments() {
+    // Given
+    collection.insertOne(new Document("_id", "p2").append("name", "Existing"));
+    Pizza duplicate = pizza("p2", "Duplicate");
+    List<Pizza> pizzas = Arrays.asList(pizza("p1", "Margherita"), duplicate, pizza("p3", "Diavola"), pizza("p4", "Capricciosa"),
+        pizza(null, "Marinara"));
+
+    // When
+    BulkReport report = pizzaIngestion.insertAll(pizzas);
+
+    // Then, unordered so the documents after the duplicate are written, across the 2 batches.
+    assertEquals(4, report.getInsertedCount());
+    assertEquals(1, report.getFailures().size());
+    BulkFailure failure = report.getFailures().get(0);
+    assertSame(duplicate, failure.getItem());
+    assertEquals(1, failure.getIndex());
+    assertEquals(11000, failure.getCode());
+    assertEquals("ingestedPizzas", failure.getCollection());
+    assertEquals(5, collection.countDocuments());
+    assertEquals("Existing", collection.find(new Document("_id", "p2")).first().getString("name"));
+  }
+
+  @Test
+  public void testSaveAllUpserts() {
+    // Given
+    collection.insertOne(new Document("_id", "p1").append("name", "Old"));
+
+    // When
+    BulkReport report = pizzaIngestion.saveAll(Arrays.asList(pizza("p1", "Margherita"), pizza("p2", "Diavola")));
+
+    // Then
+    assertFalse(report.hasFailures());
+    assertEquals(1, report.getMatchedCount());
+    assertEquals(1, report.getModifiedCount());
+    assertEquals(1, report.getUpsertedCount());
+    assertEquals("Margherita", collection.find(new Document("_id", "p1")).first().getString("name"));
+    assertEquals(2, collection.countDocuments());
+  }
+
+  @Test
+  public void testSaveBehind() throws InterruptedException {
+    List<BulkFailure> failures = new CopyOnWriteArrayList<>();
+    writeBehindBuffers.setFailureListener(failures::add);
+    long written = writeBehindBuffers.getWrittenCount();
+
+    // When a batch is buffered it is written in the background.
+    for (int i = 0; i < 5; i++) {
+      pizzaIngestion.saveBehind(pizza("b" + i, "Pizza " + i));
+    }
+    long deadline = System.currentTimeMillis() + 10000;
+    while (collection.countDocuments() < 5 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+    }
+    assertEquals(5, collection.countDocuments());
+
+    // Less than a batch waits for the flush.
+    pizzaIngestion.saveBehind(pizza("b5", "Pizza 5"));
+    pizzaIngestion.saveBehind(pizza("b0", "Pizza 0 updated"));
+    pizzaIngestion.saveBehind(pizza("b5", "Pizza 5 updated"));
+    assertEquals(3, writeBehindBuffers.getPendingCount());
+    pizzaIngestion.flush();
+    assertEquals(0, writeBehindBuffers.getPendingCount());
+    assertEquals(6, collection.countDocuments());
+    assertEquals("Pizza 0 updated", collection.find(new Document("_id", "b0")).first().getString("name"));
+    // The last save of the same batch wins.
+    assertEquals("Pizza 5 updated", collection.find(new Document("_id", "b5")).first().getString("name"));
+
+    // Written when the context stops, and right away once stopped.
+    pizzaIngestion.saveBehind(pizza("b6", "Pizza 6"));
+    writeBehindBuffers.stop();
+    assertEquals(7, collection.countDocuments());
+    pizzaIngestion.saveBehind(pizza("b7", "Pizza 7"));
+    assertEquals(8, collection.countDocuments());
+    writeBehindBuffers.start();
+
+    assertTrue(failures.isEmpty());
+    assertEquals(written + 10, writeBehindBuffers.getWrittenCount());
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.ConnectionPoolCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.core.store.PipelineStore;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestContextMongoClient {
+  static final AtomicInteger CONNECTION_POOLS = new AtomicInteger();
+  static final Queue<String> COMMANDS = new ConcurrentLinkedQueue<>();
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:1") // Nothing listening, so only the context client works.
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+
+    @Bean
+    public PipelineStoreUser pipelineStoreUser() {
+      return new PipelineStoreUser();
+    }
+  }
+
+  // An application bean using the pipelines while initialized.
+  public static class PipelineStoreUser implements InitializingBean {
+    @Autowired
+    PipelineStore pipelineStore;
+    long pipelineCount;
+
+    @Override
+    public void afterPropertiesSet() {
+      pipelineCount = pipelineStore.count();
+    }
+  }
+
+  // Apart from the starter, a bean factory post-processor created early with its configuration class.
+  @Configuration
+  public static class ClientConfiguration {
+    // Injected by a bean post-processor, so null if the client is created before them.
+    @Autowired
+    MongoDBServerStarter mongoDBStarter;
+
+    // The application client, e.g. the Spring Data one.
+    @Bean
+    public MongoClient mongoClient() {
+      return MongoClients.create(MongoClientSettings.builder()
+          .applyConnectionString(new ConnectionString("mongodb://localhost:" + mongoDBStarter.getPort()))
+          .applyToConnectionPoolSettings(builder -> builder.maxSize(5).addConnectionPoolListener(new ConnectionPoolListener() {
+            @Override
+            public void connectionPoolCreated(ConnectionPoolCreatedEvent event) {
+              CONNECTION_POOLS.incrementAndGet();
+            }
+          }))
+          .addCommandListener(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+              COMMANDS.add(event.getCommandName());
+            }
+          })
+          .build());
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  MongoClient mongoClient;
+
+  @Autowired
+  MongoPipeConfig mongoPipeConfig;
+
+  @Autowired
+  PipelineAggregator pipelineAggregator;
+
+  @Autowired
+  MyRestaurant myRestaurant;
+
+  @Autowired
+  PipelineStore pipelineStore;
+
+  @Autowired
+  PipelineStoreUser pipelineStoreUser;
+
+  @Test
+  public void test() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+    COMMANDS.clear();
+
+    // When
+    List<Pizza> pizzas;
+    try (Stream<Pizza> stream = myRestaurant.getPizzasBySize("small")) {
+      pizzas = stream.collect(Collectors.toList());
+    }
+    long count = pipelineAggregator.aggregate("matchingPizzas", Collections.singletonMap("pizzaSize", "small"), Pizza.class)
+        .into(new ArrayList<>()).size();
+
+    // Then
+    assertEquals(2, pizzas.size());
+    assertEquals(2, count);
+    assertSame(mongoClient, mongoPipeConfig.getMongoClient());
+    assertTrue(COMMANDS.toString(), COMMANDS.stream().filter("aggregate"::equals).count() >= 2);
+    assertEquals(1, CONNECTION_POOLS.get()); // One server, one pool.
+    // Migrated with the context client before the beans using the pipelines are initialized.
+    assertTrue(pipelineStoreUser.pipelineCount > 0);
+    assertEquals(pipelineStore.count().longValue(), pipelineStoreUser.pipelineCount);
+  }
+}
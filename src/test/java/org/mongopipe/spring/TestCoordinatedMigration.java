@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Several nodes (Spring contexts) starting at once against the same database.
+ */
+public class TestCoordinatedMigration {
+  static MongoDBServerStarter mongoDBServerStarter;
+
+  @Configuration
+  public static class NodeConfiguration {
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig() {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBServerStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setCoordinatedMigration(true);
+      return mongoPipeStarter;
+    }
+  }
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    mongoDBServerStarter = new MongoDBServerStarter();
+    mongoDBServerStarter.afterPropertiesSet();
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    mongoDBServerStarter.destroy();
+  }
+
+  @Test
+  public void testSingleNodeMigrates() throws Exception {
+    // When
+    List<MigrationCoordinator.Outcome> outcomes = startNodes(4);
+
+    // Then
+    assertEquals(1, outcomes.stream().filter(outcome -> outcome == MigrationCoordinator.Outcome.MIGRATED).count());
+    assertEquals(2, mongoDBServerStarter.getDb().getCollection("pipeline_checksums").countDocuments());
+
+    // And a restart with the same pipelines writes nothing.
+    assertEquals(MigrationCoordinator.Outcome.UNCHANGED, startNodes(1).get(0));
+  }
+
+  @Test
+  public void testMigratedAgainWhenPipelineStoreDropped() throws Exception {
+    // Given
+    startNodes(1);
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").drop();
+
+    // When
+    MigrationCoordinator.Outcome outcome = startNodes(1).get(0);
+
+    // Then the unchanged sources do not skip the migration.
+    assertEquals(MigrationCoordinator.Outcome.MIGRATED, outcome);
+    assertEquals(2, mongoDBServerStarter.getDb().getCollection("pipeline_store").countDocuments());
+  }
+
+  @Test
+  public void testLeaseRenewedWhileMigrating() throws Exception {
+    // Given a migration lasting several leases.
+    AtomicInteger migrations = new AtomicInteger();
+    MigrationCoordinator slowNode = createCoordinator();
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    Future<MigrationCoordinator.Outcome> slowOutcome = executorService.submit(() -> slowNode.migrate(() -> {
+      migrations.incrementAndGet();
+      try {
+        Thread.sleep(1500);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      storePipelines();
+    }));
+    Thread.sleep(200);
+
+    // When
+    MigrationCoordinator.Outcome otherOutcome = createCoordinator().migrate(() -> {
+      migrations.incrementAndGet();
+      storePipelines();
+    });
+
+    // Then the other node waited instead of taking over the lock.
+    assertEquals(MigrationCoordinator.Outcome.MIGRATED, slowOutcome.get());
+    assertEquals(MigrationCoordinator.Outcome.MIGRATED_BY_OTHER_NODE, otherOutcome);
+    assertEquals(1, migrations.get());
+    executorService.shutdown();
+  }
+
+  private MigrationCoordinator createCoordinator() {
+    MigrationCoordinator coordinator = new MigrationCoordinator(mongoDBServerStarter.getDb(), "pipelines", "lease");
+    coordinator.setLockCollection("lease_lock");
+    coordinator.setChecksumCollection("lease_checksums");
+    coordinator.setPipelineStoreCollection("lease_store");
+    coordinator.setLeaseMillis(300);
+    coordinator.setPollMillis(50);
+    return coordinator;
+  }
+
+  private void storePipelines() {
+    for (String id : Arrays.asList("matchingPizzas", "totalOrdersGroupedBySize")) {
+      mongoDBServerStarter.getDb().getCollection("lease_store").replaceOne(new Document("_id", id), new Document("_id", id),
+          new ReplaceOptions().upsert(true));
+    }
+  }
+
+  private List<MigrationCoordinator.Outcome> startNodes(int count) throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(count);
+    try {
+      List<Future<MigrationCoordinator.Outcome>> futures = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        futures.add(executorService.submit(() -> {
+          try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(NodeConfiguration.class)) {
+            return context.getBean(MigrationStatus.class).getOutcome();
+          }
+        }));
+      }
+      List<MigrationCoordinator.Outcome> outcomes = new ArrayList<>();
+      for (Future<MigrationCoordinator.Outcome> future : futures) {
+        outcomes.add(future.get());
+      }
+      return outcomes;
+    } finally {
+      executorService.shutdown();
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.MyRestaurant;
+import org.test.Order;
+import org.test.Pizza;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestGeneratedCodecs {
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    // Adopted by the starter, its registry has no POJO codecs so the generated ones are used.
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoClient mongoClient(MongoDBServerStarter mongoDBStarter) {
+      return MongoClients.create(MongoClientSettings.builder()
+          .applyConnectionString(new ConnectionString("mongodb://localhost:" + mongoDBStarter.getPort()))
+          .codecRegistry(MongoClientSettings.getDefaultCodecRegistry())
+          .build());
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setPipelineDefinitionCacheEnabled(true);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PipelineAggregator pipelineAggregator;
+
+  @Autowired
+  MyRestaurant myRestaurant;
+
+  @Test
+  public void test() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+
+    // When
+    List<Pizza> pizzas;
+    try (Stream<Pizza> stream = myRestaurant.getPizzasBySize("small")) {
+      pizzas = stream.collect(Collectors.toList());
+    }
+
+    // Then
+    CodecRegistry codecRegistry = pipelineAggregator.getMongoDatabase().getCodecRegistry();
+    assertEquals("Pizza_MongoPipeCodec", codecRegistry.get(Pizza.class).getClass().getSimpleName());
+    assertEquals("Order_MongoPipeCodec", codecRegistry.get(Order.class).getClass().getSimpleName());
+    assertEquals(2, pizzas.size());
+    assertEquals("Cheese", pizzas.get(0).getName());
+    assertEquals("small", pizzas.get(0).getSize());
+    assertEquals(pizzas.get(0).getName(), myRestaurant.findById(pizzas.get(0).getId()).get().getName());
+  }
+
+  @Test
+  public void testSameMappingAsPojoCodec() {
+    Pizza pizza = new Pizza();
+    pizza.setId("1");
+    pizza.setName("Margherita");
+    pizza.setPrice(7.5f);
+    Codec<Pizza> generatedCodec = pipelineAggregator.getMongoDatabase().getCodecRegistry().get(Pizza.class);
+    Codec<Pizza> pojoCodec = CodecRegistries.fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+        CodecRegistries.fromProviders(PojoCodecProvider.builder().automatic(true).build())).get(Pizza.class);
+
+    BsonDocument generated = encode(generatedCodec, pizza);
+    assertEquals(encode(pojoCodec, pizza), generated);
+    assertEquals("{\"_id\": \"1\", \"name\": \"Margherita\", \"price\": 7.5}", generated.toJson());
+
+    Pizza decoded = generatedCodec.decode(new BsonDocumentReader(generated), DecoderContext.builder().build());
+    assertEquals(encode(pojoCodec, pizza), encode(pojoCodec, decoded));
+  }
+
+  @Test
+  public void testDatabaseCodecsWin() {
+    // Given a custom Pizza codec in the database registry.
+    Codec<Pizza> pizzaCodec = new UpperCaseNameCodec();
+    MongoDatabase database = mongoDBServerStarter.getDb().withCodecRegistry(
+        CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(pizzaCodec), MongoClientSettings.getDefaultCodecRegistry()));
+    PipelineAggregator aggregator = new PipelineAggregator(new PipelineDefinitionCache(() -> database), () -> database);
+
+    // When
+    CodecRegistry codecRegistry = aggregator.getMongoDatabase().getCodecRegistry();
+    Pizza decoded = codecRegistry.get(Pizza.class).decode(new BsonDocumentReader(BsonDocument.parse("{_id: '1', name: 'Margherita'}")),
+        DecoderContext.builder().build());
+
+    // Then the generated codecs are only used for the other types.
+    assertSame(pizzaCodec, codecRegistry.get(Pizza.class));
+    assertEquals("MARGHERITA", decoded.getName());
+    assertEquals("Order_MongoPipeCodec", codecRegistry.get(Order.class).getClass().getSimpleName());
+  }
+
+  static class UpperCaseNameCodec implements Codec<Pizza> {
+    @Override
+    public Pizza decode(BsonReader reader, DecoderContext decoderContext) {
+      BsonDocument document = new BsonDocumentCodec().decode(reader, decoderContext);
+      Pizza pizza = new Pizza();
+      pizza.setId(document.getString("_id").getValue());
+      pizza.setName(document.getString("name").getValue().toUpperCase());
+      return pizza;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Pizza pizza, EncoderContext encoderContext) {
+      writer.writeStartDocument();
+      writer.writeString("_id", pizza.getId());
+      writer.writeString("name", pizza.getName());
+      writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<Pizza> getEncoderClass() {
+      return Pizza.class;
+    }
+  }
+
+  private static <T> BsonDocument encode(Codec<T> codec, T value) {
+    BsonDocument document = new BsonDocument();
+    codec.encode(new BsonDocumentWriter(document), value, EncoderContext.builder().build());
+    return document;
+  }
+}
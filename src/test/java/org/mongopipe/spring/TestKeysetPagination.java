@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.mongopipe.core.exception.MongoPipeConfigException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.Pizza;
+import org.test.PizzaPages;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestKeysetPagination {
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PizzaPages pizzaPages;
+
+  @Autowired
+  PipelineAggregator pipelineAggregator;
+
+  @Test
+  public void test() {
+    // Given, names repeated so that pages split the ties.
+    List<Document> pizzas = new ArrayList<>();
+    for (int i = 0; i < 23; i++) {
+      pizzas.add(new Document("_id", String.format("p%02d", i)).append("name", "Pizza " + (i % 5)).append("size", i % 4 == 0 ? "medium" : "small"));
+    }
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(pizzas);
+    List<String> expected = new ArrayList<>();
+    for (Document pizza : mongoDBServerStarter.getDb().getCollection("pizzas").find(new Document("size", "small"))
+        .sort(new Document("name", 1).append("_id", 1))) {
+      expected.add(pizza.getString("_id"));
+    }
+
+    // When
+    List<String> ids = new ArrayList<>();
+    int pages = 0;
+    KeysetPage page = KeysetPage.first(4);
+    while (page != null) {
+      PipelineSlice<Pizza> slice = pizzaPages.getPizzasBySize("small", page);
+      slice.getContent().forEach(pizza -> ids.add(pizza.getId()));
+      assertTrue(slice.getContent().size() == 4 || !slice.hasNext());
+      page = slice.nextPage();
+      pages++;
+    }
+
+    // Then
+    assertEquals(17, expected.size());
+    assertEquals(expected, ids);
+    assertEquals(5, pages);
+  }
+
+  @Test
+  public void testDescendingWithNulls() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("prices").insertMany(Arrays.asList(
+        new Document("_id", 1).append("price", 5), new Document("_id", 2), new Document("_id", 3).append("price", 7),
+        new Document("_id", 4).append("price", 5), new Document("_id", 5).append("price", null), new Document("_id", 6).append("price", 1)));
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").insertOne(Document.parse(
+        "{_id: 'pricesDescending', collection: 'prices', pipeline: [{$sort: {price: -1}}, {$project: {price: 1}}]}"));
+
+    // When
+    List<Integer> ids = new ArrayList<>();
+    PipelineSlice<RawBsonDocument> slice = pipelineAggregator.aggregatePage("pricesDescending", Collections.emptyMap(), KeysetPage.first(2), null);
+    while (true) {
+      slice.getContent().forEach(document -> ids.add(document.getInt32("_id").getValue()));
+      if (!slice.hasNext()) {
+        break;
+      }
+      slice = pipelineAggregator.aggregatePage("pricesDescending", Collections.emptyMap(), slice.nextPage(), null);
+    }
+
+    // Then
+    assertEquals("[3, 1, 4, 6, 2, 5]", ids.toString());
+    assertFalse(slice.hasNext());
+    assertNull(slice.nextPage());
+  }
+
+  @Test(expected = MongoPipeConfigException.class)
+  public void testSortFieldProjectedOut() {
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").insertOne(Document.parse(
+        "{_id: 'pricesWithoutPrice', collection: 'prices', pipeline: [{$sort: {price: -1}}, {$project: {name: 1}}]}"));
+
+    pipelineAggregator.aggregatePage("pricesWithoutPrice", Collections.emptyMap(), KeysetPage.first(2), null);
+  }
+}
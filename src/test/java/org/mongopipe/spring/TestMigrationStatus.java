@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mongopipe.spring;
+
+import org.junit.Test;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestMigrationStatus {
+
+  @Test
+  public void testFutureCanNotChangeTheStatus() {
+    MigrationStatus migrationStatus = new MigrationStatus();
+
+    migrationStatus.getFuture().cancel(true);
+    migrationStatus.getFuture().complete(null);
+    assertFalse(migrationStatus.isReady());
+
+    migrationStatus.complete(MigrationCoordinator.Outcome.MIGRATED);
+    CompletableFuture<Void> future = migrationStatus.getFuture();
+    assertTrue(future.isDone());
+    assertFalse(future.isCompletedExceptionally());
+    assertTrue(migrationStatus.isReady());
+    assertEquals(MigrationCoordinator.Outcome.MIGRATED, migrationStatus.getOutcome());
+  }
+
+  @Test
+  public void testTimedOutReactiveWaitDoesNotFailTheMigration() {
+    MigrationStatus migrationStatus = new MigrationStatus();
+
+    try {
+      Mono.fromFuture(migrationStatus.getFuture()).timeout(Duration.ofMillis(10)).block();
+      fail("Expected a timeout");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause() instanceof TimeoutException);
+    }
+    migrationStatus.complete(MigrationCoordinator.Outcome.UNCHANGED);
+
+    assertTrue(migrationStatus.isReady());
+    Mono.fromFuture(migrationStatus.getFuture()).block(Duration.ofSeconds(1));
+  }
+}
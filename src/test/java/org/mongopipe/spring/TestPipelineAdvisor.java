@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.Pizza;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+@ActiveProfiles("test")
+public class TestPipelineAdvisor {
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setPipelineAdvisorMode(PipelineAdvisor.Mode.REPORT);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PipelineAdvisor pipelineAdvisor;
+
+  @Test
+  public void test() {
+    // Given
+    MongoDatabase db = mongoDBServerStarter.getDb();
+    db.getCollection("pizzas").drop();
+    db.getCollection("orders").drop();
+    db.getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+    db.getCollection("orders").insertMany(Arrays.asList(
+        new Document("name", "Pepperoni").append("size", "small").append("quantity", 2),
+        new Document("name", "Vegan").append("size", "medium").append("quantity", 1)));
+    db.getCollection("pipeline_store").insertOne(Document.parse("{_id: 'pizzasWithOrders', collection: 'pizzas', pipeline: ["
+        + "{$lookup: {from: 'orders', localField: 'name', foreignField: 'name', as: 'orders'}}]}"));
+    pipelineAdvisor.setSampleParameters("matchingPizzas", Collections.singletonMap("pizzaSize", "small"));
+
+    // When
+    PipelineAdvisor.Report report = pipelineAdvisor.advise();
+
+    // Then
+    assertEquals(3, report.getAnalyzedPipelines());
+    List<PipelineAdvisor.Finding> findings = report.getFindings("matchingPizzas");
+    assertEquals(2, findings.size());
+    assertEquals(PipelineAdvisor.Issue.COLLECTION_SCAN, findings.get(0).getIssue());
+    assertEquals(PipelineAdvisor.Issue.IN_MEMORY_SORT, findings.get(1).getIssue());
+    assertEquals(BsonDocument.parse("{size: 1, name: 1}"), findings.get(0).getIndexKeys());
+    assertEquals("pizzas", findings.get(0).getIndexCollection());
+    assertEquals(BsonDocument.parse("{size: 1}"), report.getFindings("totalOrdersGroupedBySize").get(0).getIndexKeys());
+    PipelineAdvisor.Finding lookup = report.getFindings("pizzasWithOrders").get(1);
+    assertEquals(PipelineAdvisor.Issue.UNINDEXED_LOOKUP, lookup.getIssue());
+    assertEquals("orders", lookup.getIndexCollection());
+    assertNull(report.getFindings("pizzasWithOrders").get(0).getIndexKeys()); // Nothing to filter on.
+    assertTrue(report.hasIssues());
+  }
+
+  @Test
+  public void testSamples() {
+    // Given
+    MongoDatabase db = mongoDBServerStarter.getDb();
+    db.getCollection("orders").drop();
+    db.getCollection("orders").insertOne(new Document("name", "Pepperoni").append("size", "small").append("quantity", 2));
+    // No store method binds minQuantity.
+    db.getCollection("pipeline_store").insertOne(Document.parse("{_id: 'largeOrders', collection: 'orders', pipeline: ["
+        + "{$match: {quantity: {$gt: '${minQuantity}'}}}]}"));
+
+    try {
+      // When
+      PipelineAdvisor.Report report = pipelineAdvisor.advise();
+
+      // Then
+      List<PipelineAdvisor.Finding> findings = report.getFindings("largeOrders");
+      assertEquals(1, findings.size());
+      assertEquals(PipelineAdvisor.Issue.NO_SAMPLE, findings.get(0).getIssue());
+      assertTrue(findings.get(0).getMessage(), findings.get(0).getMessage().contains("minQuantity"));
+      // The pizzaSize String parameter of the store methods.
+      assertEquals(PipelineAdvisor.Issue.COLLECTION_SCAN, report.getFindings("totalOrdersGroupedBySize").get(0).getIssue());
+      assertEquals("", PipelineAdvisor.sampleValue(String.class));
+      assertEquals(0L, PipelineAdvisor.sampleValue(long.class));
+      assertEquals(Collections.emptyList(), PipelineAdvisor.sampleValue(String[].class));
+      assertNull(PipelineAdvisor.sampleValue(Pizza.class));
+
+      pipelineAdvisor.setSampleParameters("largeOrders", Collections.singletonMap("minQuantity", 1));
+      assertEquals(PipelineAdvisor.Issue.COLLECTION_SCAN, pipelineAdvisor.advise().getFindings("largeOrders").get(0).getIssue());
+    } finally {
+      db.getCollection("pipeline_store").deleteOne(new Document("_id", "largeOrders"));
+    }
+  }
+
+  @Test
+  public void testModes() {
+    // Given
+    MongoDatabase db = mongoDBServerStarter.getDb();
+    db.getCollection("pizzas").drop();
+    db.getCollection("orders").drop();
+    db.getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+    db.getCollection("orders").insertOne(new Document("name", "Pepperoni").append("size", "small").append("quantity", 2));
+    db.getCollection("pipeline_store").deleteOne(new Document("_id", "pizzasWithOrders"));
+
+    try {
+      // Without enforced profiles only reported.
+      pipelineAdvisor.setMode(PipelineAdvisor.Mode.AUTO_CREATE_INDEXES);
+      assertFalse(pipelineAdvisor.advise().getFindings("matchingPizzas").get(0).isIndexCreated());
+      pipelineAdvisor.setEnforcedProfiles("production");
+      assertFalse(pipelineAdvisor.advise().getFindings("matchingPizzas").get(0).isIndexCreated());
+
+      // When
+      pipelineAdvisor.setEnforcedProfiles("test", "ci");
+      PipelineAdvisor.Report report = pipelineAdvisor.advise();
+
+      // Then
+      assertTrue(report.getFindings("matchingPizzas").get(0).isIndexCreated());
+      pipelineAdvisor.setMode(PipelineAdvisor.Mode.FAIL_FAST);
+      assertFalse(pipelineAdvisor.advise().toString(), pipelineAdvisor.getReport().hasIssues());
+
+      db.getCollection("pizzas").dropIndexes();
+      try {
+        pipelineAdvisor.advise();
+        fail("Expected the collection scan to fail");
+      } catch (PipelineAdvisor.IssuesFoundException e) {
+        assertTrue(e.getMessage(), e.getMessage().contains("matchingPizzas: COLLECTION_SCAN"));
+        assertTrue(e.getReport().hasIssues());
+      }
+    } finally {
+      pipelineAdvisor.setMode(PipelineAdvisor.Mode.REPORT);
+      pipelineAdvisor.setEnforcedProfiles();
+    }
+  }
+}
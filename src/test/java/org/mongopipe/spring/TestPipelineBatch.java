@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.Order;
+import org.test.Pizza;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestPipelineBatch {
+  static final Queue<BsonDocument> AGGREGATE_COMMANDS = new ConcurrentLinkedQueue<>();
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    // Adopted by the starter, to count the round trips.
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoClient mongoClient(MongoDBServerStarter mongoDBStarter) {
+      return MongoClients.create(MongoClientSettings.builder()
+          .applyConnectionString(new ConnectionString(mongoDBStarter.getUri()))
+          .addCommandListener(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+              // Not the change stream of the pipeline store.
+              if (event.getCommandName().equals("aggregate") && !event.getCommand().get("aggregate").equals(new BsonString("pipeline_store"))) {
+                AGGREGATE_COMMANDS.add(BsonDocument.parse(event.getCommand().toJson()));
+              }
+            }
+          })
+          .build());
+    }
+
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri(mongoDBStarter.getUri())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PipelineAggregator pipelineAggregator;
+
+  private static List<String> names(List<Pizza> pizzas) {
+    return pizzas.stream().map(Pizza::getName).collect(Collectors.toList());
+  }
+
+  @Test
+  public void test() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+    mongoDBServerStarter.getDb().getCollection("orders").insertMany(Arrays.asList(
+        new Document("name", "Pepperoni").append("size", "small").append("quantity", 2),
+        new Document("name", "Cheese").append("size", "small").append("quantity", 3)));
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").insertMany(Arrays.asList(
+        Document.parse("{_id: 'pizzaCount', collection: 'pizzas', pipeline: [{$count: 'count'}]}"),
+        Document.parse("{_id: 'pizzaStats', collection: 'pizzas', pipeline: [{$collStats: {count: {}}}]}")));
+    Map<String, String> small = Collections.singletonMap("pizzaSize", "small");
+    List<Pizza> expectedSmall = pipelineAggregator.aggregate("matchingPizzas", small, Pizza.class).into(new ArrayList<>());
+    AGGREGATE_COMMANDS.clear();
+
+    // When
+    PipelineBatch batch = pipelineAggregator.batch();
+    PipelineBatch.Result<Pizza> smallPizzas = batch.add("matchingPizzas", small, Pizza.class);
+    PipelineBatch.Result<Pizza> mediumPizzas = batch.add("matchingPizzas", Collections.singletonMap("pizzaSize", "medium"), Pizza.class);
+    PipelineBatch.Result<Document> pizzaCount = batch.add("pizzaCount", null, Document.class);
+    PipelineBatch.Result<Document> pizzaStats = batch.add("pizzaStats", null, Document.class);
+    PipelineBatch.Result<Order> orders = batch.add("totalOrdersGroupedBySize", small, Order.class);
+    batch.execute();
+
+    // Then
+    assertEquals(names(expectedSmall), names(smallPizzas.get()));
+    assertEquals(Collections.singletonList("Vegan"), names(mediumPizzas.get()));
+    assertEquals(3, pizzaCount.get().get(0).getInteger("count").intValue());
+    assertEquals(3, ((Number) pizzaStats.get().get(0).get("count")).intValue());
+    assertEquals(2, orders.get().size());
+    // One $facet for the 3 pizzas pipelines, $collStats and the single orders pipeline apart.
+    List<BsonDocument> commands = new ArrayList<>(AGGREGATE_COMMANDS);
+    assertEquals(3, commands.size());
+    BsonDocument facet = commands.stream().filter(command -> command.getString("aggregate").getValue().equals("pizzas")
+        && command.getArray("pipeline").get(0).asDocument().containsKey("$facet")).findFirst().get();
+    assertEquals(3, facet.getArray("pipeline").get(0).asDocument().getDocument("$facet").size());
+  }
+
+  @Test
+  public void testSharedMatch() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").insertMany(Arrays.asList(
+        Document.parse("{_id: 'cheapPizzas', collection: 'pizzas', pipeline: [{$match: {size: '${pizzaSize}'}}, {$match: {price: {$lt: 15}}}]}"),
+        Document.parse("{_id: 'pizzaSizeCount', collection: 'pizzas', pipeline: [{$match: {size: '${pizzaSize}'}}, {$count: 'count'}]}")));
+    AGGREGATE_COMMANDS.clear();
+
+    // When
+    PipelineBatch batch = pipelineAggregator.batch();
+    Map<String, String> small = Collections.singletonMap("pizzaSize", "small");
+    batch.add("cheapPizzas", small, Pizza.class);
+    batch.add("pizzaSizeCount", small, Document.class);
+    batch.execute();
+
+    // Then the $match runs before the $facet, where it can use an index.
+    BsonDocument command = AGGREGATE_COMMANDS.peek();
+    assertEquals(1, AGGREGATE_COMMANDS.size());
+    assertEquals(BsonDocument.parse("{$match: {size: 'small'}}"), command.getArray("pipeline").get(0));
+    assertTrue(command.getArray("pipeline").get(1).asDocument().containsKey("$facet"));
+  }
+
+  @Test
+  public void testTextSearchRunsSeparately() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("menu").insertMany(Arrays.asList(
+        new Document("name", "Pepperoni").append("size", "small"),
+        new Document("name", "Cheese").append("size", "small")));
+    mongoDBServerStarter.getDb().getCollection("menu").createIndex(new Document("name", "text"));
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").insertMany(Arrays.asList(
+        Document.parse("{_id: 'menuSearch', collection: 'menu', pipeline: [{$match: {$text: {$search: 'pepperoni'}}}]}"),
+        Document.parse("{_id: 'menuCount', collection: 'menu', pipeline: [{$count: 'count'}]}"),
+        Document.parse("{_id: 'menuSizes', collection: 'menu', pipeline: [{$group: {_id: '$size'}}]}")));
+    AGGREGATE_COMMANDS.clear();
+
+    // When
+    PipelineBatch batch = pipelineAggregator.batch();
+    PipelineBatch.Result<Document> search = batch.add("menuSearch", null, Document.class);
+    PipelineBatch.Result<Document> count = batch.add("menuCount", null, Document.class);
+    PipelineBatch.Result<Document> sizes = batch.add("menuSizes", null, Document.class);
+    batch.execute();
+
+    // Then the $text search is not allowed in $facet, the other pipelines still share one.
+    assertEquals(Collections.singletonList("Pepperoni"), search.get().stream().map(document -> document.getString("name"))
+        .collect(Collectors.toList()));
+    assertEquals(2, count.get().get(0).getInteger("count").intValue());
+    assertEquals(1, sizes.get().size());
+    assertEquals(2, AGGREGATE_COMMANDS.size());
+    assertEquals(1, AGGREGATE_COMMANDS.stream().filter(command -> command.getArray("pipeline").get(0).asDocument()
+        .containsKey("$facet")).count());
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestPipelineCallCoalescer {
+  private static final int THREADS = 16;
+  private static final int PIZZAS = 100;
+  private static final AtomicInteger PIZZA_AGGREGATES = new AtomicInteger();
+  // When set, the pizzas aggregate is held open until released.
+  private static volatile CountDownLatch started;
+  private static volatile CountDownLatch release;
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    // Adopted by the starter.
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoClient mongoClient(MongoDBServerStarter mongoDBStarter) {
+      return MongoClients.create(MongoClientSettings.builder()
+          .applyConnectionString(new ConnectionString(mongoDBStarter.getUri()))
+          .addCommandListener(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+              if (event.getCommandName().equals("aggregate") && event.getCommand().getString("aggregate").getValue().equals("pizzas")) {
+                PIZZA_AGGREGATES.incrementAndGet();
+                CountDownLatch hold = release;
+                if (hold != null) {
+                  started.countDown();
+                  try {
+                    hold.await(30, TimeUnit.SECONDS);
+                  } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                  }
+                }
+              }
+            }
+          })
+          .build());
+    }
+
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri(mongoDBStarter.getUri())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setCoalescingEnabled(true);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PipelineCallCoalescer pipelineCallCoalescer;
+
+  @Autowired
+  MyRestaurant myRestaurant;
+
+  @Test
+  public void test() throws Exception {
+    // Given
+    List<Document> pizzas = new ArrayList<>();
+    for (int i = 0; i < PIZZAS; i++) {
+      pizzas.add(new Document("name", "Pizza " + i).append("size", "small"));
+    }
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(pizzas);
+    myRestaurant.getPizzaListBySize("medium"); // Loads the definition.
+    long executionsBefore = pipelineCallCoalescer.getExecutions();
+    long coalescedBefore = pipelineCallCoalescer.getCoalesced();
+    int aggregatesBefore = PIZZA_AGGREGATES.get();
+
+    // When all the runs arrive while the first execution is held open.
+    started = new CountDownLatch(1);
+    release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<List<Pizza>>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < THREADS; i++) {
+        results.add(executor.submit(() -> myRestaurant.getPizzaListBySize("small")));
+      }
+      assertTrue(started.await(30, TimeUnit.SECONDS));
+      long deadline = System.currentTimeMillis() + 30000;
+      while (pipelineCallCoalescer.getCoalesced() - coalescedBefore < THREADS - 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      release.countDown();
+      for (Future<List<Pizza>> result : results) {
+        assertEquals(PIZZAS, result.get().size());
+      }
+    } finally {
+      release = null;
+      executor.shutdown();
+    }
+
+    // Then
+    assertEquals(1, pipelineCallCoalescer.getExecutions() - executionsBefore);
+    assertEquals(THREADS - 1, pipelineCallCoalescer.getCoalesced() - coalescedBefore);
+    assertEquals(1, PIZZA_AGGREGATES.get() - aggregatesBefore);
+    assertEquals(0, pipelineCallCoalescer.getInFlight());
+    // Nothing is kept afterwards.
+    myRestaurant.getPizzaListBySize("small");
+    assertEquals(2, pipelineCallCoalescer.getExecutions() - executionsBefore);
+  }
+
+  @Test
+  public void testStreamsNotCoalesced() {
+    long executionsBefore = pipelineCallCoalescer.getExecutions();
+
+    myRestaurant.getPizzasBySize("small").count();
+
+    assertEquals(executionsBefore, pipelineCallCoalescer.getExecutions());
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+/**
+ * On a replica set the pipeline updates invalidate the cached definitions without waiting for the TTL.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestPipelineDefinitionCacheChangeStream {
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter(true);
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri(mongoDBStarter.getUri())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setPipelineDefinitionCacheEnabled(true);
+      mongoPipeStarter.getPipelineDefinitionCache().setTtlMillis(600000);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PipelineDefinitionCache pipelineDefinitionCache;
+
+  @Autowired
+  MyRestaurant myRestaurant;
+
+  @Test
+  public void test() throws InterruptedException {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+    assertEquals("[Cheese, Pepperoni]", getSmallPizzas().toString());
+    waitFor(() -> pipelineDefinitionCache.isChangeStreamActive());
+    getSmallPizzas(); // Cached again after the stream opened.
+    long invalidations = pipelineDefinitionCache.getInvalidations();
+
+    // When the pipeline is changed by another node.
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").updateOne(eq("_id", "matchingPizzas"),
+        set("pipeline", Arrays.asList(new Document("$match", new Document("size", "${pizzaSize}")), new Document("$sort", new Document("name", -1)))));
+
+    // Then it is seen long before the TTL.
+    waitFor(() -> pipelineDefinitionCache.getInvalidations() > invalidations);
+    assertEquals("[Pepperoni, Cheese]", getSmallPizzas().toString());
+    assertTrue(pipelineDefinitionCache.isChangeStreamActive());
+  }
+
+  private List<String> getSmallPizzas() {
+    return myRestaurant.getPizzasBySize("small").map(Pizza::getName).collect(Collectors.toList());
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      assertTrue("Timed out", System.currentTimeMillis() < deadline);
+      Thread.sleep(20);
+    }
+  }
+}
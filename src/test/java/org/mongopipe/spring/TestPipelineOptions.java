@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.Tag;
+import com.mongodb.TagSet;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.MyRestaurant;
+import org.test.OrderReports;
+import org.test.Pizza;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class, initializers = TestPipelineOptions.PropertiesInitializer.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestPipelineOptions {
+  static final Queue<BsonDocument> AGGREGATE_COMMANDS = new ConcurrentLinkedQueue<>();
+
+  public static class PropertiesInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+    @Override
+    public void initialize(ConfigurableApplicationContext applicationContext) {
+      Map<String, Object> properties = new HashMap<>();
+      properties.put("mongopipe.pipelines.matchingPizzas.read-preference", "nearest");
+      properties.put("mongopipe.pipelines.matchingPizzas.read-concern", "local");
+      applicationContext.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+    }
+  }
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter(true);
+    }
+
+    // Adopted by the starter, to see the commands sent.
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoClient mongoClient(MongoDBServerStarter mongoDBStarter) {
+      return MongoClients.create(MongoClientSettings.builder()
+          .applyConnectionString(new ConnectionString(mongoDBStarter.getUri()))
+          .addCommandListener(new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+              if (event.getCommandName().equals("aggregate")) {
+                AGGREGATE_COMMANDS.add(BsonDocument.parse(event.getCommand().toJson()));
+              }
+            }
+          })
+          .build());
+    }
+
+    @Bean
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri(mongoDBStarter.getUri())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PipelineDefinitionCache pipelineDefinitionCache;
+
+  @Autowired
+  OrderReports orderReports;
+
+  @Autowired
+  MyRestaurant myRestaurant;
+
+  @Before
+  public void setUp() {
+    AGGREGATE_COMMANDS.clear();
+  }
+
+  private BsonDocument lastAggregate(String collection) {
+    BsonDocument result = null;
+    for (BsonDocument command : AGGREGATE_COMMANDS) {
+      if (command.getString("aggregate").getValue().equals(collection)) {
+        result = command;
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void testDocumentOptions() {
+    // Given an analytics pipeline.
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").updateOne(new Document("_id", "totalOrdersGroupedBySize"),
+        new Document("$set", new Document("options", Document.parse("{readPreference: 'secondaryPreferred', "
+            + "readPreferenceTags: [{nodeType: 'ANALYTICS'}, {}], maxStalenessSeconds: 120, readConcern: 'majority'}"))));
+    pipelineDefinitionCache.invalidate("totalOrdersGroupedBySize");
+
+    // When, on a single node the primary is the fallback.
+    try (Stream<?> orders = orderReports.getTotalOrders("small")) {
+      orders.collect(Collectors.toList());
+    }
+
+    // Then
+    BsonDocument command = lastAggregate("orders");
+    assertEquals(BsonDocument.parse("{mode: 'secondaryPreferred', tags: [{nodeType: 'ANALYTICS'}, {}], maxStalenessSeconds: {$numberLong: '120'}}"),
+        command.getDocument("$readPreference"));
+    assertEquals(BsonDocument.parse("{level: 'majority'}"), command.getDocument("readConcern"));
+  }
+
+  @Test
+  public void testExecutionOptions() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("orders").insertOne(new Document("name", "Margherita").append("size", "small").append("quantity", 2));
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").updateOne(new Document("_id", "totalOrdersGroupedBySize"),
+        new Document("$set", new Document("options", Document.parse("{batchSize: 50, allowDiskUse: true, maxTimeMS: 5000, hint: {_id: 1},"
+            + " collation: {locale: 'en', strength: 2}, comment: 'orders by size'}"))));
+    pipelineDefinitionCache.invalidate("totalOrdersGroupedBySize");
+
+    // When
+    try (Stream<?> orders = orderReports.getTotalOrders("SMALL")) {
+      assertEquals(1, orders.count()); // Case insensitive.
+    }
+
+    // Then
+    BsonDocument command = lastAggregate("orders");
+    assertEquals(50, command.getDocument("cursor").getInt32("batchSize").getValue());
+    assertTrue(command.getBoolean("allowDiskUse").getValue());
+    assertEquals(5000, command.getNumber("maxTimeMS").longValue());
+    assertEquals(BsonDocument.parse("{_id: 1}"), command.getDocument("hint"));
+    assertEquals(2, command.getDocument("collation").getInt32("strength").getValue());
+    assertEquals("orders by size", command.getString("comment").getValue());
+  }
+
+  @Test
+  public void testPropertyOptions() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+
+    // When
+    List<Pizza> pizzas;
+    try (Stream<Pizza> stream = myRestaurant.getPizzasBySize("small")) {
+      pizzas = stream.collect(Collectors.toList());
+    }
+
+    // Then
+    assertFalse(pizzas.isEmpty());
+    BsonDocument command = lastAggregate("pizzas");
+    assertEquals("nearest", command.getDocument("$readPreference").getString("mode").getValue());
+    assertEquals(BsonDocument.parse("{level: 'local'}"), command.getDocument("readConcern"));
+  }
+
+  @Test
+  public void testOverrides() {
+    BsonDocument document = BsonDocument.parse("{_id: 'reports', collection: 'orders', pipeline: [],"
+        + " options: {readPreference: 'secondary', readPreferenceTags: [{nodeType: 'ANALYTICS'}], readConcern: 'majority'}}");
+    MockEnvironment environment = new MockEnvironment()
+        .withProperty("mongopipe.pipelines.reports.read-preference", "secondaryPreferred")
+        .withProperty("mongopipe.pipelines.reports.read-preference-tags", "nodeType:ANALYTICS,region:east;")
+        .withProperty("mongopipe.pipelines.reports.max-staleness-seconds", "90")
+        .withProperty("mongopipe.pipelines.reports.batch-size", "5000")
+        .withProperty("mongopipe.pipelines.reports.hint", "size_1")
+        .withProperty("mongopipe.pipelines.reports.collation", "{locale: 'fr', strength: 1}");
+
+    PipelineOptions options = new PipelineDefinition("reports", document, PipelineOptions.fromProperties("reports", environment)).getOptions();
+
+    assertEquals(ReadPreference.secondaryPreferred(Arrays.asList(new TagSet(Arrays.asList(new Tag("nodeType", "ANALYTICS"), new Tag("region", "east"))),
+        new TagSet()), 90, TimeUnit.SECONDS), options.getReadPreference());
+    assertEquals(ReadConcern.MAJORITY, options.getReadConcern());
+    assertEquals(Integer.valueOf(5000), options.getBatchSize());
+    assertEquals(new BsonString("size_1"), options.getHint());
+    assertEquals(Collation.builder().locale("fr").collationStrength(CollationStrength.PRIMARY).build(), options.getCollation());
+    assertNull(options.getMaxTimeMillis());
+    assertNull(PipelineOptions.fromDocument("none", BsonDocument.parse("{collection: 'orders', pipeline: []}")).getReadPreference());
+  }
+}
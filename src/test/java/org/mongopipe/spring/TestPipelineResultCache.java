@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestPipelineResultCache {
+
+  @Configuration
+  @PropertySource("classpath:result-cache.properties")
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.getPipelineDefinitionCache().setTtlMillis(1000);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PipelineResultCache pipelineResultCache;
+
+  @Autowired
+  MyRestaurant myRestaurant;
+
+  @Test
+  public void test() throws InterruptedException {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+
+    // When
+    List<String> small = pizzaNames("small");
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertOne(new Document("name", "Margherita").append("size", "small"));
+    List<String> smallAgain = pizzaNames("small");
+
+    // Then, from the cache.
+    assertEquals("[Cheese, Pepperoni]", small.toString());
+    assertEquals(small, smallAgain);
+    PipelineResultCache.CacheStats stats = pipelineResultCache.getStats().get("matchingPizzas");
+    assertEquals(1, stats.getMisses());
+    assertEquals(1, stats.getHits());
+
+    // When the pipeline is changed by another node, the results of the previous definition are not used.
+    mongoDBServerStarter.getDb().getCollection("pipeline_store").updateOne(eq("_id", "matchingPizzas"),
+        set("pipeline", Arrays.asList(new Document("$match", new Document("size", "${pizzaSize}")), new Document("$sort", new Document("name", -1)))));
+    Thread.sleep(1100);
+    assertEquals("[Pepperoni, Margherita, Cheese]", pizzaNames("small").toString());
+    assertEquals(2, stats.getMisses());
+
+    // When invalidated, as done by the change stream.
+    pipelineResultCache.invalidate("matchingPizzas");
+    pizzaNames("small");
+    assertEquals(3, stats.getMisses());
+
+    // When more parameter combinations than the max size.
+    assertEquals("[Vegan]", pizzaNames("medium").toString());
+    assertEquals("[]", pizzaNames("large").toString());
+    assertEquals(1, stats.getEvictions());
+  }
+
+  @Test
+  public void testBoundedTtlCache() throws InterruptedException {
+    BoundedTtlCache cache = new BoundedTtlCache("test", 2, 200);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    cache.get("a"); // "b" becomes the least recently used.
+    cache.put("c", 3);
+    assertNull(cache.get("b"));
+    assertEquals(Integer.valueOf(1), cache.get("a", Integer.class));
+    assertEquals(1, cache.getEvictions());
+
+    Thread.sleep(250);
+    assertNull(cache.get("a"));
+    assertEquals(1, cache.getExpirations());
+  }
+
+  private List<String> pizzaNames(String size) {
+    return myRestaurant.getPizzasBySize(size).map(Pizza::getName).collect(Collectors.toList());
+  }
+}
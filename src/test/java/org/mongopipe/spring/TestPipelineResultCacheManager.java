@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.springframework.util.SerializationUtils;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+/**
+ * Results cached in a CacheManager serializing its entries, as the distributed ones do, while Pizza is not Serializable.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestPipelineResultCacheManager {
+
+  static class SerializingCache extends ConcurrentMapCache {
+    SerializingCache(String name) {
+      super(name);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+      SerializationUtils.serialize(key);
+      super.put(key, value);
+    }
+
+    @Override
+    protected Object toStoreValue(Object userValue) {
+      return SerializationUtils.serialize(userValue);
+    }
+
+    @Override
+    protected Object fromStoreValue(Object storeValue) {
+      return SerializationUtils.deserialize((byte[]) storeValue);
+    }
+  }
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      SimpleCacheManager cacheManager = new SimpleCacheManager();
+      cacheManager.setCaches(Collections.singletonList(new SerializingCache(PipelineResultCache.CACHE_NAME_PREFIX + "matchingPizzas")));
+      cacheManager.afterPropertiesSet();
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.cachePipelineResults("matchingPizzas", 10, 60000L);
+      mongoPipeStarter.setResultCacheManager(cacheManager);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PipelineResultCache pipelineResultCache;
+
+  @Autowired
+  MyRestaurant myRestaurant;
+
+  @Test
+  public void test() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+
+    // When
+    List<String> small = pizzaNames("small");
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertOne(new Document("name", "Margherita").append("size", "small"));
+    List<String> smallAgain = pizzaNames("small");
+    List<String> smallList = myRestaurant.getPizzaListBySize("small").stream().map(Pizza::getName).collect(Collectors.toList());
+
+    // Then, decoded from the cached BSON.
+    assertEquals("[Cheese, Pepperoni]", small.toString());
+    assertEquals(small, smallAgain);
+    assertEquals(small, smallList);
+    PipelineResultCache.CacheStats stats = pipelineResultCache.getStats().get("matchingPizzas");
+    assertEquals(1, stats.getMisses());
+    assertEquals(2, stats.getHits());
+  }
+
+  private List<String> pizzaNames(String size) {
+    return myRestaurant.getPizzasBySize(size).map(Pizza::getName).collect(Collectors.toList());
+  }
+}
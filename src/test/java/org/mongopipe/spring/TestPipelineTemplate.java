@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.BsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.mongodb.MongoClientSettings.getDefaultCodecRegistry;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestPipelineTemplate {
+  private static final CodecRegistry CODEC_REGISTRY = getDefaultCodecRegistry();
+
+  @Test
+  public void test() {
+    // Given
+    List<BsonDocument> stages = Arrays.asList(
+        BsonDocument.parse("{$match: {size: '${pizzaSize}', price: {$lte: '${maxPrice}'}, tags: ['${tag}', 'fresh']}}"),
+        BsonDocument.parse("{$addFields: {label: 'Size ${pizzaSize} under ${maxPrice}', kind: 'pizza'}}"),
+        BsonDocument.parse("{$sort: {name: 1}}"));
+    Map<String, Object> parameters = new HashMap<>();
+    parameters.put("pizzaSize", "small");
+    parameters.put("maxPrice", 12.5);
+    parameters.put("tag", null);
+
+    // When
+    PipelineTemplate template = PipelineTemplate.compile(stages);
+    List<BsonDocument> bound = template.bind(parameters, CODEC_REGISTRY);
+
+    // Then
+    assertEquals(BsonDocument.parse("{$match: {size: 'small', price: {$lte: 12.5}, tags: [null, 'fresh']}}"), bound.get(0));
+    assertEquals(BsonDocument.parse("{$addFields: {label: 'Size small under 12.5', kind: 'pizza'}}"), bound.get(1));
+    assertSame(stages.get(2), bound.get(2));
+    assertEquals(Arrays.asList("pizzaSize", "maxPrice", "tag"), template.getParameterNames());
+  }
+
+  @Test
+  public void testWithoutPlaceholders() {
+    List<BsonDocument> stages = Arrays.asList(BsonDocument.parse("{$match: {size: 'small'}}"));
+    assertSame(stages, PipelineTemplate.compile(stages).bind(new HashMap<>(), CODEC_REGISTRY));
+  }
+}
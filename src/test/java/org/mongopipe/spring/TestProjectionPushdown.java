@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.MyRestaurant;
+import org.test.Pizza;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestProjectionPushdown {
+  private static final int DESCRIPTION_LENGTH = 2000;
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setPipelineDefinitionCacheEnabled(true);
+      mongoPipeStarter.setProjectionPushdownEnabled(true);
+      mongoPipeStarter.setMetricsEnabled(true);
+      return mongoPipeStarter;
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PipelineMetrics pipelineMetrics;
+
+  @Autowired
+  MyRestaurant myRestaurant;
+
+  @Test
+  public void test() {
+    // Given wide documents.
+    char[] description = new char[DESCRIPTION_LENGTH];
+    Arrays.fill(description, 'x');
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(Arrays.asList(
+        new Document("_id", "PS").append("name", "Pepperoni").append("size", "small").append("price", 10.5).append("description", new String(description)),
+        new Document("_id", "CS").append("name", "Cheese").append("size", "small").append("price", 9.0).append("description", new String(description))));
+
+    // When
+    List<Pizza> pizzas = myRestaurant.getPizzasBySize("small").collect(Collectors.toList());
+
+    // Then all the Pizza fields but not the description were sent.
+    assertEquals("[Cheese, Pepperoni]", pizzas.stream().map(Pizza::getName).collect(Collectors.toList()).toString());
+    assertEquals("CS", pizzas.get(0).getId());
+    assertEquals("small", pizzas.get(0).getSize());
+    assertEquals(9.0f, pizzas.get(0).getPrice(), 0);
+    InMemoryPipelineMetrics.PipelineStats stats = ((InMemoryPipelineMetrics) pipelineMetrics).getStats().get("matchingPizzas");
+    assertEquals(2, stats.getDocuments());
+    assertTrue("Bytes: " + stats.getBytes(), stats.getBytes() < 2 * 200);
+  }
+
+  @Test
+  public void testNotPushedDownForRegistryCodecs() throws Exception {
+    // Given a Pizza codec in the database registry, e.g. with other field names.
+    MongoDatabase database = mongoDBServerStarter.getDb().withCodecRegistry(fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+        fromProviders(PojoCodecProvider.builder().register(Pizza.class).build())));
+    PipelineAggregator pipelineAggregator = new PipelineAggregator(new PipelineDefinitionCache(() -> database), () -> database);
+    PipelineAggregator defaultAggregator = new PipelineAggregator(new PipelineDefinitionCache(mongoDBServerStarter::getDb), mongoDBServerStarter::getDb);
+    Method method = MyRestaurant.class.getMethod("getPizzasBySize", String.class);
+
+    // Then
+    assertNull(new PipelineRunMethod(method, true).getProjection(pipelineAggregator));
+    assertNotNull(new PipelineRunMethod(method, true).getProjection(defaultAggregator));
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.mongopipe.spring;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.DecoderContext;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.test.PizzaExports;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader= AnnotationConfigContextLoader.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+public class TestRawResults {
+
+  @Configuration
+  public static class ContextConfiguration {
+    @Bean
+    public MongoDBServerStarter mongoDBStarter() {
+      return new MongoDBServerStarter();
+    }
+
+    @Bean
+    @DependsOn("mongoDBStarter")
+    public MongoPipeConfig getMongoPipeConfig(MongoDBServerStarter mongoDBStarter) {
+      return MongoPipeConfig.builder()
+          .uri("mongodb://localhost:" + mongoDBStarter.getPort())
+          .databaseName("test")
+          .build();
+    }
+
+    @Bean
+    public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
+      return new MongoPipeStarter(mongoPipeConfig);
+    }
+  }
+
+  @Autowired
+  MongoDBServerStarter mongoDBServerStarter;
+
+  @Autowired
+  PizzaExports pizzaExports;
+
+  @Test
+  public void test() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+
+    // When, only the name is decoded.
+    List<String> names;
+    try (Stream<RawBsonDocument> pizzas = pizzaExports.getRawPizzasBySize("small")) {
+      names = pizzas.map(pizza -> pizza.getString("name").getValue()).collect(Collectors.toList());
+    }
+
+    // Then
+    assertEquals("[Cheese, Pepperoni]", names.toString());
+  }
+
+  @Test
+  public void testExport() {
+    // Given
+    mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
+
+    // When
+    ByteArrayOutputStream bson = new ByteArrayOutputStream();
+    long count = pizzaExports.exportPizzasBySize("small", bson);
+    StringWriter json = new StringWriter();
+    pizzaExports.exportPizzasBySizeAsJson("small", json);
+
+    // Then
+    assertEquals(2, count);
+    List<String> names = new ArrayList<>();
+    ByteBuffer buffer = ByteBuffer.wrap(bson.toByteArray());
+    while (buffer.hasRemaining()) {
+      try (BsonBinaryReader reader = new BsonBinaryReader(buffer)) {
+        BsonDocument document = new BsonDocumentCodec().decode(reader, DecoderContext.builder().build());
+        names.add(document.getString("name").getValue());
+      }
+    }
+    assertEquals("[Cheese, Pepperoni]", names.toString());
+    String[] lines = json.toString().split("\n");
+    assertEquals(2, lines.length);
+    assertEquals("Pepperoni", Document.parse(lines[1]).getString("name"));
+  }
+}
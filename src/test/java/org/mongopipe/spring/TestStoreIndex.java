@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mongopipe.spring;
+
+import org.junit.Test;
+import org.mongopipe.core.config.MongoPipeConfig;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Set;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestStoreIndex {
+
+  @Test
+  public void testIndexGeneratedForTestStores() {
+    // Written by StoreIndexProcessor when compiling the test sources.
+    StoreIndex storeIndex = StoreIndex.load(getClass().getClassLoader());
+
+    assertNotNull(storeIndex);
+    Set<String> storeClassNames = storeIndex.getStoreClassNames("org.test");
+    assertTrue(storeClassNames.contains("org.test.MyRestaurant"));
+    assertTrue(storeClassNames.contains("org.test.OrderReports"));
+    assertTrue(storeIndex.getStoreClassNames("non existing package").isEmpty());
+  }
+
+  @Test
+  public void testUnindexedStoresScanned() throws IOException {
+    // Given a library jar index with a single org.test store, and the test classes folder without index.
+    Path libraryRoot = Files.createTempDirectory("library");
+    Files.createDirectories(libraryRoot.resolve("META-INF"));
+    Files.write(libraryRoot.resolve(StoreIndex.INDEX_LOCATION), Collections.singletonList("org.test.MyRestaurant"));
+    ClassLoader classLoader = new URLClassLoader(new URL[] {libraryRoot.toUri().toURL()}, getClass().getClassLoader()) {
+      @Override
+      public Enumeration<URL> getResources(String name) throws IOException {
+        return name.equals(StoreIndex.INDEX_LOCATION) ? findResources(name) : super.getResources(name);
+      }
+    };
+
+    for (String scanPackage : new String[] {"org.test", null}) {
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(MongoPipeConfig.builder()
+          .uri("mongodb://localhost:1") // Not connected.
+          .databaseName("test")
+          .scanPackage(scanPackage)
+          .build());
+      mongoPipeStarter.setStoreInitialization(MongoPipeStarter.StoreInitialization.LAZY);
+      GenericApplicationContext context = new GenericApplicationContext();
+      DefaultListableBeanFactory beanFactory = context.getDefaultListableBeanFactory();
+      beanFactory.setBeanClassLoader(classLoader);
+      mongoPipeStarter.setApplicationContext(context);
+
+      // When
+      mongoPipeStarter.postProcessBeanDefinitionRegistry(beanFactory);
+
+      // Then the stores not in the index are found by scanning.
+      assertTrue(scanPackage, beanFactory.containsBeanDefinition("myRestaurant"));
+      assertTrue(scanPackage, beanFactory.containsBeanDefinition("orderReports"));
+    }
+  }
+}
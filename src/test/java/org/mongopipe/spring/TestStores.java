@@ -20,7 +20,9 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mongopipe.core.config.MongoPipeConfig;
 import org.mongopipe.core.store.PipelineStore;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
@@ -31,8 +33,13 @@ import org.springframework.test.context.support.AnnotationConfigContextLoader;
 import org.test.MyRestaurant;
 import org.test.Pizza;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mongopipe.core.util.BsonUtil.loadResourceIntoDocumentList;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -59,7 +66,45 @@ public class TestStores {
 
     @Bean
     public MongoPipeStarter getMongoPipeStarter(MongoPipeConfig mongoPipeConfig) {
-      return new MongoPipeStarter(mongoPipeConfig);
+      MongoPipeStarter mongoPipeStarter = new MongoPipeStarter(mongoPipeConfig);
+      mongoPipeStarter.setAsyncMigration(true);
+      return mongoPipeStarter;
+    }
+
+    @Bean
+    public MigrationListener migrationListener() {
+      return new MigrationListener();
+    }
+
+    @Bean
+    public SlowStartingBean slowStartingBean() {
+      return new SlowStartingBean();
+    }
+  }
+
+  // Waits for the migration while created, which only ends if it runs in parallel with the context startup.
+  public static class SlowStartingBean implements InitializingBean {
+    @Autowired
+    MigrationStatus migrationStatus;
+    boolean migratedWhileCreated;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+      try {
+        migrationStatus.getFuture().get(30, TimeUnit.SECONDS);
+        migratedWhileCreated = true;
+      } catch (TimeoutException e) {
+        migratedWhileCreated = false;
+      }
+    }
+  }
+
+  public static class MigrationListener implements ApplicationListener<MigrationCompletedEvent> {
+    final CompletableFuture<MigrationCompletedEvent> event = new CompletableFuture<>();
+
+    @Override
+    public void onApplicationEvent(MigrationCompletedEvent migrationCompletedEvent) {
+      event.complete(migrationCompletedEvent);
     }
   }
 
@@ -72,18 +117,37 @@ public class TestStores {
   @Autowired
   MyRestaurant myRestaurant;
 
+  @Autowired
+  MigrationStatus migrationStatus;
+
+  @Autowired
+  MigrationListener migrationListener;
+
+  @Autowired
+  SlowStartingBean slowStartingBean;
+
+  @Autowired
+  PipelineDefinitionCache pipelineDefinitionCache;
+
   @Test
-  public void test() throws InterruptedException {
+  public void test() throws Exception {
     // Given
     // See annotation on Pizza class and use same collection.
     mongoDBServerStarter.getDb().getCollection("pizzas").insertMany(loadResourceIntoDocumentList("data.bson"));
 
     // When migration auto starts and stores are autowired
-    Thread.sleep(5000L);
+    migrationStatus.getFuture().get(30, TimeUnit.SECONDS);
 
     // Then
+    assertTrue(migrationListener.event.get(30, TimeUnit.SECONDS).isSuccessful());
+    assertTrue(slowStartingBean.migratedWhileCreated);
     assertEquals(2, pipelineStore.count().longValue());
     Pizza pizza = myRestaurant.findById("PS").get();
     assertNotNull(pizza);
+
+    // And the pipelines without options run by the core store, the definition cache not being used.
+    assertEquals(2, myRestaurant.getPizzasBySize("small").count());
+    assertEquals(2, myRestaurant.getPizzasBySize("small").count());
+    assertEquals(0, pipelineDefinitionCache.getMisses());
   }
 }
@@ -4,6 +4,7 @@ import org.mongopipe.core.annotation.Item;
 import org.mongopipe.core.annotation.PipelineRun;
 import org.mongopipe.core.annotation.Store;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -18,6 +19,9 @@ public interface MyRestaurant {
   @PipelineRun("matchingPizzas")  // your pipeline id, copied from matchingPizzasBySize.bson, method can have any name.
   Stream<Pizza> getPizzasBySize(String pizzaSize);
 
+  @PipelineRun("matchingPizzas")
+  List<Pizza> getPizzaListBySize(String pizzaSize);
+
   Optional<Pizza> findById(String id); // For more CRUDs methods see org.mongopipe.core.store.CrudStore.
 
 }
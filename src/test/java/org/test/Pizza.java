@@ -8,6 +8,8 @@ public class Pizza {
   String name;
   String size;
   Float price;
+  // No accessors, so not mapped.
+  String kitchenNote = "not mapped";
 
   public String getId() {
     return id;
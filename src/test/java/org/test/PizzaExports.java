@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2022 - present Cristian Donoiu, Ionut Sergiu Peschir
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.test;
+
+import org.bson.RawBsonDocument;
+import org.mongopipe.core.annotation.PipelineRun;
+import org.mongopipe.core.annotation.Store;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.stream.Stream;
+
+@Store
+public interface PizzaExports {
+  @PipelineRun("matchingPizzas")
+  Stream<RawBsonDocument> getRawPizzasBySize(String pizzaSize);
+
+  @PipelineRun("matchingPizzas")
+  long exportPizzasBySize(String pizzaSize, OutputStream outputStream);
+
+  @PipelineRun("matchingPizzas")
+  void exportPizzasBySizeAsJson(String pizzaSize, Writer writer);
+}
@@ -0,0 +1,20 @@
+package org.test;
+
+import org.mongopipe.core.annotation.PipelineRun;
+import org.mongopipe.core.annotation.Store;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@Store
+public interface ReactiveRestaurant {
+  @PipelineRun("matchingPizzas")
+  Flux<Pizza> getPizzasBySize(String pizzaSize);
+
+  @PipelineRun("matchingPizzas")
+  Mono<Pizza> getFirstPizzaBySize(String pizzaSize);
+
+  @PipelineRun("matchingPizzas")
+  Mono<List<Pizza>> getPizzaListBySize(String pizzaSize);
+}